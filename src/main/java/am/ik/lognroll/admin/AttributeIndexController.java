@@ -0,0 +1,62 @@
+package am.ik.lognroll.admin;
+
+import java.util.List;
+
+import am.ik.lognroll.logs.jdbc.AttributeIndexes;
+import am.ik.lognroll.logs.jdbc.AttributeIndexes.AttributeIndex;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+public class AttributeIndexController {
+
+	private final AttributeIndexes attributeIndexes;
+
+	public AttributeIndexController(AttributeIndexes attributeIndexes) {
+		this.attributeIndexes = attributeIndexes;
+	}
+
+	@GetMapping(path = "/api/admin/attribute-indexes")
+	public AttributeIndexesResponse showAttributeIndexes() {
+		return new AttributeIndexesResponse(this.attributeIndexes.list());
+	}
+
+	/**
+	 * Index the attribute. Responds once the index is built, which may take a while on a
+	 * large database.
+	 */
+	@PutMapping(path = "/api/admin/attribute-indexes/{name}")
+	public ResponseEntity<Void> promote(@PathVariable String name) {
+		try {
+			return this.attributeIndexes.promote(name) ? ResponseEntity.status(HttpStatus.CREATED).build()
+					: ResponseEntity.noContent().build();
+		}
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+
+	@DeleteMapping(path = "/api/admin/attribute-indexes/{name}")
+	public ResponseEntity<Void> demote(@PathVariable String name) {
+		try {
+			if (!this.attributeIndexes.demote(name)) {
+				throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Attribute is not indexed: " + name);
+			}
+			return ResponseEntity.noContent().build();
+		}
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+
+	public record AttributeIndexesResponse(List<AttributeIndex> attributeIndexes) {
+	}
+
+}
@@ -0,0 +1,32 @@
+package am.ik.lognroll.admin;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import am.ik.lognroll.logs.maintenance.DatabaseMaintenance;
+import am.ik.lognroll.logs.maintenance.DatabaseMaintenance.Task;
+
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class MaintenanceController {
+
+	private final DatabaseMaintenance databaseMaintenance;
+
+	public MaintenanceController(DatabaseMaintenance databaseMaintenance) {
+		this.databaseMaintenance = databaseMaintenance;
+	}
+
+	/**
+	 * Run the maintenance tasks now, by default those of the scheduled runs. Responds
+	 * once they are done.
+	 */
+	@PostMapping(path = "/api/admin/maintenance")
+	public DatabaseMaintenance.Report maintain(
+			@RequestParam(required = false, defaultValue = "OPTIMIZE,MERGE") List<Task> tasks) {
+		return this.databaseMaintenance.run(tasks.isEmpty() ? EnumSet.noneOf(Task.class) : EnumSet.copyOf(tasks));
+	}
+
+}
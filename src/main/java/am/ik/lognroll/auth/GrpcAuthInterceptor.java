@@ -0,0 +1,34 @@
+package am.ik.lognroll.auth;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * gRPC counterpart of {@link SimpleAuthInterceptor}.
+ */
+public class GrpcAuthInterceptor implements ServerInterceptor {
+
+	private static final Metadata.Key<String> AUTHORIZATION = Metadata.Key.of("authorization",
+			Metadata.ASCII_STRING_MARSHALLER);
+
+	private final AuthProps props;
+
+	public GrpcAuthInterceptor(AuthProps props) {
+		this.props = props;
+	}
+
+	@Override
+	public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+			ServerCallHandler<ReqT, RespT> next) {
+		if (!SimpleAuthInterceptor.isAuthorized(this.props, headers.get(AUTHORIZATION))) {
+			call.close(Status.UNAUTHENTICATED.withDescription("Invalid or missing token"), new Metadata());
+			return new ServerCall.Listener<>() {
+			};
+		}
+		return next.startCall(call, headers);
+	}
+
+}
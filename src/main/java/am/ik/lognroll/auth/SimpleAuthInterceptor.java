@@ -1,8 +1,10 @@
 package am.ik.lognroll.auth;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Objects;
 
+import jakarta.annotation.Nullable;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -22,31 +24,41 @@ public class SimpleAuthInterceptor implements HandlerInterceptor {
 	@Override
 	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
 			throws Exception {
-		if (StringUtils.hasText(this.props.token())) {
-			String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
-			boolean authorized = false;
-			if (StringUtils.hasText(authorization)) {
-				if (authorization.startsWith("Bearer") || authorization.startsWith("bearer")) {
-					final String token = authorization.replace("Bearer ", "").replace("bearer ", "");
-					if (Objects.equals(this.props.token(), token)) {
-						authorized = true;
-					}
+		if (!isAuthorized(this.props, request.getHeader(HttpHeaders.AUTHORIZATION))) {
+			response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"LogN'Roll API\"");
+			response.sendError(HttpStatus.UNAUTHORIZED.value());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check the value of an {@code Authorization} header against the configured token.
+	 * Always authorized if no token is configured.
+	 */
+	public static boolean isAuthorized(AuthProps props, @Nullable String authorization) {
+		if (!StringUtils.hasText(props.token())) {
+			return true;
+		}
+		if (StringUtils.hasText(authorization)) {
+			if (authorization.startsWith("Bearer") || authorization.startsWith("bearer")) {
+				final String token = authorization.replace("Bearer ", "").replace("bearer ", "");
+				return Objects.equals(props.token(), token);
+			}
+			else if (authorization.startsWith("Basic") || authorization.startsWith("basic")) {
+				final String basic = authorization.replace("Basic ", "").replace("basic ", "");
+				final String credentials;
+				try {
+					credentials = new String(Base64.getDecoder().decode(basic), StandardCharsets.UTF_8);
 				}
-				else if (authorization.startsWith("Basic") || authorization.startsWith("basic")) {
-					final String basic = authorization.replace("Basic ", "").replace("basic ", "");
-					final String token = new String(Base64.getDecoder().decode(basic)).split(":", 2)[1];
-					if (Objects.equals(this.props.token(), token)) {
-						authorized = true;
-					}
+				catch (IllegalArgumentException e) {
+					return false;
 				}
-			}
-			if (!authorized) {
-				response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"LogN'Roll API\"");
-				response.sendError(HttpStatus.UNAUTHORIZED.value());
-				return false;
+				final int colon = credentials.indexOf(':');
+				return colon >= 0 && Objects.equals(props.token(), credentials.substring(colon + 1));
 			}
 		}
-		return true;
+		return false;
 	}
 
 }
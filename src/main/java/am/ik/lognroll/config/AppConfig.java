@@ -1,7 +1,17 @@
 package am.ik.lognroll.config;
 
+import java.io.IOException;
+
 import io.micrometer.core.instrument.config.MeterFilter;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.Strategy;
+import org.zalando.logbook.core.BodyOnlyIfStatusAtLeastStrategy;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
@@ -23,4 +33,36 @@ public class AppConfig {
 		});
 	}
 
+	@Bean
+	public Strategy logbookStrategy(@Value("${logbook.minimum-status:400}") int minimumStatus) {
+		Strategy delegate = new BodyOnlyIfStatusAtLeastStrategy(minimumStatus);
+		return new Strategy() {
+			@Override
+			public HttpRequest process(HttpRequest request) throws IOException {
+				// OTLP payloads are decoded as a stream and must not be buffered
+				// for logging
+				if ("/v1/logs".equals(request.getPath())) {
+					return request.withoutBody();
+				}
+				return delegate.process(request);
+			}
+
+			@Override
+			public void write(Precorrelation precorrelation, HttpRequest request, Sink sink) throws IOException {
+				delegate.write(precorrelation, request, sink);
+			}
+
+			@Override
+			public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+				return delegate.process(request, response);
+			}
+
+			@Override
+			public void write(Correlation correlation, HttpRequest request, HttpResponse response, Sink sink)
+					throws IOException {
+				delegate.write(correlation, request, response, sink);
+			}
+		};
+	}
+
 }
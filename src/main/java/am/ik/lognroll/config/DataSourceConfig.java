@@ -0,0 +1,78 @@
+package am.ik.lognroll.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.sqlite.SQLiteDataSource;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * The write and the read-only {@link javax.sql.DataSource DataSources} of the database.
+ * The write one is the primary, so that migrations, transactions and everything that is
+ * not only reading logs use it.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DataSourceConfig {
+
+	@Bean
+	@Primary
+	public HikariDataSource dataSource(DbProps props) {
+		return writeDataSource(props, props.path(), "lognroll-write");
+	}
+
+	@Bean
+	public HikariDataSource readDataSource(DbProps props) {
+		return readDataSource(props, props.path(), "lognroll-read", props.readPoolSize());
+	}
+
+	/**
+	 * Migrations open more than one connection, which the single write connection would
+	 * not allow, so they connect without a pool before the application starts.
+	 */
+	@Bean
+	@FlywayDataSource
+	public SQLiteDataSource flywayDataSource(DbProps props) {
+		return sqliteDataSource(props, false);
+	}
+
+	/**
+	 * Create the pool of the single write connection to the database file.
+	 */
+	public static HikariDataSource writeDataSource(DbProps props, String path, String poolName) {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setPoolName(poolName);
+		dataSource.setDataSource(sqliteDataSource(props, path, false));
+		dataSource.setMaximumPoolSize(1);
+		return dataSource;
+	}
+
+	/**
+	 * Create the pool of read-only connections to the database file.
+	 */
+	public static HikariDataSource readDataSource(DbProps props, String path, String poolName, int poolSize) {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setPoolName(poolName);
+		dataSource.setDataSource(sqliteDataSource(props, path, true));
+		// matches the flag the connections are opened with, which cannot be changed
+		dataSource.setReadOnly(true);
+		dataSource.setMaximumPoolSize(poolSize);
+		dataSource.setMinimumIdle(0);
+		return dataSource;
+	}
+
+	static SQLiteDataSource sqliteDataSource(DbProps props, boolean readOnly) {
+		return sqliteDataSource(props, props.path(), readOnly);
+	}
+
+	/**
+	 * Create an unpooled data source of the database file, e.g. for migrations.
+	 */
+	public static SQLiteDataSource sqliteDataSource(DbProps props, String path, boolean readOnly) {
+		SQLiteDataSource dataSource = new SQLiteDataSource(props.sqliteConfig(readOnly));
+		dataSource.setUrl("jdbc:sqlite:" + path);
+		return dataSource;
+	}
+
+}
@@ -0,0 +1,57 @@
+package am.ik.lognroll.config;
+
+import java.time.Duration;
+
+import org.sqlite.SQLiteConfig;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Connections to the database. Logs are written through a single connection, so writers
+ * queue in the application instead of retrying on {@code SQLITE_BUSY}, and read through a
+ * pool of read-only connections. In {@code WAL} mode readers and the writer do not block
+ * each other.
+ *
+ * @param path the path of the database file
+ * @param journalMode {@code PRAGMA journal_mode}
+ * @param synchronous {@code PRAGMA synchronous}. {@code NORMAL} is durable except for the
+ * last transactions before a power loss in {@code WAL} mode.
+ * @param busyTimeout {@code PRAGMA busy_timeout}, how long a connection waits for a lock
+ * @param mmapSize {@code PRAGMA mmap_size}, how much of the file is read through memory
+ * mapping instead of read calls. {@code 0} disables it.
+ * @param cacheSize {@code PRAGMA cache_size}, the page cache of each connection
+ * @param tempStore {@code PRAGMA temp_store}, where temporary tables and indexes, e.g.
+ * for sorting, are kept
+ * @param readPoolSize the maximum number of read-only connections
+ */
+@ConfigurationProperties(prefix = "lognroll.db")
+public record DbProps(String path, @DefaultValue("WAL") SQLiteConfig.JournalMode journalMode,
+		@DefaultValue("NORMAL") SQLiteConfig.SynchronousMode synchronous, @DefaultValue("5s") Duration busyTimeout,
+		@DefaultValue("256MB") DataSize mmapSize, @DefaultValue("32MB") DataSize cacheSize,
+		@DefaultValue("MEMORY") SQLiteConfig.TempStore tempStore, @DefaultValue("4") int readPoolSize) {
+
+	/**
+	 * Returns the settings of the connections to the database file.
+	 * @param readOnly whether the connections are opened read-only. The journal mode is
+	 * only set by read-write connections, since it is stored in the file.
+	 */
+	public SQLiteConfig sqliteConfig(boolean readOnly) {
+		SQLiteConfig config = new SQLiteConfig();
+		if (readOnly) {
+			config.setReadOnly(true);
+		}
+		else {
+			config.setJournalMode(this.journalMode);
+		}
+		config.setSynchronous(this.synchronous);
+		config.setBusyTimeout((int) this.busyTimeout.toMillis());
+		config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(this.mmapSize.toBytes()));
+		// a negative size is in KiB instead of pages
+		config.setCacheSize((int) -this.cacheSize.toKilobytes());
+		config.setTempStore(this.tempStore);
+		return config;
+	}
+
+}
@@ -1,22 +1,22 @@
 package am.ik.lognroll.config;
 
-import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import am.ik.lognroll.otlp.RequestDecompressionFilter;
 
-import org.springframework.boot.web.embedded.jetty.JettyServerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 
 @Configuration(proxyBeanMethods = false)
 public class WebServerConfig {
 
 	@Bean
-	public JettyServerCustomizer jettyServerCustomizer() {
-		return server -> {
-			GzipHandler gzipHandler = new GzipHandler();
-			gzipHandler.setInflateBufferSize(1);
-			gzipHandler.setHandler(server.getHandler());
-			server.setHandler(gzipHandler);
-		};
+	public FilterRegistrationBean<RequestDecompressionFilter> requestDecompressionFilter() {
+		FilterRegistrationBean<RequestDecompressionFilter> registration = new FilterRegistrationBean<>(
+				new RequestDecompressionFilter());
+		registration.addUrlPatterns("/v1/logs");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+		return registration;
 	}
 
 }
@@ -0,0 +1,177 @@
+package am.ik.lognroll.logs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import jakarta.annotation.Nullable;
+
+/**
+ * Writes attributes as JSON text with a streaming {@link JsonGenerator}, without building
+ * an intermediate {@link Map} for OTLP {@link KeyValue}s. The output is the same as
+ * serializing the {@link Map} produced by {@link Logs#anyToObject(AnyValue)} with
+ * Jackson's {@code ObjectMapper}. An instance reuses its buffer and is not thread-safe.
+ */
+public class AttributesJsonWriter {
+
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private final StringBuilderWriter writer = new StringBuilderWriter();
+
+	/**
+	 * Write the attributes of a log record merged with the attributes of its scope. Like
+	 * in {@link Logs#toBatch}, record attributes take precedence and scope attributes are
+	 * only included if the record has attributes.
+	 */
+	public String write(List<KeyValue> scopeAttributes, List<KeyValue> attributes) {
+		if (attributes.isEmpty()) {
+			return "{}";
+		}
+		this.writer.reset();
+		try (JsonGenerator generator = jsonFactory.createGenerator(this.writer)) {
+			generator.writeStartObject();
+			for (KeyValue attribute : scopeAttributes) {
+				if (!containsKey(attributes, 0, attribute.getKey())) {
+					generator.writeFieldName(attribute.getKey());
+					writeAnyValue(generator, attribute.getValue());
+				}
+			}
+			for (int i = 0; i < attributes.size(); i++) {
+				KeyValue attribute = attributes.get(i);
+				// the last one wins if a key is duplicated
+				if (!containsKey(attributes, i + 1, attribute.getKey())) {
+					generator.writeFieldName(attribute.getKey());
+					writeAnyValue(generator, attribute.getValue());
+				}
+			}
+			generator.writeEndObject();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return this.writer.toString();
+	}
+
+	public String write(Map<String, ?> attributes) {
+		if (attributes.isEmpty()) {
+			return "{}";
+		}
+		this.writer.reset();
+		try (JsonGenerator generator = jsonFactory.createGenerator(this.writer)) {
+			writeObject(generator, attributes);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return this.writer.toString();
+	}
+
+	private static boolean containsKey(List<KeyValue> attributes, int fromIndex, String key) {
+		for (int i = fromIndex; i < attributes.size(); i++) {
+			if (attributes.get(i).getKey().equals(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeAnyValue(JsonGenerator generator, AnyValue value) throws IOException {
+		switch (value.getValueCase()) {
+			case STRING_VALUE -> generator.writeString(value.getStringValue());
+			case BOOL_VALUE -> generator.writeBoolean(value.getBoolValue());
+			case INT_VALUE -> generator.writeNumber(value.getIntValue());
+			case DOUBLE_VALUE -> generator.writeNumber(value.getDoubleValue());
+			case BYTES_VALUE -> generator.writeBinary(value.getBytesValue().toByteArray());
+			case ARRAY_VALUE -> {
+				generator.writeStartArray();
+				for (AnyValue v : value.getArrayValue().getValuesList()) {
+					writeAnyValue(generator, v);
+				}
+				generator.writeEndArray();
+			}
+			case KVLIST_VALUE -> {
+				generator.writeStartObject();
+				for (KeyValue kv : value.getKvlistValue().getValuesList()) {
+					generator.writeFieldName(kv.getKey());
+					writeAnyValue(generator, kv.getValue());
+				}
+				generator.writeEndObject();
+			}
+			default -> generator.writeString("");
+		}
+	}
+
+	private static void writeObject(JsonGenerator generator, @Nullable Object value) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+			return;
+		}
+		switch (value) {
+			case String s -> generator.writeString(s);
+			case Boolean b -> generator.writeBoolean(b);
+			case Long l -> generator.writeNumber(l);
+			case Integer i -> generator.writeNumber(i);
+			case Double d -> generator.writeNumber(d);
+			case Float f -> generator.writeNumber(f);
+			case Number n -> generator.writeNumber(n.toString());
+			case byte[] bytes -> generator.writeBinary(bytes);
+			case Map<?, ?> map -> {
+				generator.writeStartObject();
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					generator.writeFieldName(String.valueOf(entry.getKey()));
+					writeObject(generator, entry.getValue());
+				}
+				generator.writeEndObject();
+			}
+			case Collection<?> collection -> {
+				generator.writeStartArray();
+				for (Object v : collection) {
+					writeObject(generator, v);
+				}
+				generator.writeEndArray();
+			}
+			default -> generator.writeString(value.toString());
+		}
+	}
+
+	private static class StringBuilderWriter extends Writer {
+
+		private final StringBuilder builder = new StringBuilder(256);
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			this.builder.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			this.builder.append(str, off, off + len);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		void reset() {
+			this.builder.setLength(0);
+		}
+
+		@Override
+		public String toString() {
+			return this.builder.toString();
+		}
+
+	}
+
+}
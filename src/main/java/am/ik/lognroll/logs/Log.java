@@ -3,24 +3,22 @@ package am.ik.lognroll.logs;
 import java.time.Instant;
 import java.util.Map;
 
+import am.ik.lognroll.util.MapDigest;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.annotation.Nullable;
 import org.jilt.Builder;
 
 @Builder
 public record Log(Long logId, Instant timestamp, Instant observedTimestamp, String severityText, Integer severityNumber,
 		String serviceName, String scope, String body, String traceId, String spanId, Integer traceFlags,
-		Map<String, Object> attributes, Map<String, Object> resourceAttributes) {
+		Map<String, Object> attributes, Map<String, Object> resourceAttributes,
+		@JsonIgnore @Nullable Long resourceAttributesDigest) {
 
-	@JsonIgnore
-	public long resourceAttributesDigest() {
-		return calculateMapDigest(this.resourceAttributes);
-	}
-
-	private static long calculateMapDigest(Map<?, ?> map) {
-		long hash = 0;
-		for (Map.Entry<?, ?> entry : map.entrySet()) {
-			hash += (entry.getKey().hashCode() ^ entry.getValue().hashCode());
+	public Log {
+		// the digest is usually calculated once per resource and passed by the caller
+		if (resourceAttributesDigest == null && resourceAttributes != null) {
+			resourceAttributesDigest = MapDigest.digest(resourceAttributes);
 		}
-		return hash;
 	}
+
 }
@@ -0,0 +1,245 @@
+package am.ik.lognroll.logs;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Column-oriented batch of logs that is handed from the OTLP decoders through the ingest
+ * pipeline to the {@link LogStore}. Every column is a primitive or {@link String} array,
+ * timestamps are kept as epoch nanoseconds and attributes are kept as JSON text that is
+ * written once while decoding, so that no {@link Log}, {@link Instant} or attribute
+ * {@link Map} has to be allocated per log record. Low cardinality strings such as the
+ * service name and the scope are interned per batch. Resource attributes are stored once
+ * per digest. A batch is not thread-safe.
+ */
+public final class LogBatch {
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private int size = 0;
+
+	private long[] timestamps;
+
+	private long[] observedTimestamps;
+
+	private String[] severityTexts;
+
+	private int[] severityNumbers;
+
+	private String[] serviceNames;
+
+	private String[] scopes;
+
+	private String[] bodies;
+
+	private String[] traceIds;
+
+	private String[] spanIds;
+
+	private int[] traceFlags;
+
+	private String[] attributes;
+
+	private long[] resourceAttributesDigests;
+
+	private final Map<Long, String> resourceAttributes = new LinkedHashMap<>();
+
+	private final Map<String, String> strings = new HashMap<>();
+
+	public LogBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LogBatch(int capacity) {
+		int c = Math.max(capacity, 1);
+		this.timestamps = new long[c];
+		this.observedTimestamps = new long[c];
+		this.severityTexts = new String[c];
+		this.severityNumbers = new int[c];
+		this.serviceNames = new String[c];
+		this.scopes = new String[c];
+		this.bodies = new String[c];
+		this.traceIds = new String[c];
+		this.spanIds = new String[c];
+		this.traceFlags = new int[c];
+		this.attributes = new String[c];
+		this.resourceAttributesDigests = new long[c];
+	}
+
+	public boolean hasResource(long digest) {
+		return this.resourceAttributes.containsKey(digest);
+	}
+
+	/**
+	 * Register the resource attributes (as JSON text) of a digest. Must be called before
+	 * a log that refers to the digest is added.
+	 */
+	public void addResource(long digest, String resourceAttributes) {
+		this.resourceAttributes.putIfAbsent(digest, resourceAttributes);
+	}
+
+	public void add(long timestamp, long observedTimestamp, String severityText, int severityNumber, String serviceName,
+			String scope, String body, String traceId, String spanId, int traceFlags, String attributes,
+			long resourceAttributesDigest) {
+		if (!this.resourceAttributes.containsKey(resourceAttributesDigest)) {
+			throw new IllegalStateException("Unknown resource digest: " + resourceAttributesDigest);
+		}
+		ensureCapacity(this.size + 1);
+		int i = this.size++;
+		this.timestamps[i] = timestamp;
+		this.observedTimestamps[i] = observedTimestamp;
+		this.severityTexts[i] = intern(severityText);
+		this.severityNumbers[i] = severityNumber;
+		this.serviceNames[i] = intern(serviceName);
+		this.scopes[i] = intern(scope);
+		this.bodies[i] = body;
+		this.traceIds[i] = traceId;
+		this.spanIds[i] = spanId;
+		this.traceFlags[i] = traceFlags;
+		this.attributes[i] = attributes;
+		this.resourceAttributesDigests[i] = resourceAttributesDigest;
+	}
+
+	/**
+	 * Append all logs of the given batch.
+	 */
+	public void addAll(LogBatch other) {
+		other.resourceAttributes.forEach(this.resourceAttributes::putIfAbsent);
+		ensureCapacity(this.size + other.size);
+		int n = other.size;
+		System.arraycopy(other.timestamps, 0, this.timestamps, this.size, n);
+		System.arraycopy(other.observedTimestamps, 0, this.observedTimestamps, this.size, n);
+		System.arraycopy(other.severityTexts, 0, this.severityTexts, this.size, n);
+		System.arraycopy(other.severityNumbers, 0, this.severityNumbers, this.size, n);
+		System.arraycopy(other.serviceNames, 0, this.serviceNames, this.size, n);
+		System.arraycopy(other.scopes, 0, this.scopes, this.size, n);
+		System.arraycopy(other.bodies, 0, this.bodies, this.size, n);
+		System.arraycopy(other.traceIds, 0, this.traceIds, this.size, n);
+		System.arraycopy(other.spanIds, 0, this.spanIds, this.size, n);
+		System.arraycopy(other.traceFlags, 0, this.traceFlags, this.size, n);
+		System.arraycopy(other.attributes, 0, this.attributes, this.size, n);
+		System.arraycopy(other.resourceAttributesDigests, 0, this.resourceAttributesDigests, this.size, n);
+		this.size += n;
+	}
+
+	/**
+	 * Return a new batch that contains only the logs whose index matches the predicate.
+	 */
+	public LogBatch filter(IntPredicate predicate) {
+		LogBatch filtered = new LogBatch(this.size);
+		for (int i = 0; i < this.size; i++) {
+			if (predicate.test(i)) {
+				long digest = this.resourceAttributesDigests[i];
+				filtered.addResource(digest, Objects.requireNonNull(this.resourceAttributes.get(digest)));
+				filtered.add(this.timestamps[i], this.observedTimestamps[i], this.severityTexts[i],
+						this.severityNumbers[i], this.serviceNames[i], this.scopes[i], this.bodies[i], this.traceIds[i],
+						this.spanIds[i], this.traceFlags[i], this.attributes[i], digest);
+			}
+		}
+		return filtered;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the timestamp of the i-th log in epoch nanoseconds.
+	 */
+	public long timestamp(int i) {
+		return this.timestamps[Objects.checkIndex(i, this.size)];
+	}
+
+	/**
+	 * Returns the observed timestamp of the i-th log in epoch nanoseconds.
+	 */
+	public long observedTimestamp(int i) {
+		return this.observedTimestamps[Objects.checkIndex(i, this.size)];
+	}
+
+	public String severityText(int i) {
+		return this.severityTexts[Objects.checkIndex(i, this.size)];
+	}
+
+	public int severityNumber(int i) {
+		return this.severityNumbers[Objects.checkIndex(i, this.size)];
+	}
+
+	public String serviceName(int i) {
+		return this.serviceNames[Objects.checkIndex(i, this.size)];
+	}
+
+	public String scope(int i) {
+		return this.scopes[Objects.checkIndex(i, this.size)];
+	}
+
+	public String body(int i) {
+		return this.bodies[Objects.checkIndex(i, this.size)];
+	}
+
+	public String traceId(int i) {
+		return this.traceIds[Objects.checkIndex(i, this.size)];
+	}
+
+	public String spanId(int i) {
+		return this.spanIds[Objects.checkIndex(i, this.size)];
+	}
+
+	public int traceFlags(int i) {
+		return this.traceFlags[Objects.checkIndex(i, this.size)];
+	}
+
+	/**
+	 * Returns the attributes of the i-th log as JSON text.
+	 */
+	public String attributes(int i) {
+		return this.attributes[Objects.checkIndex(i, this.size)];
+	}
+
+	public long resourceAttributesDigest(int i) {
+		return this.resourceAttributesDigests[Objects.checkIndex(i, this.size)];
+	}
+
+	/**
+	 * Returns the resource attributes as JSON text keyed by their digest.
+	 */
+	public Map<Long, String> resourceAttributes() {
+		return Collections.unmodifiableMap(this.resourceAttributes);
+	}
+
+	private String intern(String s) {
+		String interned = this.strings.putIfAbsent(s, s);
+		return interned != null ? interned : s;
+	}
+
+	private void ensureCapacity(int capacity) {
+		int length = this.timestamps.length;
+		if (capacity <= length) {
+			return;
+		}
+		int newLength = Math.max(capacity, length + (length >> 1));
+		this.timestamps = Arrays.copyOf(this.timestamps, newLength);
+		this.observedTimestamps = Arrays.copyOf(this.observedTimestamps, newLength);
+		this.severityTexts = Arrays.copyOf(this.severityTexts, newLength);
+		this.severityNumbers = Arrays.copyOf(this.severityNumbers, newLength);
+		this.serviceNames = Arrays.copyOf(this.serviceNames, newLength);
+		this.scopes = Arrays.copyOf(this.scopes, newLength);
+		this.bodies = Arrays.copyOf(this.bodies, newLength);
+		this.traceIds = Arrays.copyOf(this.traceIds, newLength);
+		this.spanIds = Arrays.copyOf(this.spanIds, newLength);
+		this.traceFlags = Arrays.copyOf(this.traceFlags, newLength);
+		this.attributes = Arrays.copyOf(this.attributes, newLength);
+		this.resourceAttributesDigests = Arrays.copyOf(this.resourceAttributesDigests, newLength);
+	}
+
+}
@@ -0,0 +1,106 @@
+package am.ik.lognroll.logs;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.LogField;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.Nullable;
+
+/**
+ * {@link FieldAccessor} over the logs of a {@link LogBatch}. Move it to a log with
+ * {@link #at(int)}. Attributes are looked up in the pre-serialized JSON text with a
+ * streaming parser, so no attribute map is materialized. Like the batch, an accessor is
+ * not thread-safe.
+ */
+public final class LogBatchFieldAccessor implements FieldAccessor {
+
+	private static final JsonFactory jsonFactory = JsonFactory.builder().build();
+
+	private final LogBatch batch;
+
+	private int index = 0;
+
+	public LogBatchFieldAccessor(LogBatch batch) {
+		this.batch = batch;
+	}
+
+	public LogBatchFieldAccessor at(int index) {
+		this.index = index;
+		return this;
+	}
+
+	@Override
+	@Nullable
+	public Object get(LogField field) {
+		int i = this.index;
+		return switch (field) {
+			case LOG_ID -> null;
+			case TIMESTAMP -> Math.floorDiv(this.batch.timestamp(i), 1_000_000L);
+			case OBSERVED_TIMESTAMP -> Math.floorDiv(this.batch.observedTimestamp(i), 1_000_000L);
+			case SEVERITY_TEXT -> this.batch.severityText(i);
+			case SEVERITY_NUMBER -> this.batch.severityNumber(i);
+			case SERVICE_NAME -> this.batch.serviceName(i);
+			case SCOPE -> this.batch.scope(i);
+			case BODY -> this.batch.body(i);
+			case TRACE_ID -> this.batch.traceId(i);
+			case SPAN_ID -> this.batch.spanId(i);
+			case TRACE_FLAGS -> this.batch.traceFlags(i);
+			case ATTRIBUTES -> this.batch.attributes(i);
+			case RESOURCE_ATTRIBUTES_DIGEST -> this.batch.resourceAttributesDigest(i);
+			case RESOURCE_ATTRIBUTES -> this.batch.resourceAttributes().get(this.batch.resourceAttributesDigest(i));
+		};
+	}
+
+	@Override
+	@Nullable
+	public Object attribute(LogField field, String name) {
+		Object json = get(field);
+		return json instanceof String s ? extract(s, name) : null;
+	}
+
+	/**
+	 * Look up a top-level key of a JSON object like {@code json_extract} does.
+	 */
+	@Nullable
+	static Object extract(String json, String name) {
+		try (JsonParser parser = jsonFactory.createParser(json)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				JsonToken token = parser.nextToken();
+				if (!name.equals(parser.currentName())) {
+					parser.skipChildren();
+					continue;
+				}
+				return switch (token) {
+					case VALUE_STRING -> parser.getText();
+					case VALUE_NUMBER_INT -> parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+							? parser.getDoubleValue() : parser.getLongValue();
+					case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+					case VALUE_TRUE -> 1L;
+					case VALUE_FALSE -> 0L;
+					case START_OBJECT, START_ARRAY -> {
+						StringWriter writer = new StringWriter();
+						try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+							generator.copyCurrentStructure(parser);
+						}
+						yield writer.toString();
+					}
+					default -> null;
+				};
+			}
+			return null;
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
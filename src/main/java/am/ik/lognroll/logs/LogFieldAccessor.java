@@ -0,0 +1,67 @@
+package am.ik.lognroll.logs;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.LogField;
+import am.ik.lognroll.util.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+
+/**
+ * {@link FieldAccessor} over a {@link Log}.
+ */
+public record LogFieldAccessor(Log log) implements FieldAccessor {
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Override
+	@Nullable
+	public Object get(LogField field) {
+		return switch (field) {
+			case LOG_ID -> this.log.logId();
+			case TIMESTAMP -> toEpochMilli(this.log.timestamp());
+			case OBSERVED_TIMESTAMP -> toEpochMilli(this.log.observedTimestamp());
+			case SEVERITY_TEXT -> this.log.severityText();
+			case SEVERITY_NUMBER -> this.log.severityNumber();
+			case SERVICE_NAME -> this.log.serviceName();
+			case SCOPE -> this.log.scope();
+			case BODY -> this.log.body();
+			case TRACE_ID -> this.log.traceId();
+			case SPAN_ID -> this.log.spanId();
+			case TRACE_FLAGS -> this.log.traceFlags();
+			case ATTRIBUTES -> toJson(this.log.attributes());
+			case RESOURCE_ATTRIBUTES_DIGEST -> this.log.resourceAttributesDigest();
+			case RESOURCE_ATTRIBUTES -> toJson(this.log.resourceAttributes());
+		};
+	}
+
+	@Override
+	@Nullable
+	public Object attribute(LogField field, String name) {
+		Map<String, Object> attributes = switch (field) {
+			case ATTRIBUTES -> this.log.attributes();
+			case RESOURCE_ATTRIBUTES -> this.log.resourceAttributes();
+			default -> null;
+		};
+		if (attributes == null) {
+			return null;
+		}
+		Object value = attributes.get(name);
+		// json_extract returns nested objects and arrays as JSON text
+		return (value instanceof Map<?, ?> || value instanceof Collection<?>) ? toJson(value) : value;
+	}
+
+	@Nullable
+	private static Long toEpochMilli(@Nullable Instant instant) {
+		return instant == null ? null : instant.toEpochMilli();
+	}
+
+	@Nullable
+	private static String toJson(@Nullable Object json) {
+		return json == null ? null : Json.stringify(objectMapper, json);
+	}
+
+}
@@ -19,21 +19,57 @@ public interface LogQuery {
 
 	int delete(SearchRequest request);
 
+	/**
+	 * Delete the matching logs whose ids are from {@code fromLogId} (inclusive) to
+	 * {@code toLogId} (exclusive) in one transaction.
+	 * @return the number of deleted logs
+	 */
+	int delete(SearchRequest request, long fromLogId, long toLogId);
+
+	/**
+	 * Returns the smallest log id that is greater than or equal to {@code fromLogId}, or
+	 * {@code null} if there is none. Ranges of log ids without logs can be skipped with
+	 * it.
+	 */
+	@Nullable
+	Long nextLogId(long fromLogId);
+
+	/**
+	 * Returns the largest log id, or {@code 0} if there are no logs. Log ids only grow,
+	 * so passing it as {@link SearchRequest#untilLogId()} pins a set of queries to the
+	 * same logs while new logs are added.
+	 */
+	long latestLogId();
+
 	record Volume(Instant date, long count) {
 
 	}
 
+	/**
+	 * Criteria of a search.
+	 *
+	 * @param untilLogId if set, only logs with an id up to and including this one match
+	 */
 	@Builder
 	record SearchRequest(String query, @Nullable CursorPageRequest<Cursor> pageRequest,
-			@Nullable Filter.Expression filterExpression, @Nullable Instant from, @Nullable Instant to) {
+			@Nullable Filter.Expression filterExpression, @Nullable Instant from, @Nullable Instant to,
+			@Nullable Long untilLogId) {
 
 	}
 
-	record Cursor(Instant timestamp, Instant observedTimestamp) {
+	/**
+	 * Position after the last log of a page in the order of the results, i.e.
+	 * {@code observedTimestamp}, {@code timestamp} and {@code logId}, all descending. The
+	 * log id breaks ties between logs with the same timestamps.
+	 */
+	record Cursor(Instant timestamp, Instant observedTimestamp, long logId) {
 
 		public static Cursor valueOf(String s) {
-			String[] vals = s.split(",", 2);
-			return new Cursor(Instant.parse(vals[0]), Instant.parse(vals[1]));
+			String[] vals = s.split(",", 3);
+			if (vals.length != 3) {
+				throw new IllegalArgumentException("Cursor must be 'timestamp,observedTimestamp,logId': " + s);
+			}
+			return new Cursor(Instant.parse(vals[0]), Instant.parse(vals[1]), Long.parseLong(vals[2]));
 		}
 	}
 
@@ -1,13 +1,19 @@
 package am.ik.lognroll.logs;
 
-import java.util.List;
+import java.time.Duration;
 
 public interface LogStore {
 
-	void addAll(List<Log> logs);
+	void addAll(LogBatch batch);
 
 	void clear();
 
-	void vacuum();
+	/**
+	 * Return free pages to the file system with {@code PRAGMA incremental_vacuum}, a few
+	 * at a time so that writes interleave, until the time budget is used up. Does nothing
+	 * unless the database is in incremental auto-vacuum mode.
+	 * @return the number of returned pages
+	 */
+	long vacuum(Duration timeBudget);
 
 }
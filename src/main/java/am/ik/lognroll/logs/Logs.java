@@ -1,12 +1,11 @@
 package am.ik.lognroll.logs;
 
-import java.time.Instant;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 
+import am.ik.lognroll.util.MapDigest;
 import io.opentelemetry.proto.common.v1.AnyValue;
 import io.opentelemetry.proto.common.v1.InstrumentationScope;
 import io.opentelemetry.proto.common.v1.KeyValue;
@@ -20,62 +19,63 @@ public class Logs {
 
 	private static final String SERVICE_NAME_ATTR = "service.name";
 
-	public static List<Log> from(LogsData logs) {
-		List<Log> result = new ArrayList<>();
+	private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+	/**
+	 * Convert the logs to a {@link LogBatch} without materializing {@link Log} instances.
+	 */
+	public static LogBatch toBatch(LogsData logs) {
+		LogBatch batch = new LogBatch();
+		AttributesJsonWriter writer = new AttributesJsonWriter();
 		for (int i = 0; i < logs.getResourceLogsCount(); i++) {
 			ResourceLogs resourceLogs = logs.getResourceLogs(i);
-			Map<String, Object> resourceAttributes = new HashMap<>();
-			String serviceName = "";
-			Resource resource = resourceLogs.getResource();
-			if (resource.getAttributesCount() > 0) {
-				for (KeyValue attribute : resource.getAttributesList()) {
-					if (SERVICE_NAME_ATTR.equals(attribute.getKey())) {
-						serviceName = anyToObject(attribute.getValue()).toString();
-					}
-					else {
-						resourceAttributes.put(attribute.getKey(), anyToObject(attribute.getValue()));
-					}
-				}
-			}
+			ResourceInfo resource = resource(resourceLogs.getResource());
 			for (int j = 0; j < resourceLogs.getScopeLogsCount(); j++) {
 				ScopeLogs scopeLogs = resourceLogs.getScopeLogs(j);
-				Map<String, Object> scopeAttributes = new HashMap<>();
-				InstrumentationScope scope = scopeLogs.getScope();
-				if (scope.getAttributesCount() > 0) {
-					scope.getAttributesList()
-						.forEach(attribute -> scopeAttributes.put(attribute.getKey(),
-								anyToObject(attribute.getValue())));
-				}
+				ScopeInfo scope = scope(scopeLogs.getScope());
 				for (int k = 0; k < scopeLogs.getLogRecordsCount(); k++) {
-					LogBuilder logBuilder = LogBuilder.log()
-						.scope(scope.getName())
-						.serviceName(serviceName)
-						.resourceAttributes(resourceAttributes);
-					Map<String, Object> attributes = new HashMap<>(scopeAttributes);
-					LogRecord logRecord = scopeLogs.getLogRecords(k);
-					logBuilder.timestamp(Instant.EPOCH.plusNanos(logRecord.getTimeUnixNano()));
-					logBuilder.observedTimestamp(Instant.EPOCH.plusNanos(logRecord.getObservedTimeUnixNano()));
-					logBuilder.severityText(logRecord.getSeverityText());
-					logBuilder.severityNumber(logRecord.getSeverityNumberValue());
-					logBuilder.body(anyToObject(logRecord.getBody()).toString() /* TODO */);
-					logBuilder.traceId(HexFormat.of().formatHex(logRecord.getTraceId().toByteArray()));
-					logBuilder.spanId(HexFormat.of().formatHex(logRecord.getSpanId().toByteArray()));
-					logBuilder.traceFlags(logRecord.getFlags());
-					if (logRecord.getAttributesCount() > 0) {
-						logRecord.getAttributesList()
-							.forEach(
-									attribute -> attributes.put(attribute.getKey(), anyToObject(attribute.getValue())));
-						logBuilder.attributes(attributes);
-					}
-					else {
-						logBuilder.attributes(Map.of());
-					}
-					Log log = logBuilder.build();
-					result.add(log);
+					append(batch, scopeLogs.getLogRecords(k), scope, resource, writer);
+				}
+			}
+		}
+		return batch;
+	}
+
+	public static ResourceInfo resource(Resource resource) {
+		Map<String, Object> resourceAttributes = new HashMap<>();
+		String serviceName = "";
+		if (resource.getAttributesCount() > 0) {
+			for (KeyValue attribute : resource.getAttributesList()) {
+				if (SERVICE_NAME_ATTR.equals(attribute.getKey())) {
+					serviceName = anyToObject(attribute.getValue()).toString();
+				}
+				else {
+					resourceAttributes.put(attribute.getKey(), anyToObject(attribute.getValue()));
 				}
 			}
 		}
-		return result;
+		return new ResourceInfo(serviceName, MapDigest.digest(resourceAttributes),
+				new AttributesJsonWriter().write(resourceAttributes));
+	}
+
+	public static ScopeInfo scope(InstrumentationScope scope) {
+		return new ScopeInfo(scope.getName(), scope.getAttributesList());
+	}
+
+	/**
+	 * Append a log record to the batch. The attributes are written as JSON directly from
+	 * the protobuf messages.
+	 */
+	public static void append(LogBatch batch, LogRecord logRecord, ScopeInfo scope, ResourceInfo resource,
+			AttributesJsonWriter writer) {
+		if (!batch.hasResource(resource.digest())) {
+			batch.addResource(resource.digest(), resource.attributesJson());
+		}
+		batch.add(logRecord.getTimeUnixNano(), logRecord.getObservedTimeUnixNano(), logRecord.getSeverityText(),
+				logRecord.getSeverityNumberValue(), resource.serviceName(), scope.name(),
+				anyToObject(logRecord.getBody()).toString(), HEX_FORMAT.formatHex(logRecord.getTraceId().toByteArray()),
+				HEX_FORMAT.formatHex(logRecord.getSpanId().toByteArray()), logRecord.getFlags(),
+				writer.write(scope.attributes(), logRecord.getAttributesList()), resource.digest());
 	}
 
 	static Object anyToObject(AnyValue value) {
@@ -107,4 +107,17 @@ public class Logs {
 		return "";
 	}
 
+	/**
+	 * Resource of a {@code ResourceLogs} that is shared by all of its log records.
+	 */
+	public record ResourceInfo(String serviceName, long digest, String attributesJson) {
+	}
+
+	/**
+	 * Instrumentation scope of a {@code ScopeLogs} that is shared by all of its log
+	 * records.
+	 */
+	public record ScopeInfo(String name, List<KeyValue> attributes) {
+	}
+
 }
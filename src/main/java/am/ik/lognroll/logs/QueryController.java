@@ -1,60 +1,86 @@
 package am.ik.lognroll.logs;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
 
 import am.ik.lognroll.logs.LogQuery.Cursor;
+import am.ik.lognroll.logs.delete.DeleteJob;
+import am.ik.lognroll.logs.delete.DeleteJobs;
+import am.ik.lognroll.logs.filter.Filter;
 import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.jdbc.AttributeIndexes;
 import am.ik.pagination.CursorPageRequest;
 import jakarta.annotation.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.sqlite.SQLiteException;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 public class QueryController {
 
 	private final LogQuery logQuery;
 
-	private final LogStore logStore;
+	private final DeleteJobs deleteJobs;
 
-	private final FilterExpressionTextParser parser = new FilterExpressionTextParser();
+	private final AttributeIndexes attributeIndexes;
 
-	private final Logger logger = LoggerFactory.getLogger(QueryController.class);
+	private final FilterExpressionTextParser parser = new FilterExpressionTextParser();
 
-	private final Resource dbFile;
+	private final JdbcClient readJdbcClient;
 
-	public QueryController(LogQuery logQuery, LogStore logStore, @Value("file://${lognroll.db.path}") Resource dbFile) {
+	public QueryController(LogQuery logQuery, DeleteJobs deleteJobs, AttributeIndexes attributeIndexes,
+			@Qualifier("readDataSource") DataSource readDataSource) {
 		this.logQuery = logQuery;
-		this.logStore = logStore;
-		this.dbFile = dbFile;
+		this.deleteJobs = deleteJobs;
+		this.attributeIndexes = attributeIndexes;
+		this.readJdbcClient = JdbcClient.create(readDataSource);
 	}
 
 	private LogQuery.SearchRequest buildRequest(String query, @Nullable CursorPageRequest<Cursor> pageRequest,
 			String filter, Instant from, Instant to) {
+		return buildRequest(query, pageRequest, filter, from, to, null);
+	}
+
+	private LogQuery.SearchRequest buildRequest(String query, @Nullable CursorPageRequest<Cursor> pageRequest,
+			String filter, Instant from, Instant to, @Nullable Long untilLogId) {
 		SearchRequestBuilder searchRequest = SearchRequestBuilder.searchRequest()
 			.pageRequest(pageRequest)
 			.from(from)
-			.to(to);
+			.to(to)
+			.untilLogId(untilLogId);
 		if (StringUtils.hasText(query)) {
 			searchRequest.query(query);
 		}
 		if (StringUtils.hasText(filter)) {
 			try {
-				searchRequest.filterExpression(this.parser.parse(filter));
+				Filter.Expression filterExpression = this.parser.parse(filter);
+				this.attributeIndexes.recordUsage(filterExpression);
+				searchRequest.filterExpression(filterExpression);
 			}
 			catch (FilterExpressionTextParser.FilterExpressionParseException e) {
 				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
@@ -112,28 +138,109 @@ public class QueryController {
 		}
 	}
 
+	/**
+	 * Returns the logs, the count and the volumes of a search at once. The three queries
+	 * run concurrently and are pinned to the logs that existed when the request started,
+	 * so that they agree with each other. The time spent on each of them is reported in
+	 * the {@code Server-Timing} header.
+	 */
+	@GetMapping(path = "/api/search")
+	public ResponseEntity<SearchResponse> search(@RequestParam(required = false) String query,
+			CursorPageRequest<Cursor> pageRequest, @RequestParam(required = false) String filter,
+			@RequestParam(required = false) Instant from, @RequestParam(required = false) Instant to,
+			@RequestParam(required = false, defaultValue = "PT10M") Duration interval) {
+		Timed<Long> snapshot = Timed.run(this.logQuery::latestLogId);
+		LogQuery.SearchRequest request = buildRequest(query, null, filter, from, to, snapshot.value());
+		LogQuery.SearchRequest logsRequest = new LogQuery.SearchRequest(request.query(), pageRequest,
+				request.filterExpression(), request.from(), request.to(), request.untilLogId());
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<Timed<List<Log>>> logs = executor
+				.submit(() -> Timed.run(() -> this.logQuery.findLatestLogs(logsRequest)));
+			Future<Timed<Long>> count = executor.submit(() -> Timed.run(() -> this.logQuery.count(request)));
+			Future<Timed<List<LogQuery.Volume>>> volumes = executor
+				.submit(() -> Timed.run(() -> this.logQuery.findVolumes(request, interval)));
+			SearchResponse response = new SearchResponse(get(logs).value(), get(count).value(), get(volumes).value());
+			return ResponseEntity.ok()
+				.header("Server-Timing", snapshot.serverTiming("snapshot"), get(logs).serverTiming("logs"),
+						get(count).serverTiming("count"), get(volumes).serverTiming("volumes"))
+				.body(response);
+		}
+	}
+
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof UncategorizedSQLException ex && ex.getCause() instanceof SQLiteException) {
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getCause().getMessage(), ex);
+			}
+			if (e.getCause() instanceof RuntimeException ex) {
+				throw ex;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Download a copy of the database. The file itself may be changed by a checkpoint
+	 * while it is read, and misses the logs that are only in the {@code -wal} file, so
+	 * the copy is written by {@code VACUUM INTO} on a read-only connection, which is a
+	 * consistent snapshot. It is deleted once it has been sent.
+	 */
 	@GetMapping(path = "/api/logs/download")
-	public Resource downloadLogs() {
-		return this.dbFile;
+	public ResponseEntity<StreamingResponseBody> downloadLogs() throws IOException {
+		Path directory = Files.createTempDirectory("lognroll-download");
+		Path copy = directory.resolve("lognroll.db");
+		try {
+			this.readJdbcClient.sql("VACUUM INTO ?").param(copy.toString()).update();
+			long size = Files.size(copy);
+			return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).contentLength(size).body(out -> {
+				try {
+					Files.copy(copy, out);
+				}
+				finally {
+					delete(directory, copy);
+				}
+			});
+		}
+		catch (IOException | RuntimeException e) {
+			delete(directory, copy);
+			throw e;
+		}
 	}
 
+	private static void delete(Path directory, Path copy) throws IOException {
+		Files.deleteIfExists(copy);
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * Start a job that deletes the matching logs in the background. The progress of the
+	 * job is shown at the returned location. A query that cannot be parsed is rejected
+	 * before the job is started.
+	 */
 	@DeleteMapping(path = "/api/logs")
-	public ResponseEntity<Void> delete(@RequestParam(required = false) String query,
+	public ResponseEntity<DeleteJob.Progress> delete(@RequestParam(required = false) String query,
 			@RequestParam(required = false) String filter, @RequestParam(required = false) Instant from,
 			@RequestParam(required = false) Instant to) {
 		LogQuery.SearchRequest request = buildRequest(query, null, filter, from, to);
 		try {
-			int deleted = this.logQuery.delete(request);
-			logger.info("Deleted {} logs", deleted);
-			this.logStore.vacuum();
+			DeleteJob job = this.deleteJobs.submit(request);
+			return ResponseEntity.accepted()
+				.location(URI.create("/api/logs/delete-jobs/" + job.id()))
+				.body(job.progress());
 		}
-		catch (UncategorizedSQLException e) {
-			if (e.getCause() instanceof SQLiteException) {
-				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getCause().getMessage(), e);
-			}
-			throw e;
+		catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		catch (IllegalStateException e) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
 		}
-		return ResponseEntity.noContent().build();
 	}
 
 	public record LogsResponse(List<Log> logs) {
@@ -145,4 +252,21 @@ public class QueryController {
 	public record VolumesResponse(List<LogQuery.Volume> volumes) {
 	}
 
+	public record SearchResponse(List<Log> logs, long totalCount, List<LogQuery.Volume> volumes) {
+	}
+
+	private record Timed<T>(T value, long nanos) {
+
+		static <T> Timed<T> run(Supplier<T> supplier) {
+			long start = System.nanoTime();
+			T value = supplier.get();
+			return new Timed<>(value, System.nanoTime() - start);
+		}
+
+		String serverTiming(String name) {
+			return String.format(Locale.ROOT, "%s;dur=%.1f", name, this.nanos / 1_000_000.0);
+		}
+
+	}
+
 }
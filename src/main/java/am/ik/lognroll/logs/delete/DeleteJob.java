@@ -0,0 +1,153 @@
+package am.ik.lognroll.logs.delete;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import am.ik.lognroll.logs.LogQuery.SearchRequest;
+import jakarta.annotation.Nullable;
+
+/**
+ * Deletes the logs that match a search and existed when the job was submitted. The job
+ * walks through the log ids from {@code firstLogId} to {@code lastLogId} in ranges, so
+ * that neither the ids nor a transaction grow with the number of matching logs. Its
+ * progress is the part of the matching logs that has been deleted, since the ids are
+ * spread unevenly, e.g. across partitions. The logs are counted when the job starts.
+ */
+public final class DeleteJob {
+
+	private final String id;
+
+	private final SearchRequest request;
+
+	private final long firstLogId;
+
+	private final long lastLogId;
+
+	private final Instant submittedAt;
+
+	private final AtomicLong deleted = new AtomicLong();
+
+	private volatile State state = State.QUEUED;
+
+	private volatile long nextLogId;
+
+	private volatile long total = -1;
+
+	private volatile boolean cancelRequested = false;
+
+	@Nullable
+	private volatile Instant finishedAt;
+
+	@Nullable
+	private volatile String error;
+
+	DeleteJob(String id, SearchRequest request, long firstLogId, long lastLogId, Instant submittedAt) {
+		this.id = id;
+		this.request = request;
+		this.firstLogId = firstLogId;
+		this.lastLogId = lastLogId;
+		this.submittedAt = submittedAt;
+		this.nextLogId = firstLogId;
+	}
+
+	public String id() {
+		return this.id;
+	}
+
+	SearchRequest request() {
+		return this.request;
+	}
+
+	long firstLogId() {
+		return this.firstLogId;
+	}
+
+	long lastLogId() {
+		return this.lastLogId;
+	}
+
+	public State state() {
+		return this.state;
+	}
+
+	boolean isCancelRequested() {
+		return this.cancelRequested;
+	}
+
+	void cancel() {
+		this.cancelRequested = true;
+	}
+
+	void start() {
+		this.state = State.RUNNING;
+	}
+
+	void count(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * Record a deleted range.
+	 * @param nextLogId the id the next range starts at
+	 */
+	void advance(long nextLogId, int deleted) {
+		this.nextLogId = nextLogId;
+		this.deleted.addAndGet(deleted);
+	}
+
+	void vacuum() {
+		this.state = State.VACUUMING;
+	}
+
+	void finish(State state, Instant finishedAt) {
+		this.finishedAt = finishedAt;
+		this.state = state;
+	}
+
+	void fail(String error, Instant finishedAt) {
+		this.error = error;
+		finish(State.FAILED, finishedAt);
+	}
+
+	public boolean isFinished() {
+		return this.state.isFinished();
+	}
+
+	public Progress progress() {
+		long deleted = this.deleted.get();
+		long total = this.total;
+		double ratio = switch (this.state) {
+			case QUEUED -> 0;
+			case VACUUMING, COMPLETED -> 1;
+			default -> total > 0 ? Math.min(1, (double) deleted / total) : total == 0 ? 1 : 0;
+		};
+		return new Progress(this.id, this.state, deleted, total, ratio, this.firstLogId, this.lastLogId, this.nextLogId,
+				this.submittedAt, this.finishedAt, this.error);
+	}
+
+	public enum State {
+
+		QUEUED, RUNNING, VACUUMING, COMPLETED, CANCELLED, FAILED;
+
+		public boolean isFinished() {
+			return this == COMPLETED || this == CANCELLED || this == FAILED;
+		}
+
+	}
+
+	/**
+	 * The progress of a job.
+	 *
+	 * @param deleted the number of logs deleted so far
+	 * @param total the number of matching logs when the job was submitted, or {@code -1}
+	 * until the job has counted them
+	 * @param ratio the part of {@code total} that has been deleted, from {@code 0} to
+	 * {@code 1}
+	 * @param nextLogId the id the next range starts at
+	 * @param error the reason the job failed, if it did
+	 */
+	public record Progress(String id, State state, long deleted, long total, double ratio, long firstLogId,
+			long lastLogId, long nextLogId, Instant submittedAt, @Nullable Instant finishedAt, @Nullable String error) {
+	}
+
+}
@@ -0,0 +1,51 @@
+package am.ik.lognroll.logs.delete;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+public class DeleteJobController {
+
+	private final DeleteJobs deleteJobs;
+
+	public DeleteJobController(DeleteJobs deleteJobs) {
+		this.deleteJobs = deleteJobs;
+	}
+
+	@GetMapping(path = "/api/logs/delete-jobs")
+	public DeleteJobsResponse showDeleteJobs() {
+		return new DeleteJobsResponse(this.deleteJobs.list().stream().map(DeleteJob::progress).toList());
+	}
+
+	@GetMapping(path = "/api/logs/delete-jobs/{id}")
+	public DeleteJob.Progress showDeleteJob(@PathVariable String id) {
+		DeleteJob job = this.deleteJobs.find(id);
+		if (job == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Delete job not found: " + id);
+		}
+		return job.progress();
+	}
+
+	/**
+	 * Cancel the job. It stops after the range of logs it is deleting, and the logs
+	 * deleted until then stay deleted.
+	 */
+	@DeleteMapping(path = "/api/logs/delete-jobs/{id}")
+	public DeleteJob.Progress cancel(@PathVariable String id) {
+		DeleteJob job = this.deleteJobs.cancel(id);
+		if (job == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Delete job not found: " + id);
+		}
+		return job.progress();
+	}
+
+	public record DeleteJobsResponse(List<DeleteJob.Progress> deleteJobs) {
+	}
+
+}
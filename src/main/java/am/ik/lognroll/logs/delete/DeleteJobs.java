@@ -0,0 +1,204 @@
+package am.ik.lognroll.logs.delete;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.LogQuery.SearchRequest;
+import am.ik.lognroll.logs.LogStore;
+import am.ik.query.QueryParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@link DeleteJob delete jobs} in the background, one at a time. Each range of log
+ * ids is deleted in a transaction of its own, so that ingest interleaves with a large
+ * delete, and a job can be cancelled between two ranges. Once a job has completed, free
+ * pages are returned to the file system within {@link DeleteProps#vacuumTimeBudget()}.
+ * <p>
+ * The deleted logs are counted as {@code logs.delete.deleted}.
+ */
+@Component
+public class DeleteJobs implements SmartLifecycle {
+
+	private final LogQuery logQuery;
+
+	private final LogStore logStore;
+
+	private final DeleteProps props;
+
+	private final Counter deletedLogs;
+
+	private final Map<String, DeleteJob> jobs = new LinkedHashMap<>();
+
+	private final Logger logger = LoggerFactory.getLogger(DeleteJobs.class);
+
+	@Nullable
+	private volatile ExecutorService executor;
+
+	private volatile boolean running = false;
+
+	public DeleteJobs(LogQuery logQuery, LogStore logStore, DeleteProps props, MeterRegistry registry) {
+		this.logQuery = logQuery;
+		this.logStore = logStore;
+		this.props = props;
+		this.deletedLogs = Counter.builder("logs.delete.deleted")
+			.description("Number of logs deleted by delete jobs")
+			.register(registry);
+	}
+
+	/**
+	 * Submit a job that deletes the logs matching the request that exist now. Logs stored
+	 * after that are kept. The query is parsed before the job is submitted, while the
+	 * matching logs are counted by the job.
+	 * @throws IllegalArgumentException if the query cannot be parsed
+	 * @throws IllegalStateException if the application is stopping
+	 */
+	public DeleteJob submit(SearchRequest request) {
+		ExecutorService executor = this.executor;
+		if (executor == null) {
+			throw new IllegalStateException("Delete jobs are not running");
+		}
+		String query = request.query();
+		if (query != null) {
+			try {
+				QueryParser.parseQuery(query);
+			}
+			catch (RuntimeException e) {
+				throw new IllegalArgumentException("Invalid query: " + query, e);
+			}
+		}
+		long lastLogId = this.logQuery.latestLogId();
+		Long firstLogId = this.logQuery.nextLogId(0);
+		DeleteJob job = new DeleteJob(UUID.randomUUID().toString(), request,
+				Objects.requireNonNullElse(firstLogId, lastLogId + 1), lastLogId, Instant.now());
+		synchronized (this.jobs) {
+			this.jobs.put(job.id(), job);
+			evictFinishedJobs();
+		}
+		executor.execute(() -> run(job));
+		return job;
+	}
+
+	@Nullable
+	public DeleteJob find(String id) {
+		synchronized (this.jobs) {
+			return this.jobs.get(id);
+		}
+	}
+
+	/**
+	 * Returns the jobs in the order they were submitted.
+	 */
+	public List<DeleteJob> list() {
+		synchronized (this.jobs) {
+			return List.copyOf(this.jobs.values());
+		}
+	}
+
+	/**
+	 * Cancel the job after the range that is being deleted. The logs deleted until then
+	 * stay deleted.
+	 * @return the job or {@code null} if there is no such job
+	 */
+	@Nullable
+	public DeleteJob cancel(String id) {
+		DeleteJob job = find(id);
+		if (job != null) {
+			job.cancel();
+		}
+		return job;
+	}
+
+	void run(DeleteJob job) {
+		if (job.isCancelRequested()) {
+			job.finish(DeleteJob.State.CANCELLED, Instant.now());
+			return;
+		}
+		job.start();
+		try {
+			SearchRequest request = job.request();
+			job.count(this.logQuery.count(new SearchRequest(request.query(), null, request.filterExpression(),
+					request.from(), request.to(), job.lastLogId())));
+			long from = job.firstLogId();
+			while (!job.isCancelRequested()) {
+				// skips the ids without logs, e.g. those between two partitions
+				Long next = this.logQuery.nextLogId(from);
+				if (next == null || next > job.lastLogId()) {
+					break;
+				}
+				long to = Math.min(next + this.props.rangeSize(), job.lastLogId() + 1);
+				int deleted = this.logQuery.delete(job.request(), next, to);
+				this.deletedLogs.increment(deleted);
+				job.advance(to, deleted);
+				from = to;
+			}
+			if (job.isCancelRequested()) {
+				logger.info("Cancelled delete job {} after deleting {} logs", job.id(), job.progress().deleted());
+				job.finish(DeleteJob.State.CANCELLED, Instant.now());
+				return;
+			}
+			job.advance(job.lastLogId() + 1, 0);
+			logger.info("Deleted {} logs by delete job {}", job.progress().deleted(), job.id());
+			if (job.progress().deleted() > 0) {
+				job.vacuum();
+				this.logStore.vacuum(this.props.vacuumTimeBudget());
+			}
+			job.finish(DeleteJob.State.COMPLETED, Instant.now());
+		}
+		catch (RuntimeException e) {
+			logger.warn("Delete job {} failed", job.id(), e);
+			job.fail(Objects.requireNonNullElse(e.getMessage(), e.getClass().getName()), Instant.now());
+		}
+	}
+
+	private void evictFinishedJobs() {
+		int finished = (int) this.jobs.values().stream().filter(DeleteJob::isFinished).count();
+		Iterator<DeleteJob> iterator = this.jobs.values().iterator();
+		while (finished > this.props.retainedJobs() && iterator.hasNext()) {
+			if (iterator.next().isFinished()) {
+				iterator.remove();
+				finished--;
+			}
+		}
+	}
+
+	@Override
+	public void start() {
+		this.executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("lognroll-delete").factory());
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		ExecutorService executor = this.executor;
+		if (executor != null) {
+			// the running job stops after its current range
+			for (DeleteJob job : list()) {
+				job.cancel();
+			}
+			executor.close();
+			this.executor = null;
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
@@ -0,0 +1,20 @@
+package am.ik.lognroll.logs.delete;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the delete jobs.
+ *
+ * @param rangeSize the number of log ids a delete job covers per transaction, so that
+ * ingest is blocked only briefly
+ * @param retainedJobs the number of finished jobs whose progress can still be shown
+ * @param vacuumTimeBudget the maximum time a completed job returns free pages to the file
+ * system. The rest is reused by new logs, or returned by the retention.
+ */
+@ConfigurationProperties(prefix = "lognroll.delete")
+public record DeleteProps(@DefaultValue("10000") int rangeSize, @DefaultValue("100") int retainedJobs,
+		@DefaultValue("10s") Duration vacuumTimeBudget) {
+}
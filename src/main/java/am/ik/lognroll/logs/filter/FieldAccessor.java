@@ -0,0 +1,28 @@
+package am.ik.lognroll.logs.filter;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Gives access to the fields of one log record for in-memory evaluation of filter
+ * expressions. Values are returned as SQLite would store them: text as {@link String},
+ * integers (including timestamps in epoch milliseconds) as {@link Long} or
+ * {@link Integer}, and JSON columns as their JSON text.
+ */
+public interface FieldAccessor {
+
+	/**
+	 * Returns the value of the field or {@code null} if it is not set.
+	 */
+	@Nullable
+	Object get(LogField field);
+
+	/**
+	 * Returns the value of a top-level key of a JSON field as returned by
+	 * {@code json_extract}, i.e. {@link String}, {@link Long}, {@link Double},
+	 * {@link Boolean} or the JSON text of nested objects and arrays, or {@code null} if
+	 * the key does not exist.
+	 */
+	@Nullable
+	Object attribute(LogField field, String name);
+
+}
@@ -0,0 +1,67 @@
+package am.ik.lognroll.logs.filter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * The column, and optionally the top-level key of its JSON value, that an identifier of a
+ * filter expression refers to. Identifiers are resolved as follows:
+ * <ul>
+ * <li>{@code attributes["user_agent.original"]} and
+ * {@code resource.attributes['service.name']} refer to a key of a JSON column</li>
+ * <li>{@code attributes.country} refers to the key after the first dot</li>
+ * <li>other identifiers such as {@code severityText} refer to the column with the snake
+ * case name</li>
+ * </ul>
+ *
+ * @param column the snake case column name
+ * @param attribute the key in the JSON value of the column, or {@code null} if the whole
+ * value is referred to
+ */
+public record FieldPath(String column, @Nullable String attribute) {
+
+	private static final Pattern ATTRIBUTES_PATTERN = Pattern
+		.compile("(\\w+\\.?\\w*)\\[\"(\\w+\\.?\\w*)\"\\]|(\\w+\\.?\\w*)\\['(\\w+\\.?\\w*)'\\]");
+
+	public static FieldPath parse(String identifier) {
+		String trimmed = identifier.trim();
+		if ((trimmed.startsWith("\"") && trimmed.endsWith("\""))
+				|| (trimmed.startsWith("'") && trimmed.endsWith("'"))) {
+			identifier = identifier.substring(1, identifier.length() - 1);
+		}
+		Matcher matcher = ATTRIBUTES_PATTERN.matcher(identifier);
+		if (matcher.matches()) {
+			String column = matcher.group(1) != null ? matcher.group(1) : matcher.group(3);
+			String name = matcher.group(2) != null ? matcher.group(2) : matcher.group(4);
+			return new FieldPath(toSnakeCase(column), name);
+		}
+		if (identifier.contains(".")) {
+			String[] vals = identifier.split("\\.", 2);
+			return new FieldPath(toSnakeCase(vals[0]), vals[1]);
+		}
+		return new FieldPath(toSnakeCase(identifier), null);
+	}
+
+	public static String toSnakeCase(String camelCase) {
+		if (camelCase.isEmpty()) {
+			return camelCase;
+		}
+		StringBuilder snakeCase = new StringBuilder(camelCase.length() + 4);
+		for (int i = 0; i < camelCase.length(); i++) {
+			char c = camelCase.charAt(i);
+			if (Character.isUpperCase(c)) {
+				snakeCase.append('_').append(Character.toLowerCase(c));
+			}
+			else if (c == '.') {
+				snakeCase.append('_');
+			}
+			else {
+				snakeCase.append(c);
+			}
+		}
+		return snakeCase.toString();
+	}
+
+}
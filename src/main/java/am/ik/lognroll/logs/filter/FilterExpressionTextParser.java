@@ -202,7 +202,12 @@ public class FilterExpressionTextParser {
 
 		@Override
 		public Filter.Operand visitIntegerConstant(FiltersParser.IntegerConstantContext ctx) {
-			return new Filter.Value(Integer.valueOf(ctx.getText()));
+			long value = Long.parseLong(ctx.getText());
+			if (value != (int) value) {
+				// e.g. timestamps in epoch milliseconds
+				return new Filter.Value(value);
+			}
+			return new Filter.Value((int) value);
 		}
 
 		@Override
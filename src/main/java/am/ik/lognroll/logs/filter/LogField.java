@@ -0,0 +1,84 @@
+package am.ik.lognroll.logs.filter;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Columns of the {@code log} table that filter expressions can refer to, together with
+ * the type affinity SQLite derives from their declared type.
+ */
+public enum LogField {
+
+	LOG_ID("log_id", Affinity.INTEGER),
+
+	TIMESTAMP("timestamp", Affinity.NUMERIC),
+
+	OBSERVED_TIMESTAMP("observed_timestamp", Affinity.NUMERIC),
+
+	SEVERITY_TEXT("severity_text", Affinity.TEXT),
+
+	SEVERITY_NUMBER("severity_number", Affinity.INTEGER),
+
+	SERVICE_NAME("service_name", Affinity.TEXT),
+
+	SCOPE("scope", Affinity.TEXT),
+
+	BODY("body", Affinity.TEXT),
+
+	TRACE_ID("trace_id", Affinity.TEXT),
+
+	SPAN_ID("span_id", Affinity.TEXT),
+
+	TRACE_FLAGS("trace_flags", Affinity.INTEGER),
+
+	ATTRIBUTES("attributes", Affinity.NUMERIC),
+
+	RESOURCE_ATTRIBUTES_DIGEST("resource_attributes_digest", Affinity.INTEGER),
+
+	RESOURCE_ATTRIBUTES("resource_attributes", Affinity.NUMERIC);
+
+	private final String column;
+
+	private final Affinity affinity;
+
+	LogField(String column, Affinity affinity) {
+		this.column = column;
+		this.affinity = affinity;
+	}
+
+	public String column() {
+		return this.column;
+	}
+
+	public Affinity affinity() {
+		return this.affinity;
+	}
+
+	/**
+	 * Whether the column holds a JSON object whose keys can be referred to.
+	 */
+	public boolean isJson() {
+		return this == ATTRIBUTES || this == RESOURCE_ATTRIBUTES;
+	}
+
+	@Nullable
+	public static LogField of(String column) {
+		for (LogField field : values()) {
+			if (field.column.equals(column)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <a href="https://www.sqlite.org/datatype3.html#type_affinity">Type affinity</a> of
+	 * a column. The {@code DATETIME} and {@code JSON} columns have {@code NUMERIC}
+	 * affinity.
+	 */
+	public enum Affinity {
+
+		TEXT, NUMERIC, INTEGER
+
+	}
+
+}
@@ -0,0 +1,134 @@
+package am.ik.lognroll.logs.filter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.regex.Pattern;
+
+import am.ik.lognroll.logs.filter.LogField.Affinity;
+import jakarta.annotation.Nullable;
+
+/**
+ * Value conversions and comparisons that follow
+ * <a href="https://www.sqlite.org/datatype3.html#comparison_expressions">the rules of
+ * SQLite</a>, so that filter expressions evaluated in memory match the same logs as the
+ * SQL produced by
+ * {@link am.ik.lognroll.logs.filter.converter.Sqlite3FilterExpressionConverter}.
+ * <ul>
+ * <li>Booleans are the integers {@code 1} and {@code 0}.</li>
+ * <li>Integers and reals compare numerically, and every number is less than any
+ * text.</li>
+ * <li>Texts compare with the {@code BINARY} collation, i.e. by code point.</li>
+ * </ul>
+ */
+public final class SqliteValues {
+
+	private static final Pattern NUMERIC = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+
+	private static final Pattern INTEGER = Pattern.compile("[+-]?\\d+");
+
+	private SqliteValues() {
+	}
+
+	/**
+	 * Convert a value to its SQLite storage class, {@link Long}, {@link Double} or
+	 * {@link String}.
+	 */
+	@Nullable
+	public static Object normalize(@Nullable Object value) {
+		if (value == null || value instanceof Long || value instanceof Double || value instanceof String) {
+			return value;
+		}
+		if (value instanceof Boolean b) {
+			return b ? 1L : 0L;
+		}
+		if (value instanceof BigInteger || value instanceof BigDecimal) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof Float || value instanceof Double) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof Number n) {
+			return n.longValue();
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Apply the affinity of a column to a normalized literal that is compared with the
+	 * column.
+	 */
+	public static Object applyAffinity(Affinity affinity, Object value) {
+		if (affinity == Affinity.TEXT) {
+			if (value instanceof Long l) {
+				return Long.toString(l);
+			}
+			if (value instanceof Double d) {
+				return toText(d);
+			}
+			return value;
+		}
+		if (value instanceof String s) {
+			String trimmed = s.strip();
+			if (INTEGER.matcher(trimmed).matches()) {
+				try {
+					return Long.parseLong(trimmed);
+				}
+				catch (NumberFormatException e) {
+					return Double.parseDouble(trimmed);
+				}
+			}
+			if (NUMERIC.matcher(trimmed).matches()) {
+				return Double.parseDouble(trimmed);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Compare two normalized values.
+	 */
+	public static int compare(Object left, Object right) {
+		if (left instanceof String l) {
+			return right instanceof String r ? compareText(l, r) : 1;
+		}
+		if (right instanceof String) {
+			return -1;
+		}
+		if (left instanceof Long l && right instanceof Long r) {
+			return Long.compare(l, r);
+		}
+		double l = ((Number) left).doubleValue();
+		double r = ((Number) right).doubleValue();
+		return (l < r) ? -1 : ((l > r) ? 1 : 0);
+	}
+
+	/**
+	 * Compare by code point, which is the order of the UTF-8 bytes that SQLite compares.
+	 */
+	static int compareText(String left, String right) {
+		int i = 0;
+		int j = 0;
+		while (i < left.length() && j < right.length()) {
+			int l = left.codePointAt(i);
+			int r = right.codePointAt(j);
+			if (l != r) {
+				return Integer.compare(l, r);
+			}
+			i += Character.charCount(l);
+			j += Character.charCount(r);
+		}
+		return Integer.compare(left.length() - i, right.length() - j);
+	}
+
+	/**
+	 * Text of a real as rendered by SQLite ({@code %!.15g}) for the common cases.
+	 */
+	static String toText(double d) {
+		if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+			return (long) d + ".0";
+		}
+		return new BigDecimal(d).round(new MathContext(15)).stripTrailingZeros().toString();
+	}
+
+}
@@ -0,0 +1,198 @@
+package am.ik.lognroll.logs.filter.converter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.FieldPath;
+import am.ik.lognroll.logs.filter.Filter;
+import am.ik.lognroll.logs.filter.Filter.Expression;
+import am.ik.lognroll.logs.filter.Filter.ExpressionType;
+import am.ik.lognroll.logs.filter.FilterHelper;
+import am.ik.lognroll.logs.filter.LogField;
+import am.ik.lognroll.logs.filter.SqliteValues;
+import jakarta.annotation.Nullable;
+
+/**
+ * Compiles a {@link Filter.Expression} into a {@link Predicate} that evaluates the
+ * expression against a log in memory, e.g. a {@link am.ik.lognroll.logs.LogBatch} record
+ * or a {@link am.ik.lognroll.logs.Log}. The identifiers are resolved like
+ * {@link Sqlite3FilterExpressionConverter} does (see {@link FieldPath}) and the values
+ * are compared with the rules of SQLite (see {@link SqliteValues}), so that a predicate
+ * matches the same logs as the SQL condition. A comparison with a missing value never
+ * matches, which is what the {@code WHERE} clause does with {@code NULL}.
+ * <p>
+ * Everything that does not depend on the log is done once while compiling: identifiers
+ * are resolved to fields, negations are pushed down to the comparisons, the affinity of
+ * the column is applied to the literals and {@code IN} lists of texts become hash sets.
+ * The resulting predicates are thread-safe.
+ */
+public class PredicateFilterExpressionConverter {
+
+	/**
+	 * Compile the expression into a predicate.
+	 * @throws IllegalArgumentException if the expression refers to an unknown field
+	 */
+	public Predicate<FieldAccessor> convertExpression(Filter.Expression expression) {
+		return compile(pushDownNot(expression));
+	}
+
+	private Predicate<FieldAccessor> compile(Filter.Operand operand) {
+		if (operand instanceof Filter.Group group) {
+			return compile(group.content());
+		}
+		if (!(operand instanceof Expression expression)) {
+			throw new IllegalArgumentException("Unexpected operand: " + operand);
+		}
+		if (expression.type() == ExpressionType.AND) {
+			Predicate<FieldAccessor> left = compile(expression.left());
+			Predicate<FieldAccessor> right = compile(Objects.requireNonNull(expression.right()));
+			return accessor -> left.test(accessor) && right.test(accessor);
+		}
+		if (expression.type() == ExpressionType.OR) {
+			Predicate<FieldAccessor> left = compile(expression.left());
+			Predicate<FieldAccessor> right = compile(Objects.requireNonNull(expression.right()));
+			return accessor -> left.test(accessor) || right.test(accessor);
+		}
+		if (!(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value value)) {
+			throw new IllegalArgumentException("Non AND/OR expression must have Key left and Value right argument!");
+		}
+		FieldPath path = FieldPath.parse(key.key());
+		LogField field = field(key, path);
+		String attribute = path.attribute();
+		Getter getter = attribute != null ? accessor -> SqliteValues.normalize(accessor.attribute(field, attribute))
+				: accessor -> SqliteValues.normalize(accessor.get(field));
+		// json_extract(...) has no affinity
+		LogField.Affinity affinity = attribute == null ? field.affinity() : null;
+		return switch (expression.type()) {
+			case EQ -> equalTo(getter, literal(affinity, value.value()));
+			case NE -> {
+				Object literal = literal(affinity, value.value());
+				yield accessor -> {
+					Object actual = getter.get(accessor);
+					return actual != null && SqliteValues.compare(actual, literal) != 0;
+				};
+			}
+			case LT -> compare(getter, literal(affinity, value.value()), c -> c < 0);
+			case LTE -> compare(getter, literal(affinity, value.value()), c -> c <= 0);
+			case GT -> compare(getter, literal(affinity, value.value()), c -> c > 0);
+			case GTE -> compare(getter, literal(affinity, value.value()), c -> c >= 0);
+			case IN -> in(getter, literals(affinity, value.value()), false);
+			case NIN -> in(getter, literals(affinity, value.value()), true);
+			default -> throw new IllegalArgumentException("Not supported expression type: " + expression.type());
+		};
+	}
+
+	private static Predicate<FieldAccessor> equalTo(Getter getter, Object literal) {
+		if (literal instanceof String text) {
+			// BINARY collation, i.e. equal texts are equal strings
+			return accessor -> text.equals(getter.get(accessor));
+		}
+		return accessor -> {
+			Object actual = getter.get(accessor);
+			return actual != null && SqliteValues.compare(actual, literal) == 0;
+		};
+	}
+
+	private static Predicate<FieldAccessor> compare(Getter getter, Object literal, IntPredicate result) {
+		return accessor -> {
+			Object actual = getter.get(accessor);
+			return actual != null && result.test(SqliteValues.compare(actual, literal));
+		};
+	}
+
+	private static Predicate<FieldAccessor> in(Getter getter, List<Object> literals, boolean negate) {
+		Set<String> texts = new HashSet<>();
+		List<Object> numbers = new ArrayList<>();
+		for (Object literal : literals) {
+			if (literal instanceof String text) {
+				texts.add(text);
+			}
+			else {
+				numbers.add(literal);
+			}
+		}
+		return accessor -> {
+			Object actual = getter.get(accessor);
+			if (actual == null) {
+				return false;
+			}
+			boolean found;
+			if (actual instanceof String text) {
+				found = texts.contains(text);
+			}
+			else {
+				found = false;
+				for (Object number : numbers) {
+					if (SqliteValues.compare(actual, number) == 0) {
+						found = true;
+						break;
+					}
+				}
+			}
+			return found != negate;
+		};
+	}
+
+	private static LogField field(Filter.Key key, FieldPath path) {
+		LogField field = LogField.of(path.column());
+		if (field == null) {
+			throw new IllegalArgumentException("Unknown field: " + key.key());
+		}
+		if (path.attribute() != null && !field.isJson()) {
+			throw new IllegalArgumentException("Field '%s' has no attributes: %s".formatted(field.column(), key.key()));
+		}
+		return field;
+	}
+
+	private static Object literal(@Nullable LogField.Affinity affinity, Object value) {
+		Object literal = Objects.requireNonNull(SqliteValues.normalize(value));
+		return affinity == null ? literal : SqliteValues.applyAffinity(affinity, literal);
+	}
+
+	private static List<Object> literals(@Nullable LogField.Affinity affinity, Object value) {
+		if (value instanceof List<?> list) {
+			return list.stream().map(v -> literal(affinity, v)).toList();
+		}
+		return List.of(literal(affinity, value));
+	}
+
+	/**
+	 * Push down negations to the comparisons. The operand of a {@code NOT} is freed from
+	 * negations before it is negated, so that {@link FilterHelper#negate} only sees
+	 * comparisons and groups.
+	 */
+	static Filter.Operand pushDownNot(Filter.Operand operand) {
+		if (operand instanceof Filter.Group group) {
+			Filter.Operand content = pushDownNot(group.content());
+			return content instanceof Expression expression ? new Filter.Group(expression) : content;
+		}
+		if (operand instanceof Expression expression) {
+			if (expression.type() == ExpressionType.NOT) {
+				return FilterHelper.negate(pushDownNot(expression.left()));
+			}
+			if (expression.type() == ExpressionType.AND || expression.type() == ExpressionType.OR) {
+				return new Expression(expression.type(), pushDownNot(expression.left()),
+						pushDownNot(Objects.requireNonNull(expression.right())));
+			}
+		}
+		return operand;
+	}
+
+	@FunctionalInterface
+	private interface Getter {
+
+		/**
+		 * @return the normalized value or {@code null} if it is missing
+		 */
+		@Nullable
+		Object get(FieldAccessor accessor);
+
+	}
+
+}
@@ -16,9 +16,7 @@
 
 package am.ik.lognroll.logs.filter.converter;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import am.ik.lognroll.logs.filter.FieldPath;
 import am.ik.lognroll.logs.filter.Filter;
 
 /**
@@ -73,26 +71,15 @@ public class Sqlite3FilterExpressionConverter extends AbstractFilterExpressionCo
 		}
 	}
 
-	private static final Pattern ATTRIBUTES_PATTERN = Pattern
-		.compile("(\\w+\\.?\\w*)\\[\"(\\w+\\.?\\w*)\"\\]|(\\w+\\.?\\w*)\\['(\\w+\\.?\\w*)'\\]");
-
 	@Override
 	protected void doKey(Filter.Key key, StringBuilder context) {
-		String identifier = hasOuterQuotes(key.key()) ? removeOuterQuotes(key.key()) : key.key();
-		Matcher matcher = ATTRIBUTES_PATTERN.matcher(identifier);
-		if (matcher.matches()) {
-			String column = matcher.group(1) != null ? matcher.group(1) : matcher.group(3);
-			String name = matcher.group(2) != null ? matcher.group(2) : matcher.group(4);
-			jsonExtract(context, column, name);
+		FieldPath path = FieldPath.parse(key.key());
+		String attribute = path.attribute();
+		if (attribute != null) {
+			context.append(jsonExtract(path.column(), attribute));
 		}
 		else {
-			if (identifier.contains(".")) {
-				String[] vals = identifier.split("\\.", 2);
-				jsonExtract(context, vals[0], vals[1]);
-			}
-			else {
-				context.append(toSnakeCase(identifier));
-			}
+			context.append(path.column());
 		}
 	}
 
@@ -106,35 +93,12 @@ public class Sqlite3FilterExpressionConverter extends AbstractFilterExpressionCo
 		context.append(")");
 	}
 
-	void jsonExtract(StringBuilder context, String column, String name) {
-		context.append("json_extract(")
-			.append(toSnakeCase(column))
-			.append(", '$.")
-			.append(name.contains(".") ? "\"" + name + "\"" : name)
-			.append("')");
-	}
-
-	static String toSnakeCase(String camelCase) {
-		if (camelCase == null || camelCase.isEmpty()) {
-			return camelCase;
-		}
-
-		StringBuilder snakeCase = new StringBuilder();
-		char[] charArray = camelCase.toCharArray();
-
-		for (char c : charArray) {
-			if (Character.isUpperCase(c)) {
-				snakeCase.append('_').append(Character.toLowerCase(c));
-			}
-			else if (c == '.') {
-				snakeCase.append('_');
-			}
-			else {
-				snakeCase.append(c);
-			}
-		}
-
-		return snakeCase.toString();
+	/**
+	 * Returns the expression that extracts the top-level key of a JSON column. Indexes on
+	 * an attribute have to use the same expression to be used by the filters.
+	 */
+	public static String jsonExtract(String column, String name) {
+		return "json_extract(" + column + ", '$." + (name.contains(".") ? "\"" + name + "\"" : name) + "')";
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.time.Duration;
+import java.util.List;
+
+import jakarta.annotation.Nullable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the ingest pipeline.
+ *
+ * @param mode whether ingested logs are written by the request thread ({@code direct}) or
+ * handed over to a single background writer ({@code queue})
+ * @param durability when a request is acknowledged in {@code queue} mode, after the batch
+ * is enqueued or after it is committed
+ * @param queueCapacity the maximum number of pending batches in {@code queue} mode
+ * @param maxBatchSize the maximum number of logs committed in one transaction by the
+ * writer
+ * @param maxBatchDelay the maximum time the writer waits for more batches before it
+ * commits
+ * @param maxPendingLogs the maximum number of logs that are accepted but not yet stored.
+ * Further logs are rejected until the backlog drains, and readiness is reported as
+ * refusing traffic meanwhile.
+ * @param retryAfter the delay suggested to rejected clients before they retry
+ * @param rules rules that drop or sample logs before they are stored. The first rule
+ * whose filter matches a log decides, logs that match no rule are stored.
+ */
+@ConfigurationProperties(prefix = "lognroll.ingest")
+public record IngestProps(@DefaultValue("direct") Mode mode, @DefaultValue("commit") Durability durability,
+		@DefaultValue("1024") int queueCapacity, @DefaultValue("10000") int maxBatchSize,
+		@DefaultValue("200ms") Duration maxBatchDelay, @DefaultValue("100000") int maxPendingLogs,
+		@DefaultValue("5s") Duration retryAfter, @DefaultValue List<Rule> rules) {
+
+	public enum Mode {
+
+		DIRECT, QUEUE
+
+	}
+
+	public enum Durability {
+
+		ENQUEUE, COMMIT
+
+	}
+
+	/**
+	 * A rule that drops or samples the logs that match its filter.
+	 *
+	 * @param name the name of the rule that is used as the {@code rule} tag of its
+	 * metrics. Defaults to {@code rules[<index>]}.
+	 * @param filter the filter expression that selects the logs the rule applies to, e.g.
+	 * {@code severityText == 'DEBUG' && serviceName == 'foo'}
+	 * @param action whether the selected logs are dropped or sampled
+	 * @param percentage the percentage of the selected logs that {@code sample} keeps at
+	 * random
+	 * @param oneIn keep every n-th of the selected logs with {@code sample} instead of a
+	 * random percentage
+	 */
+	public record Rule(@Nullable String name, String filter, @DefaultValue("drop") Action action,
+			@Nullable Double percentage, @Nullable Integer oneIn) {
+	}
+
+	public enum Action {
+
+		DROP, SAMPLE
+
+	}
+
+}
@@ -0,0 +1,22 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.time.Duration;
+
+/**
+ * Thrown when logs are not accepted because the ingest backlog is full. The client is
+ * expected to retry after {@link #getRetryAfter()}.
+ */
+public class IngestRejectedException extends RuntimeException {
+
+	private final Duration retryAfter;
+
+	public IngestRejectedException(String message, Duration retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	public Duration getRetryAfter() {
+		return this.retryAfter;
+	}
+
+}
@@ -0,0 +1,149 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogBatchFieldAccessor;
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.filter.converter.PredicateFilterExpressionConverter;
+import am.ik.lognroll.logs.ingest.IngestProps.Action;
+import am.ik.lognroll.logs.ingest.IngestProps.Rule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+
+/**
+ * Applies the {@link IngestProps#rules() ingest rules} to a decoded batch before it is
+ * stored. The filters are compiled to predicates that are evaluated in memory, the first
+ * matching rule decides whether a log is dropped or kept, and the outcome is counted per
+ * rule as {@code logs.ingest.rule}.
+ */
+class IngestRules {
+
+	private final List<CompiledRule> rules;
+
+	/**
+	 * @throws IllegalArgumentException if a rule is invalid
+	 */
+	IngestRules(List<Rule> rules, MeterRegistry registry) {
+		FilterExpressionTextParser parser = new FilterExpressionTextParser();
+		PredicateFilterExpressionConverter converter = new PredicateFilterExpressionConverter();
+		List<CompiledRule> compiled = new ArrayList<>(rules.size());
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = rules.get(i);
+			String name = Objects.requireNonNullElse(rule.name(), "rules[%d]".formatted(i));
+			compiled.add(new CompiledRule(name, compile(parser, converter, name, rule.filter()), rule.action(),
+					samplePercentage(name, rule), rule.oneIn(), new AtomicLong(), counter(registry, name, "kept"),
+					counter(registry, name, "dropped")));
+		}
+		this.rules = List.copyOf(compiled);
+	}
+
+	/**
+	 * Apply the rules to the batch.
+	 * @return the logs that are kept, or the given batch itself if no log is dropped
+	 */
+	LogBatch apply(LogBatch logs) {
+		if (this.rules.isEmpty() || logs.isEmpty()) {
+			return logs;
+		}
+		LogBatchFieldAccessor accessor = new LogBatchFieldAccessor(logs);
+		int[] kept = new int[this.rules.size()];
+		int[] dropped = new int[this.rules.size()];
+		boolean[] keep = new boolean[logs.size()];
+		int totalDropped = 0;
+		for (int i = 0; i < logs.size(); i++) {
+			keep[i] = true;
+			accessor.at(i);
+			for (int r = 0; r < this.rules.size(); r++) {
+				CompiledRule rule = this.rules.get(r);
+				if (rule.filter().test(accessor)) {
+					keep[i] = rule.keep();
+					if (keep[i]) {
+						kept[r]++;
+					}
+					else {
+						dropped[r]++;
+						totalDropped++;
+					}
+					break;
+				}
+			}
+		}
+		for (int r = 0; r < this.rules.size(); r++) {
+			CompiledRule rule = this.rules.get(r);
+			rule.kept().increment(kept[r]);
+			rule.dropped().increment(dropped[r]);
+		}
+		return totalDropped == 0 ? logs : logs.filter(i -> keep[i]);
+	}
+
+	private static Predicate<FieldAccessor> compile(FilterExpressionTextParser parser,
+			PredicateFilterExpressionConverter converter, String name, String filter) {
+		try {
+			return converter.convertExpression(parser.parse(filter));
+		}
+		catch (FilterExpressionTextParser.FilterExpressionParseException | IllegalArgumentException e) {
+			throw new IllegalArgumentException(
+					"Invalid filter of ingest rule '%s': %s (%s)".formatted(name, filter, e.getMessage()), e);
+		}
+	}
+
+	@Nullable
+	private static Double samplePercentage(String name, Rule rule) {
+		Double percentage = rule.percentage();
+		Integer oneIn = rule.oneIn();
+		if (rule.action() == Action.DROP) {
+			if (percentage != null || oneIn != null) {
+				throw new IllegalArgumentException(
+						"Ingest rule '%s' drops all matching logs. Use 'sample' to keep a part of them."
+							.formatted(name));
+			}
+			return null;
+		}
+		if ((percentage == null) == (oneIn == null)) {
+			throw new IllegalArgumentException(
+					"Ingest rule '%s' must specify either 'percentage' or 'one-in'".formatted(name));
+		}
+		if (percentage != null && (percentage < 0 || percentage > 100)) {
+			throw new IllegalArgumentException(
+					"'percentage' of ingest rule '%s' must be between 0 and 100".formatted(name));
+		}
+		if (oneIn != null && oneIn < 1) {
+			throw new IllegalArgumentException("'one-in' of ingest rule '%s' must be positive".formatted(name));
+		}
+		return percentage;
+	}
+
+	private static Counter counter(MeterRegistry registry, String name, String outcome) {
+		return Counter.builder("logs.ingest.rule")
+			.description("Number of logs that matched an ingest rule")
+			.tag("rule", name)
+			.tag("outcome", outcome)
+			.register(registry);
+	}
+
+	private record CompiledRule(String name, Predicate<FieldAccessor> filter, Action action,
+			@Nullable Double percentage, @Nullable Integer oneIn, AtomicLong matches, Counter kept, Counter dropped) {
+
+		boolean keep() {
+			if (this.action == Action.DROP) {
+				return false;
+			}
+			Integer oneIn = this.oneIn;
+			if (oneIn != null) {
+				return this.matches.getAndIncrement() % oneIn == 0;
+			}
+			Double percentage = this.percentage;
+			return percentage != null && ThreadLocalRandom.current().nextDouble(100) < percentage;
+		}
+
+	}
+
+}
@@ -0,0 +1,371 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.ingest.IngestProps.Durability;
+import am.ik.lognroll.logs.ingest.IngestProps.Mode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entry point of the ingest pipeline. In {@link Mode#DIRECT} mode the logs are stored by
+ * the calling thread. In {@link Mode#QUEUE} mode the logs are put into a bounded queue
+ * and a single writer thread merges the queued batches into large transactions, which
+ * avoids that concurrent exporters compete for the SQLite write lock. If the writer
+ * fails, the logs are stored by the calling threads from then on.
+ * <p>
+ * In both modes the number of logs that are accepted but not yet stored is bounded by
+ * {@link IngestProps#maxPendingLogs()}. Logs beyond that are rejected with an
+ * {@link IngestRejectedException} instead of piling up on request threads, and readiness
+ * is switched to {@link ReadinessState#REFUSING_TRAFFIC} until the backlog has drained to
+ * half of the limit.
+ * <p>
+ * Logs dropped by the {@link IngestProps#rules() ingest rules} are removed before they
+ * count towards the backlog. Stored logs are published as a {@link LogsStoredEvent}.
+ */
+@Component
+public class LogIngester implements SmartLifecycle {
+
+	private final LogStore logStore;
+
+	private final IngestProps props;
+
+	private final IngestRules rules;
+
+	private final BlockingQueue<Entry> queue;
+
+	private final AtomicInteger pendingLogs = new AtomicInteger();
+
+	private final Object readinessLock = new Object();
+
+	private volatile boolean saturated = false;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final Timer commitTimer;
+
+	private final DistributionSummary commitSize;
+
+	private final Counter rejectedLogs;
+
+	private final Logger logger = LoggerFactory.getLogger(LogIngester.class);
+
+	/**
+	 * Guards {@link #running}: ingest threads enqueue under the read lock and
+	 * {@link #stop()} flips the flag under the write lock, so that no batch is enqueued
+	 * after the final drain.
+	 */
+	private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+	private volatile boolean running = false;
+
+	@Nullable
+	private Thread writer;
+
+	public LogIngester(LogStore logStore, IngestProps props, MeterRegistry registry,
+			ApplicationEventPublisher eventPublisher) {
+		this.logStore = logStore;
+		this.props = props;
+		this.eventPublisher = eventPublisher;
+		this.rules = new IngestRules(props.rules(), registry);
+		this.queue = new ArrayBlockingQueue<>(props.queueCapacity());
+		Gauge.builder("logs.ingest.queue.depth", this.queue, BlockingQueue::size)
+			.description("Number of batches waiting for the ingest writer")
+			.register(registry);
+		Gauge.builder("logs.ingest.queue.logs", this.pendingLogs, AtomicInteger::get)
+			.description("Number of logs that are accepted but not yet stored")
+			.register(registry);
+		this.commitTimer = Timer.builder("logs.ingest.commit")
+			.description("Latency of the transactions that store ingested logs")
+			.register(registry);
+		this.commitSize = DistributionSummary.builder("logs.ingest.commit.size")
+			.description("Number of logs stored per transaction")
+			.register(registry);
+		this.rejectedLogs = Counter.builder("logs.ingest.rejected")
+			.description("Number of logs rejected because the ingest backlog was full")
+			.register(registry);
+	}
+
+	/**
+	 * Apply the ingest rules and store the remaining logs or hand them over to the
+	 * writer.
+	 * @throws IngestRejectedException if the ingest backlog is full
+	 */
+	public void ingest(LogBatch batch) {
+		LogBatch logs = this.rules.apply(batch);
+		if (logs.isEmpty()) {
+			return;
+		}
+		int size = logs.size();
+		acquire(size);
+		Entry entry = (this.props.mode() == Mode.QUEUE) ? enqueue(logs) : null;
+		if (entry == null) {
+			try {
+				this.commitTimer.record(() -> this.logStore.addAll(logs));
+				this.commitSize.record(size);
+			}
+			finally {
+				release(size);
+			}
+			this.eventPublisher.publishEvent(new LogsStoredEvent(logs));
+			return;
+		}
+		if (this.props.durability() == Durability.COMMIT) {
+			try {
+				entry.committed().join();
+			}
+			catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Hand the logs over to the writer.
+	 * @return the queued entry or {@code null} if the writer is not running and the logs
+	 * have to be stored by the calling thread
+	 */
+	@Nullable
+	private Entry enqueue(LogBatch logs) {
+		Lock lock = this.runningLock.readLock();
+		lock.lock();
+		try {
+			if (!this.running) {
+				return null;
+			}
+			Entry entry = new Entry(logs, new CompletableFuture<>());
+			if (!this.queue.offer(entry)) {
+				IngestRejectedException e = reject(logs.size(),
+						"The ingest queue is full (capacity: %d batches)".formatted(this.props.queueCapacity()));
+				release(logs.size());
+				throw e;
+			}
+			return entry;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void acquire(int size) {
+		int pending = this.pendingLogs.addAndGet(size);
+		// a batch that exceeds the limit on its own is accepted when nothing is pending
+		if (pending > this.props.maxPendingLogs() && pending != size) {
+			IngestRejectedException e = reject(size,
+					"Too many pending logs (max: %d)".formatted(this.props.maxPendingLogs()));
+			release(size);
+			throw e;
+		}
+	}
+
+	private void release(int size) {
+		this.pendingLogs.addAndGet(-size);
+		acceptIfDrained();
+	}
+
+	/**
+	 * Switch readiness back once the backlog has drained. Transitions are made under
+	 * {@link #readinessLock}, so that the events are published in the order of the
+	 * transitions.
+	 */
+	private void acceptIfDrained() {
+		int pending = this.pendingLogs.get();
+		if (!this.saturated || pending > this.props.maxPendingLogs() / 2
+				|| this.queue.size() > this.props.queueCapacity() / 2) {
+			return;
+		}
+		synchronized (this.readinessLock) {
+			if (this.saturated) {
+				this.saturated = false;
+				logger.info("Ingest backlog has drained ({} pending logs). Accepting traffic again.", pending);
+				AvailabilityChangeEvent.publish(this.eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+			}
+		}
+	}
+
+	IngestRejectedException reject(int size, String message) {
+		this.rejectedLogs.increment(size);
+		synchronized (this.readinessLock) {
+			if (!this.saturated) {
+				this.saturated = true;
+				logger.warn("Ingest backlog is saturated. Refusing traffic until it drains. {}", message);
+				AvailabilityChangeEvent.publish(this.eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+			}
+		}
+		// the last pending logs may have been stored before readiness was switched, and
+		// no traffic arrives to switch it back while it refuses traffic
+		acceptIfDrained();
+		return new IngestRejectedException(message, this.props.retryAfter());
+	}
+
+	private void runWriter() {
+		List<Entry> entries = new ArrayList<>();
+		while (this.running || !this.queue.isEmpty()) {
+			try {
+				Entry first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				entries.add(first);
+				int size = first.logs().size();
+				long deadline = System.nanoTime() + this.props.maxBatchDelay().toNanos();
+				while (size < this.props.maxBatchSize()) {
+					long remaining = deadline - System.nanoTime();
+					Entry next = this.running ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : this.queue.poll();
+					if (next == null) {
+						break;
+					}
+					entries.add(next);
+					size += next.logs().size();
+				}
+				commit(entries, size);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (RuntimeException | Error e) {
+				logger.error("The ingest writer has failed. Logs are stored by the ingest threads from now on.", e);
+				abandon(entries, e);
+				return;
+			}
+			finally {
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Fall back to {@link Mode#DIRECT} after the writer has failed, and fail the batches
+	 * that it will not store, so that nobody waits for them forever.
+	 */
+	private void abandon(List<Entry> entries, Throwable cause) {
+		Lock lock = this.runningLock.writeLock();
+		lock.lock();
+		try {
+			this.running = false;
+		}
+		finally {
+			lock.unlock();
+		}
+		List<Entry> abandoned = new ArrayList<>();
+		// committed entries are completed and given back already
+		entries.stream().filter(entry -> !entry.committed().isDone()).forEach(abandoned::add);
+		this.queue.drainTo(abandoned);
+		IllegalStateException e = new IllegalStateException("The ingest writer has failed", cause);
+		for (Entry entry : abandoned) {
+			entry.committed().completeExceptionally(e);
+			release(entry.logs().size());
+		}
+	}
+
+	private void commit(List<Entry> entries, int size) {
+		LogBatch logs;
+		if (entries.size() == 1) {
+			logs = entries.getFirst().logs();
+		}
+		else {
+			logs = new LogBatch(size);
+			for (Entry entry : entries) {
+				logs.addAll(entry.logs());
+			}
+		}
+		try {
+			this.commitTimer.record(() -> this.logStore.addAll(logs));
+			this.commitSize.record(size);
+			entries.forEach(entry -> entry.committed().complete(null));
+			this.eventPublisher.publishEvent(new LogsStoredEvent(logs));
+		}
+		catch (RuntimeException e) {
+			logger.warn("Failed to store {} logs", size, e);
+			entries.forEach(entry -> entry.committed().completeExceptionally(e));
+		}
+		catch (Error e) {
+			entries.forEach(entry -> entry.committed().completeExceptionally(e));
+			throw e;
+		}
+		finally {
+			release(size);
+		}
+	}
+
+	@Override
+	public void start() {
+		if (this.props.mode() == Mode.QUEUE) {
+			this.running = true;
+			this.writer = Thread.ofPlatform().name("lognroll-ingest-writer").start(this::runWriter);
+		}
+	}
+
+	@Override
+	public void stop() {
+		Lock lock = this.runningLock.writeLock();
+		lock.lock();
+		try {
+			this.running = false;
+		}
+		finally {
+			lock.unlock();
+		}
+		// readiness is managed by the application context from here on
+		this.saturated = false;
+		Thread writer = this.writer;
+		if (writer != null) {
+			try {
+				writer.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.writer = null;
+		}
+		// batches enqueued while the writer was shutting down
+		List<Entry> remaining = new ArrayList<>();
+		this.queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			commit(remaining, remaining.stream().mapToInt(entry -> entry.logs().size()).sum());
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.writer != null;
+	}
+
+	@Override
+	public int getPhase() {
+		// start before and stop after the web server so that queued logs are flushed
+		return SmartLifecycle.DEFAULT_PHASE - 4096;
+	}
+
+	private record Entry(LogBatch logs, CompletableFuture<Void> committed) {
+	}
+
+}
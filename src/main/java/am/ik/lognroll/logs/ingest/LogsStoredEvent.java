@@ -0,0 +1,12 @@
+package am.ik.lognroll.logs.ingest;
+
+import am.ik.lognroll.logs.LogBatch;
+
+/**
+ * Published by the {@link LogIngester} after logs are stored. Listeners are called on the
+ * ingest path and must neither block nor modify the batch.
+ *
+ * @param logs the stored logs
+ */
+public record LogsStoredEvent(LogBatch logs) {
+}
@@ -0,0 +1,43 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the attribute indexes.
+ *
+ * @param autoPromoteThreshold the number of search requests that filter an attribute
+ * after which the attribute is indexed. {@code 0} disables automatic indexing.
+ * @param maxIndexes the maximum number of attributes that are indexed automatically.
+ * Attributes indexed by configuration or by the admin API do not count towards the limit,
+ * but the limit is not exceeded by automatic indexing.
+ * @param promoted attributes that are indexed on startup, e.g. {@code http.route}
+ * @param inverted the inverted index of all attributes
+ */
+@ConfigurationProperties(prefix = "lognroll.attribute-index")
+public record AttributeIndexProps(@DefaultValue("100") int autoPromoteThreshold, @DefaultValue("5") int maxIndexes,
+		@DefaultValue List<String> promoted, @DefaultValue Inverted inverted) {
+
+	/**
+	 * Settings of the inverted attribute index.
+	 *
+	 * @param enabled whether the scalar top-level attributes of every stored log are
+	 * indexed in the {@code log_attr} table, so that {@code ==} and {@code IN} filters on
+	 * any attribute are answered from the index. Existing logs are indexed when it is
+	 * enabled, and the index is dropped when it is disabled.
+	 * @param maxValuesPerKey attributes with more distinct values than this are removed
+	 * from the index and no longer indexed, e.g. ids or timestamps
+	 * @param checkInterval how often the number of distinct values per attribute is
+	 * checked
+	 */
+	public record Inverted(@DefaultValue("false") boolean enabled, @DefaultValue("1000") int maxValuesPerKey,
+			@DefaultValue("1m") Duration checkInterval) {
+
+		public static final Inverted DISABLED = new Inverted(false, 1000, Duration.ofMinutes(1));
+
+	}
+
+}
@@ -0,0 +1,458 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import am.ik.lognroll.logs.filter.FieldPath;
+import am.ik.lognroll.logs.filter.Filter;
+import am.ik.lognroll.logs.filter.converter.Sqlite3FilterExpressionConverter;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Indexes the attributes of logs that are filtered most often. An attribute is indexed
+ * with an expression index on the same {@code json_extract} expression that
+ * {@link Sqlite3FilterExpressionConverter} produces for it, so the filters use the index
+ * as they are. Unlike a generated column, an expression index is added and dropped
+ * without rewriting the {@code log} table.
+ * <p>
+ * Attributes are indexed when they are configured, when they are promoted through the
+ * admin API, or automatically once {@link AttributeIndexProps#autoPromoteThreshold()}
+ * search requests have filtered them. Indexes are created one at a time in the
+ * background. Creating an index on a large table blocks writes until it is done.
+ * <p>
+ * If {@link AttributeIndexProps.Inverted#enabled() enabled}, all scalar top-level
+ * attributes are also indexed in the {@code log_attr} table by triggers on {@code log},
+ * like {@code log_fts}, and {@code ==} and {@code IN} filters on attributes that have no
+ * expression index are answered from it. Attributes with too many distinct values are
+ * excluded from it periodically.
+ */
+@Component
+public class AttributeIndexes implements SmartLifecycle {
+
+	static final String ATTRIBUTES = "attributes";
+
+	static final int MAX_TRACKED_ATTRIBUTES = 1000;
+
+	private static final Pattern NAME_PATTERN = Pattern.compile("[\\w.\\-]+");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final JdbcTemplate readJdbcTemplate;
+
+	private final AttributeIndexProps props;
+
+	private final Map<String, AtomicLong> usage = new ConcurrentHashMap<>();
+
+	private final Set<String> promoted = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> autoPromoted = ConcurrentHashMap.newKeySet();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Logger logger = LoggerFactory.getLogger(AttributeIndexes.class);
+
+	private final Set<String> excludedKeys = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean invertedReady = false;
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> cardinalityCheck;
+
+	/**
+	 * Create the attribute indexes.
+	 * @param jdbcTemplate the template that indexes are created and dropped with
+	 * @param readDataSource the data source that the cardinality of the attributes is
+	 * checked on, so that the check does not hold the write connection
+	 * @param props the settings of the indexes
+	 */
+	public AttributeIndexes(JdbcTemplate jdbcTemplate, @Qualifier("readDataSource") DataSource readDataSource,
+			AttributeIndexProps props) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.readJdbcTemplate = new JdbcTemplate(readDataSource);
+		this.props = props;
+	}
+
+	/**
+	 * Counts a search with the filter. Each attribute is counted once per call, so this
+	 * is called once per search request, however many queries run for it.
+	 */
+	public void recordUsage(Filter.Expression expression) {
+		Set<FieldPath> paths = new HashSet<>();
+		collectPaths(expression, paths);
+		paths.forEach(this::recordUsage);
+	}
+
+	private static void collectPaths(@Nullable Filter.Operand operand, Set<FieldPath> paths) {
+		if (operand instanceof Filter.Key key) {
+			paths.add(FieldPath.parse(key.key()));
+		}
+		else if (operand instanceof Filter.Group group) {
+			collectPaths(group.content(), paths);
+		}
+		else if (operand instanceof Filter.Expression expression) {
+			collectPaths(expression.left(), paths);
+			collectPaths(expression.right(), paths);
+		}
+	}
+
+	/**
+	 * Counts a filter on the identifier and schedules indexing the attribute when it
+	 * reaches the threshold.
+	 */
+	void recordUsage(FieldPath path) {
+		String name = path.attribute();
+		if (!ATTRIBUTES.equals(path.column()) || name == null || !NAME_PATTERN.matcher(name).matches()) {
+			return;
+		}
+		AtomicLong count = this.usage.get(name);
+		if (count == null) {
+			if (this.usage.size() >= MAX_TRACKED_ATTRIBUTES) {
+				return;
+			}
+			count = this.usage.computeIfAbsent(name, n -> new AtomicLong());
+		}
+		long threshold = this.props.autoPromoteThreshold();
+		if (count.incrementAndGet() == threshold && !this.promoted.contains(name)) {
+			ScheduledExecutorService executor = this.executor;
+			if (executor != null) {
+				executor.execute(() -> autoPromote(name));
+			}
+		}
+	}
+
+	/**
+	 * Returns the indexed attributes and the filtered ones, most filtered first.
+	 */
+	public List<AttributeIndex> list() {
+		Set<String> names = new HashSet<>(this.usage.keySet());
+		names.addAll(this.promoted);
+		return names.stream()
+			.map(name -> new AttributeIndex(name, usage(name), this.promoted.contains(name)))
+			.sorted(Comparator.comparingLong(AttributeIndex::usage).reversed().thenComparing(AttributeIndex::name))
+			.toList();
+	}
+
+	/**
+	 * Index the attribute unless it is already indexed. Blocks until the index is built.
+	 * @return {@code false} if the attribute was already indexed
+	 * @throws IllegalArgumentException if the name is not a valid attribute name
+	 */
+	public boolean promote(String name) {
+		return promote(name, false);
+	}
+
+	private boolean promote(String name, boolean automatic) {
+		validate(name);
+		this.lock.lock();
+		try {
+			if (this.promoted.contains(name)) {
+				return false;
+			}
+			String indexName = indexName(name);
+			long start = System.nanoTime();
+			this.jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS %s ON log (%s)".formatted(indexName,
+					Sqlite3FilterExpressionConverter.jsonExtract(ATTRIBUTES, name)));
+			this.jdbcTemplate.update(
+					"INSERT OR REPLACE INTO attribute_index(name, index_name, automatic, created_at) VALUES (?, ?, ?, ?)",
+					name, indexName, automatic, Timestamp.from(Instant.now()));
+			this.promoted.add(name);
+			if (automatic) {
+				this.autoPromoted.add(name);
+			}
+			logger.info("Indexed attribute '{}' as {} in {} ms", name, indexName,
+					(System.nanoTime() - start) / 1_000_000);
+			return true;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Drop the index of the attribute. The attribute is indexed automatically again once
+	 * it reaches the threshold again.
+	 * @return {@code false} if the attribute was not indexed
+	 */
+	public boolean demote(String name) {
+		validate(name);
+		this.lock.lock();
+		try {
+			if (!this.promoted.contains(name)) {
+				return false;
+			}
+			this.jdbcTemplate.execute("DROP INDEX IF EXISTS %s".formatted(indexName(name)));
+			this.jdbcTemplate.update("DELETE FROM attribute_index WHERE name = ?", name);
+			this.promoted.remove(name);
+			this.autoPromoted.remove(name);
+			AtomicLong count = this.usage.get(name);
+			if (count != null) {
+				count.set(0);
+			}
+			logger.info("Dropped the index of attribute '{}'", name);
+			return true;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void autoPromote(String name) {
+		if (this.autoPromoted.size() >= this.props.maxIndexes()) {
+			logger.info("Not indexing attribute '{}' because {} attributes are already indexed automatically", name,
+					this.autoPromoted.size());
+			return;
+		}
+		try {
+			promote(name, true);
+		}
+		catch (RuntimeException e) {
+			logger.warn("Failed to index attribute '{}'", name, e);
+		}
+	}
+
+	/**
+	 * Returns whether {@code ==} and {@code IN} filters on the attribute can be answered
+	 * from the {@code log_attr} table.
+	 */
+	public boolean isInverted(String name) {
+		return this.invertedReady && NAME_PATTERN.matcher(name).matches() && !this.excludedKeys.contains(name)
+				&& !this.promoted.contains(name);
+	}
+
+	/**
+	 * Index the existing logs and create the triggers that index new ones, in one
+	 * transaction.
+	 */
+	void enableInverted() {
+		this.lock.lock();
+		try {
+			if (!triggerExists()) {
+				long start = System.nanoTime();
+				this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+					connection.setAutoCommit(false);
+					try (Statement statement = connection.createStatement()) {
+						statement.execute("""
+								INSERT OR IGNORE INTO log_attr (key, value, log_id)
+								SELECT attribute.key, attribute.value, log.log_id
+								FROM log, json_each(log.attributes) AS attribute
+								WHERE attribute.type NOT IN ('object', 'array', 'null')
+								  AND attribute.key NOT IN (SELECT key FROM log_attr_excluded_key)
+								""");
+						statement.execute("""
+								CREATE TRIGGER log_attr_ai
+								    AFTER INSERT
+								    ON log
+								BEGIN
+								    INSERT OR IGNORE INTO log_attr (key, value, log_id)
+								    SELECT key, value, new.log_id
+								    FROM json_each(new.attributes)
+								    WHERE type NOT IN ('object', 'array', 'null')
+								      AND key NOT IN (SELECT key FROM log_attr_excluded_key);
+								END
+								""");
+						statement.execute("""
+								CREATE TRIGGER log_attr_ad
+								    AFTER DELETE
+								    ON log
+								BEGIN
+								    DELETE FROM log_attr WHERE log_id = old.log_id;
+								END
+								""");
+						connection.commit();
+					}
+					catch (SQLException e) {
+						connection.rollback();
+						throw e;
+					}
+					finally {
+						connection.setAutoCommit(true);
+					}
+					return null;
+				});
+				logger.info("Indexed the attributes of the existing logs in {} ms",
+						(System.nanoTime() - start) / 1_000_000);
+			}
+			this.invertedReady = true;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Drop the triggers and the index, which would be incomplete from now on.
+	 */
+	void disableInverted() {
+		this.lock.lock();
+		try {
+			this.invertedReady = false;
+			if (triggerExists()) {
+				this.jdbcTemplate.execute("DROP TRIGGER IF EXISTS log_attr_ai");
+				this.jdbcTemplate.execute("DROP TRIGGER IF EXISTS log_attr_ad");
+				this.jdbcTemplate.update("DELETE FROM log_attr");
+				this.jdbcTemplate.update("DELETE FROM log_attr_excluded_key");
+				this.excludedKeys.clear();
+				logger.info("Dropped the inverted attribute index");
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Exclude the attributes that have more distinct values than allowed from the
+	 * {@code log_attr} table.
+	 */
+	void excludeHighCardinalityKeys() {
+		// the scan reads the whole index, so it runs on a read connection
+		List<String> keys = this.readJdbcTemplate.queryForList(
+				"SELECT key FROM log_attr GROUP BY key HAVING COUNT(DISTINCT value) > ?", String.class,
+				this.props.inverted().maxValuesPerKey());
+		for (String key : keys) {
+			this.lock.lock();
+			try {
+				// filters stop using the index before it is removed, and before new
+				// logs are left out of it
+				this.excludedKeys.add(key);
+				this.jdbcTemplate.update("INSERT OR IGNORE INTO log_attr_excluded_key (key) VALUES (?)", key);
+				int deleted = this.jdbcTemplate.update("DELETE FROM log_attr WHERE key = ?", key);
+				logger.info(
+						"Excluded attribute '{}' from the inverted index because it has more than {} values ({} entries removed)",
+						key, this.props.inverted().maxValuesPerKey(), deleted);
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	private boolean triggerExists() {
+		Integer count = this.jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name = 'log_attr_ai'", Integer.class);
+		return count != null && count > 0;
+	}
+
+	private long usage(String name) {
+		AtomicLong count = this.usage.get(name);
+		return count == null ? 0 : count.get();
+	}
+
+	static void validate(String name) {
+		if (!NAME_PATTERN.matcher(name).matches()) {
+			throw new IllegalArgumentException("Invalid attribute name: " + name);
+		}
+	}
+
+	/**
+	 * Returns a valid SQL identifier that is unique per attribute name.
+	 */
+	static String indexName(String name) {
+		return "log_attr_%s_%08x".formatted(name.replaceAll("\\W", "_"), name.hashCode());
+	}
+
+	@Override
+	public void start() {
+		this.jdbcTemplate.query("SELECT name, automatic FROM attribute_index", rs -> {
+			this.promoted.add(rs.getString("name"));
+			if (rs.getBoolean("automatic")) {
+				this.autoPromoted.add(rs.getString("name"));
+			}
+		});
+		this.excludedKeys.addAll(this.jdbcTemplate.queryForList("SELECT key FROM log_attr_excluded_key", String.class));
+		ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-attribute-index").factory());
+		AttributeIndexProps.Inverted inverted = this.props.inverted();
+		if (inverted.enabled()) {
+			executor.execute(() -> {
+				try {
+					enableInverted();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to create the inverted attribute index", e);
+				}
+			});
+			this.cardinalityCheck = executor.scheduleWithFixedDelay(() -> {
+				try {
+					excludeHighCardinalityKeys();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to check the cardinality of the attributes", e);
+				}
+			}, inverted.checkInterval().toMillis(), inverted.checkInterval().toMillis(), TimeUnit.MILLISECONDS);
+		}
+		else {
+			disableInverted();
+		}
+		this.props.promoted().forEach(name -> executor.execute(() -> {
+			try {
+				promote(name);
+			}
+			catch (RuntimeException e) {
+				logger.warn("Failed to index attribute '{}'", name, e);
+			}
+		}));
+		this.executor = executor;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> cardinalityCheck = this.cardinalityCheck;
+		if (cardinalityCheck != null) {
+			cardinalityCheck.cancel(false);
+			this.cardinalityCheck = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			// pending promotions are dropped, they are retried when they are filtered or
+			// configured again
+			executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.executor != null;
+	}
+
+	/**
+	 * An indexed or filtered attribute.
+	 *
+	 * @param name the name of the attribute
+	 * @param usage the number of search requests that filtered the attribute since
+	 * startup or since it was demoted
+	 * @param promoted whether the attribute is indexed
+	 */
+	public record AttributeIndex(String name, long usage, boolean promoted) {
+	}
+
+}
@@ -0,0 +1,69 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.sql.Statement;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Incremental auto-vacuum of the database, which returns free pages to the file system a
+ * few at a time instead of rebuilding the whole file.
+ */
+public final class AutoVacuum {
+
+	/**
+	 * The value of {@code PRAGMA auto_vacuum} in incremental mode.
+	 */
+	public static final int INCREMENTAL = 2;
+
+	private AutoVacuum() {
+	}
+
+	/**
+	 * Returns whether the database is in incremental auto-vacuum mode.
+	 */
+	public static boolean isIncremental(JdbcTemplate jdbcTemplate) {
+		return pragma(jdbcTemplate, "auto_vacuum") == INCREMENTAL;
+	}
+
+	/**
+	 * Switch the database to incremental auto-vacuum. The mode only takes effect with a
+	 * {@code VACUUM} on the same connection, which rewrites the whole file and blocks
+	 * writes until it is done, but is instant while there are no logs.
+	 */
+	public static void enableIncremental(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+				statement.execute("VACUUM");
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Return free pages to the file system until there are none left or the deadline has
+	 * passed, if the database is in incremental auto-vacuum mode.
+	 * @param pages the maximum number of pages returned per transaction
+	 * @param deadline the {@link System#nanoTime()} after which no transaction is started
+	 * @return the number of pages returned
+	 */
+	public static long vacuum(JdbcTemplate jdbcTemplate, int pages, long deadline) {
+		if (!isIncremental(jdbcTemplate)) {
+			return 0;
+		}
+		long vacuumed = 0;
+		long freePages;
+		while ((freePages = pragma(jdbcTemplate, "freelist_count")) > 0 && System.nanoTime() - deadline < 0) {
+			jdbcTemplate.execute("PRAGMA incremental_vacuum(%d)".formatted(Math.min(freePages, pages)));
+			vacuumed += freePages - pragma(jdbcTemplate, "freelist_count");
+		}
+		return vacuumed;
+	}
+
+	static long pragma(JdbcTemplate jdbcTemplate, String name) {
+		Long value = jdbcTemplate.queryForObject("PRAGMA " + name, Long.class);
+		return value == null ? 0 : value;
+	}
+
+}
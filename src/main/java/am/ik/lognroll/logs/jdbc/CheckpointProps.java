@@ -0,0 +1,21 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Checkpoints of the write-ahead log. Only apply in {@code WAL} journal mode.
+ *
+ * @param interval the delay between two checkpoints
+ * @param restartSize the size of the {@code -wal} file above which a checkpoint waits for
+ * the readers, so that the file is written from its start again
+ * @param truncateSize the size of the {@code -wal} file above which a checkpoint also
+ * truncates it
+ */
+@ConfigurationProperties(prefix = "lognroll.checkpoint")
+public record CheckpointProps(@DefaultValue("10s") Duration interval, @DefaultValue("32MB") DataSize restartSize,
+		@DefaultValue("128MB") DataSize truncateSize) {
+}
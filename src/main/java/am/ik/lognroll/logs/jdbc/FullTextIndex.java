@@ -0,0 +1,137 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Maintenance of the segments of the full-text indexes of the
+ * {@link FullTextIndexProps#tables() layout}. Every transaction that stores logs adds a
+ * small segment, and deleted logs stay in the segments as tombstones, until segments are
+ * merged.
+ */
+public final class FullTextIndex {
+
+	/**
+	 * The prefix of the structure record of tables that use the second version of it.
+	 */
+	private static final byte[] STRUCTURE_V2 = { (byte) 0xff, 0x00, 0x00, 0x01 };
+
+	private FullTextIndex() {
+	}
+
+	/**
+	 * Merge segments a few pages at a time until there is nothing left to merge or the
+	 * deadline has passed. Each step is a transaction of its own on a connection of its
+	 * own, so that logs can be stored between steps.
+	 * @param pages the number of pages written per step. If negative, all segments are
+	 * merged into one, which also drops the entries of deleted logs.
+	 * @param deadline the {@link System#nanoTime()} after which no step is started
+	 * @return whether there was nothing left to merge
+	 */
+	public static boolean merge(JdbcTemplate jdbcTemplate, int pages, long deadline) {
+		for (String table : tables(jdbcTemplate)) {
+			String merge = "INSERT INTO %s (%s, rank) VALUES ('merge', %d)".formatted(table, table, pages);
+			do {
+				if (System.nanoTime() - deadline >= 0) {
+					return false;
+				}
+			}
+			while (step(jdbcTemplate, merge));
+		}
+		return true;
+	}
+
+	/**
+	 * Run a single merge step.
+	 * @return whether the step merged anything
+	 */
+	private static boolean step(JdbcTemplate jdbcTemplate, String merge) {
+		Boolean merged = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				long changes = totalChanges(statement);
+				statement.execute(merge);
+				// fewer than two changes means that there was nothing left to merge
+				return totalChanges(statement) - changes >= 2;
+			}
+		});
+		return Boolean.TRUE.equals(merged);
+	}
+
+	/**
+	 * Merge all segments into one in a single transaction, which takes a while on a large
+	 * index and blocks writes meanwhile.
+	 */
+	public static void optimize(JdbcTemplate jdbcTemplate) {
+		for (String table : tables(jdbcTemplate)) {
+			jdbcTemplate.execute("INSERT INTO %s (%s) VALUES ('optimize')".formatted(table, table));
+		}
+	}
+
+	/**
+	 * Returns the number of segments of the indexes.
+	 */
+	public static int segments(JdbcTemplate jdbcTemplate) {
+		int segments = 0;
+		for (String table : tables(jdbcTemplate)) {
+			byte[] structure = jdbcTemplate.query("SELECT block FROM %s_data WHERE id = 10".formatted(table),
+					rs -> rs.next() ? rs.getBytes(1) : null);
+			segments += structure == null ? 0 : segments(structure);
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the tables of the indexes that the database has.
+	 */
+	static List<String> tables(JdbcTemplate jdbcTemplate) {
+		return jdbcTemplate.queryForList("SELECT name FROM sqlite_master WHERE type = 'table' AND name IN (?, ?)",
+				String.class, FullTextIndexProps.TRIGRAM_TABLE, FullTextIndexProps.WORD_TABLE);
+	}
+
+	/**
+	 * Read the number of segments from the structure record, which starts with a 4 byte
+	 * cookie, optionally followed by {@link #STRUCTURE_V2}, and then the number of levels
+	 * and the number of segments as varints.
+	 */
+	static int segments(byte[] structure) {
+		int[] offset = { 4 };
+		if (structure.length >= 8 && Arrays.equals(structure, 4, 8, STRUCTURE_V2, 0, 4)) {
+			offset[0] = 8;
+		}
+		readVarint(structure, offset);
+		return (int) readVarint(structure, offset);
+	}
+
+	/**
+	 * Read a SQLite varint, big-endian with 7 bits per byte, except for the ninth byte,
+	 * whose 8 bits are all used.
+	 */
+	static long readVarint(byte[] bytes, int[] offset) {
+		long value = 0;
+		for (int i = 0; i < 9; i++) {
+			int b = bytes[offset[0]++] & 0xff;
+			if (i == 8) {
+				return (value << 8) | b;
+			}
+			value = (value << 7) | (b & 0x7f);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		return value;
+	}
+
+	private static long totalChanges(Statement statement) throws SQLException {
+		try (ResultSet resultSet = statement.executeQuery("SELECT total_changes()")) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import am.ik.lognroll.logs.query.FullTextLayout;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The layout of the full-text indexes of the log bodies. Changing it rebuilds the indexes
+ * on startup.
+ *
+ * @param tokenizer the indexes that the bodies are tokenized into
+ * @param detail what the word index records of the words in a body. Phrases need
+ * {@link Detail#FULL}, with less a term that consists of several words matches the bodies
+ * that contain all of them. The trigram index always records the positions, which
+ * substrings that are longer than a trigram need.
+ * @param contentless whether the indexes are contentless, so that deleted logs are
+ * removed from them by rowid instead of tokenizing their bodies again. The index is as
+ * large either way, as the bodies are never copied into it.
+ * @param deferred the indexing of stored logs in the background
+ */
+@ConfigurationProperties(prefix = "lognroll.full-text-index")
+public record FullTextIndexProps(@DefaultValue("TRIGRAM") Tokenizer tokenizer, @DefaultValue("FULL") Detail detail,
+		@DefaultValue("false") boolean contentless, @DefaultValue Deferred deferred) implements FullTextLayout {
+
+	public static final FullTextIndexProps DEFAULT = new FullTextIndexProps(Tokenizer.TRIGRAM, Detail.FULL, false,
+			Deferred.DISABLED);
+
+	/**
+	 * The index of the substrings of three characters.
+	 */
+	static final String TRIGRAM_TABLE = "log_fts";
+
+	/**
+	 * The index of the words.
+	 */
+	static final String WORD_TABLE = "log_fts_word";
+
+	/**
+	 * Returns the tables of the indexes.
+	 */
+	public List<String> tables() {
+		return switch (this.tokenizer) {
+			case TRIGRAM -> List.of(TRIGRAM_TABLE);
+			case UNICODE61 -> List.of(WORD_TABLE);
+			case BOTH -> List.of(TRIGRAM_TABLE, WORD_TABLE);
+		};
+	}
+
+	/**
+	 * Terms are looked up as substrings in the trigram index, unless they are shorter
+	 * than a trigram and there is a word index.
+	 */
+	@Override
+	public String table(String term) {
+		return switch (this.tokenizer) {
+			case TRIGRAM -> TRIGRAM_TABLE;
+			case UNICODE61 -> WORD_TABLE;
+			case BOTH -> term.codePointCount(0, term.length()) < 3 ? WORD_TABLE : TRIGRAM_TABLE;
+		};
+	}
+
+	@Override
+	public boolean isTrigram(String term) {
+		return TRIGRAM_TABLE.equals(table(term));
+	}
+
+	@Override
+	public boolean isPhrase(String term) {
+		return !WORD_TABLE.equals(table(term)) || this.detail == Detail.FULL;
+	}
+
+	@Override
+	public String match(String term) {
+		if (!isPhrase(term)) {
+			// the words are separated the way unicode61 does
+			String words = Arrays.stream(term.split("[^\\p{L}\\p{N}]+"))
+				.filter(word -> !word.isEmpty())
+				.map(word -> "\"" + word + "\"")
+				.collect(Collectors.joining(" AND "));
+			return words.isEmpty() ? "\"\"" : "(" + words + ")";
+		}
+		return "\"" + term + "\"";
+	}
+
+	public enum Tokenizer {
+
+		/**
+		 * Substrings of three characters, which find any substring of three characters or
+		 * more but take several times the size of the text.
+		 */
+		TRIGRAM,
+		/**
+		 * Words, which are split at characters other than letters and digits, and are
+		 * matched as a whole.
+		 */
+		UNICODE61,
+		/**
+		 * Both, where terms shorter than three characters are looked up as words.
+		 */
+		BOTH
+
+	}
+
+	public enum Detail {
+
+		FULL, COLUMN, NONE
+
+	}
+
+	/**
+	 * Settings of the indexing in the background.
+	 *
+	 * @param enabled whether stored logs are added to the indexes in batches in the
+	 * background instead of by the {@code log_ai} trigger in the transaction that stores
+	 * them. Searches scan the logs that are not indexed yet for substrings, so it needs
+	 * the {@link Tokenizer#TRIGRAM} tokenizer.
+	 * @param interval the delay between two batches while there is nothing left to index
+	 * @param batchSize the maximum number of logs indexed per transaction
+	 */
+	public record Deferred(@DefaultValue("false") boolean enabled, @DefaultValue("1s") Duration interval,
+			@DefaultValue("10000") int batchSize) {
+
+		public static final Deferred DISABLED = new Deferred(false, Duration.ofSeconds(1), 10000);
+
+	}
+
+}
@@ -0,0 +1,388 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the full-text indexes of the log bodies. On startup, the indexes and their
+ * triggers are rebuilt if the {@link FullTextIndexProps layout} has changed, which blocks
+ * writes while the existing logs are indexed again.
+ * <p>
+ * If {@link FullTextIndexProps.Deferred#enabled() deferred}, stored logs are added to the
+ * indexes in the background. Tokenizing the bodies is the most expensive part of storing
+ * logs, so the {@code log_ai} trigger is dropped and storing only appends to {@code log}.
+ * The logs are then indexed in large batches, in {@code log_id} order, and
+ * {@code log_fts_indexed} holds the largest {@code log_id} that is indexed.
+ * {@link JdbcLogQuery} scans the logs after it, which are few as long as the indexer
+ * keeps up. The scan matches substrings, so deferred indexing needs the
+ * {@link FullTextIndexProps.Tokenizer#TRIGRAM trigram} tokenizer.
+ * <p>
+ * When it is disabled again, the remaining logs are indexed and the trigger is created
+ * again, in one transaction. The number of indexed logs is counted as
+ * {@code logs.fts.indexed} and the number of logs waiting to be indexed is exported as
+ * {@code logs.fts.pending}.
+ */
+@Component
+public class FullTextIndexer implements SmartLifecycle {
+
+	/**
+	 * The {@code log_fts_indexed} of a database whose logs are indexed by the trigger.
+	 */
+	static final long ALL_INDEXED = Long.MAX_VALUE;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final FullTextIndexProps props;
+
+	private final Counter indexed;
+
+	private final AtomicLong pending = new AtomicLong();
+
+	private final Logger logger = LoggerFactory.getLogger(FullTextIndexer.class);
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> indexing;
+
+	private volatile boolean running = false;
+
+	public FullTextIndexer(JdbcTemplate jdbcTemplate, FullTextIndexProps props, MeterRegistry registry) {
+		if (props.deferred().enabled() && props.tokenizer() != FullTextIndexProps.Tokenizer.TRIGRAM) {
+			// the logs that are not indexed yet are scanned for substrings, which would
+			// not
+			// match the whole words that a word index finds
+			throw new IllegalStateException(
+					"lognroll.full-text-index.deferred.enabled=true does not support lognroll.full-text-index.tokenizer="
+							+ props.tokenizer());
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.props = props;
+		this.indexed = Counter.builder("logs.fts.indexed")
+			.description("Number of logs added to the full-text index in the background")
+			.register(registry);
+		Gauge.builder("logs.fts.pending", this.pending, AtomicLong::get)
+			.description("Number of logs not added to the full-text index yet")
+			.register(registry);
+	}
+
+	/**
+	 * Index the next batch of logs in one transaction.
+	 * @return the number of indexed logs
+	 */
+	int indexNext() {
+		int batchSize = this.props.deferred().batchSize();
+		int count = Objects.requireNonNull(inTransaction(statement -> {
+			long from = indexedLogId(statement);
+			long to;
+			int batch;
+			try (ResultSet resultSet = statement.executeQuery("""
+					SELECT COUNT(*), MAX(log_id) FROM (
+					    SELECT log_id FROM log WHERE log_id > %d ORDER BY log_id LIMIT %d
+					)
+					""".formatted(from, batchSize))) {
+				resultSet.next();
+				batch = resultSet.getInt(1);
+				to = resultSet.getLong(2);
+			}
+			if (batch > 0) {
+				for (String table : this.props.tables()) {
+					statement.execute("""
+							INSERT INTO %s (rowid, body)
+							SELECT log_id, body FROM log WHERE log_id > %d AND log_id <= %d
+							""".formatted(table, from, to));
+				}
+				statement.execute("UPDATE log_fts_indexed SET log_id = %d".formatted(to));
+			}
+			return batch;
+		}));
+		this.indexed.increment(count);
+		return count;
+	}
+
+	/**
+	 * Index logs until there are none left, and update the number of pending logs.
+	 */
+	void indexAll() {
+		int count;
+		do {
+			count = indexNext();
+		}
+		while (count == this.props.deferred().batchSize());
+		Long pending = this.jdbcTemplate
+			.queryForObject("SELECT COUNT(*) FROM log WHERE log_id > (SELECT log_id FROM log_fts_indexed)", Long.class);
+		this.pending.set(Objects.requireNonNullElse(pending, 0L));
+	}
+
+	/**
+	 * Drop the trigger, so that stored logs are left to the indexer.
+	 */
+	void enableDeferred() {
+		if (!triggerExists()) {
+			return;
+		}
+		inTransaction(statement -> {
+			statement.execute("UPDATE log_fts_indexed SET log_id = (SELECT COALESCE(MAX(log_id), 0) FROM log)");
+			statement.execute("DROP TRIGGER log_ai");
+			return null;
+		});
+		logger.info("Deferred the full-text indexing of stored logs");
+	}
+
+	/**
+	 * Index the remaining logs and create the trigger again.
+	 */
+	void disableDeferred() {
+		if (triggerExists()) {
+			return;
+		}
+		int count = Objects.requireNonNull(inTransaction(statement -> {
+			long from = indexedLogId(statement);
+			// every table indexes the same logs
+			int remaining;
+			try (ResultSet resultSet = statement
+				.executeQuery("SELECT COUNT(*) FROM log WHERE log_id > %d".formatted(from))) {
+				resultSet.next();
+				remaining = resultSet.getInt(1);
+			}
+			for (String table : this.props.tables()) {
+				statement.executeUpdate("""
+						INSERT INTO %s (rowid, body)
+						SELECT log_id, body FROM log WHERE log_id > %d
+						""".formatted(table, from));
+			}
+			statement.execute("UPDATE log_fts_indexed SET log_id = %d".formatted(ALL_INDEXED));
+			statement.execute(insertTrigger());
+			return remaining;
+		}));
+		logger.info("Indexed {} remaining logs and restored the full-text indexing of stored logs", count);
+	}
+
+	/**
+	 * Rebuild the indexes whose definition has changed, and the triggers, in one
+	 * transaction.
+	 * @return whether anything was rebuilt
+	 */
+	boolean applyLayout() {
+		Map<String, String> existing = new HashMap<>();
+		this.jdbcTemplate.query("SELECT name, sql FROM sqlite_master WHERE type = 'table' AND name IN (?, ?)", rs -> {
+			existing.put(rs.getString("name"), rs.getString("sql"));
+		}, FullTextIndexProps.TRIGRAM_TABLE, FullTextIndexProps.WORD_TABLE);
+		List<String> rebuilt = this.props.tables()
+			.stream()
+			.filter(table -> !normalize(createTable(table)).equals(normalize(existing.get(table))))
+			.toList();
+		List<String> dropped = existing.keySet()
+			.stream()
+			.filter(table -> !this.props.tables().contains(table))
+			.toList();
+		if (rebuilt.isEmpty() && dropped.isEmpty()) {
+			return false;
+		}
+		boolean deferred = !triggerExists();
+		long start = System.nanoTime();
+		inTransaction(statement -> {
+			statement.execute("DROP TRIGGER IF EXISTS log_ai");
+			statement.execute("DROP TRIGGER IF EXISTS log_au");
+			statement.execute("DROP TRIGGER IF EXISTS log_ad");
+			for (String table : dropped) {
+				statement.execute("DROP TABLE %s".formatted(table));
+			}
+			for (String table : rebuilt) {
+				statement.execute("DROP TABLE IF EXISTS %s".formatted(table));
+				statement.execute(createTable(table));
+				statement.execute("""
+						INSERT INTO %s (rowid, body)
+						SELECT log_id, body FROM log WHERE log_id <= (SELECT log_id FROM log_fts_indexed)
+						""".formatted(table));
+			}
+			if (!deferred) {
+				statement.execute(insertTrigger());
+			}
+			statement.execute(updateTrigger());
+			statement.execute(deleteTrigger());
+			return null;
+		});
+		logger.info("Rebuilt the full-text indexes {} and dropped {} in {} ms", rebuilt, dropped,
+				(System.nanoTime() - start) / 1_000_000);
+		return true;
+	}
+
+	String createTable(String table) {
+		List<String> options = new ArrayList<>(List.of("body"));
+		if (this.props.contentless()) {
+			options.add("content=''");
+			options.add("contentless_delete=1");
+		}
+		else {
+			options.add("content='log'");
+			options.add("content_rowid='log_id'");
+		}
+		if (FullTextIndexProps.TRIGRAM_TABLE.equals(table)) {
+			options.add("tokenize='trigram'");
+		}
+		else {
+			options.add("tokenize='unicode61'");
+			if (this.props.detail() != FullTextIndexProps.Detail.FULL) {
+				options.add("detail=" + this.props.detail().name().toLowerCase(Locale.ROOT));
+			}
+		}
+		return "CREATE VIRTUAL TABLE %s USING fts5(%s)".formatted(table, String.join(", ", options));
+	}
+
+	private String insertTrigger() {
+		return """
+				CREATE TRIGGER log_ai
+				    AFTER INSERT
+				    ON log
+				BEGIN
+				%sEND
+				""".formatted(this.props.tables().stream().map(this::insert).collect(Collectors.joining()));
+	}
+
+	private String updateTrigger() {
+		// logs that are not indexed yet are left to the indexer
+		return """
+				CREATE TRIGGER log_au
+				    AFTER UPDATE OF body
+				    ON log
+				    WHEN old.log_id <= (SELECT log_id FROM log_fts_indexed)
+				BEGIN
+				%sEND
+				""".formatted(
+				this.props.tables().stream().map(table -> delete(table) + insert(table)).collect(Collectors.joining()));
+	}
+
+	private String deleteTrigger() {
+		// deleting a log that is not in an index would corrupt it
+		return """
+				CREATE TRIGGER log_ad
+				    AFTER DELETE
+				    ON log
+				    WHEN old.log_id <= (SELECT log_id FROM log_fts_indexed)
+				BEGIN
+				%sEND
+				""".formatted(this.props.tables().stream().map(this::delete).collect(Collectors.joining()));
+	}
+
+	private String insert(String table) {
+		return "    INSERT INTO %s (rowid, body) VALUES (new.log_id, new.body);\n".formatted(table);
+	}
+
+	private String delete(String table) {
+		return this.props.contentless() ? "    DELETE FROM %s WHERE rowid = old.log_id;\n".formatted(table)
+				: "    INSERT INTO %s (%s, rowid, body) VALUES ('delete', old.log_id, old.body);\n".formatted(table,
+						table);
+	}
+
+	/**
+	 * @return the statement without white space, which SQLite keeps as it was written
+	 */
+	private static String normalize(@Nullable String sql) {
+		return sql == null ? "" : sql.replaceAll("\\s", "");
+	}
+
+	@Nullable
+	private <T> T inTransaction(StatementCallback<T> callback) {
+		return this.jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				T result = callback.doInStatement(statement);
+				connection.commit();
+				return result;
+			}
+			catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			}
+			finally {
+				connection.setAutoCommit(true);
+			}
+		});
+	}
+
+	private static long indexedLogId(Statement statement) throws SQLException {
+		try (ResultSet resultSet = statement.executeQuery("SELECT log_id FROM log_fts_indexed")) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+	private boolean triggerExists() {
+		Integer count = this.jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name = 'log_ai'", Integer.class);
+		return count != null && count > 0;
+	}
+
+	@Override
+	public void start() {
+		applyLayout();
+		FullTextIndexProps.Deferred deferred = this.props.deferred();
+		if (deferred.enabled()) {
+			enableDeferred();
+			ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-full-text-index").factory());
+			this.indexing = executor.scheduleWithFixedDelay(() -> {
+				try {
+					indexAll();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to update the full-text index", e);
+				}
+			}, deferred.interval().toMillis(), deferred.interval().toMillis(), TimeUnit.MILLISECONDS);
+			this.executor = executor;
+		}
+		else {
+			disableDeferred();
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> indexing = this.indexing;
+		if (indexing != null) {
+			indexing.cancel(false);
+			this.indexing = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
@@ -4,22 +4,35 @@ import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
 
 import am.ik.lognroll.logs.Log;
 import am.ik.lognroll.logs.LogBuilder;
 import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.filter.FieldPath;
+import am.ik.lognroll.logs.filter.Filter;
+import am.ik.lognroll.logs.filter.Filter.ExpressionType;
 import am.ik.lognroll.logs.filter.FilterExpressionConverter;
+import am.ik.lognroll.logs.filter.SqliteValues;
 import am.ik.lognroll.logs.filter.converter.Sqlite3FilterExpressionConverter;
 import am.ik.lognroll.logs.query.Sqlite3QueryConverter;
 import am.ik.lognroll.util.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 @Component
@@ -27,29 +40,86 @@ public class JdbcLogQuery implements LogQuery {
 
 	private final JdbcClient jdbcClient;
 
+	private final JdbcClient readJdbcClient;
+
 	private final ObjectMapper objectMapper;
 
-	private final FilterExpressionConverter converter = new Sqlite3FilterExpressionConverter();
+	private static final String RESOURCE_ATTRIBUTES = "resource_attributes";
+
+	/**
+	 * Parsed resource attributes by digest. A digest identifies its attributes, so the
+	 * entries never become stale, and a page of logs usually comes from a few resources.
+	 * The least recently used entries are evicted.
+	 */
+	private final Map<Long, Map<String, Object>> resourceAttributesCache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Map<String, Object>> eldest) {
+			return size() > MAX_CACHED_RESOURCE_ATTRIBUTES;
+		}
+	};
+
+	static final int MAX_CACHED_RESOURCE_ATTRIBUTES = 1024;
 
-	public JdbcLogQuery(JdbcClient jdbcClient, ObjectMapper objectMapper) {
+	private final FilterExpressionConverter converter;
+
+	private final AttributeIndexes attributeIndexes;
+
+	private final FullTextIndexProps fullTextIndexProps;
+
+	/**
+	 * @param jdbcClient the client that deletes logs
+	 * @param readDataSource the data source that logs are searched in
+	 */
+	public JdbcLogQuery(JdbcClient jdbcClient, @Qualifier("readDataSource") DataSource readDataSource,
+			ObjectMapper objectMapper, AttributeIndexes attributeIndexes, FullTextIndexProps fullTextIndexProps) {
 		this.jdbcClient = jdbcClient;
+		this.readJdbcClient = JdbcClient.create(readDataSource);
 		this.objectMapper = objectMapper;
+		this.attributeIndexes = attributeIndexes;
+		this.fullTextIndexProps = fullTextIndexProps;
+		this.converter = new Sqlite3FilterExpressionConverter();
 	}
 
 	QueryAndParams buildQueryAndParams(SearchRequest request) {
 		StringBuilder sql = new StringBuilder();
 		Map<String, Object> params = new HashMap<>();
 		String query = request.query();
-		if (StringUtils.hasText(query)) {
+		List<Filter.Operand> resourceConjuncts = new ArrayList<>();
+		List<Filter.Operand> logConjuncts = new ArrayList<>();
+		List<Filter.Expression> invertedConjuncts = new ArrayList<>();
+		if (request.filterExpression() != null) {
+			for (Filter.Operand conjunct : conjuncts(request.filterExpression())) {
+				if (isResourceOnly(conjunct)) {
+					resourceConjuncts.add(conjunct);
+				}
+				else if (isInverted(conjunct)) {
+					invertedConjuncts.add((Filter.Expression) conjunct);
+				}
+				else {
+					logConjuncts.add(conjunct);
+				}
+			}
+		}
+		boolean deferred = this.fullTextIndexProps.deferred().enabled();
+		Set<String> fullTextTables = StringUtils.hasText(query)
+				? Sqlite3QueryConverter.tables(query, this.fullTextIndexProps) : Set.of();
+		// a query whose terms are all in the same index is a single MATCH
+		String fullTextTable = fullTextTables.size() == 1 ? fullTextTables.iterator().next() : null;
+		if (fullTextTable != null && !deferred) {
 			sql.append("""
-					FROM log_fts
-					JOIN log ON log_fts.rowid = log.log_id
-					JOIN resource_attributes ON log.resource_attributes_digest = resource_attributes.digest
-					""");
+					FROM %s
+					JOIN log ON %s.rowid = log.log_id
+					""".formatted(fullTextTable, fullTextTable));
 		}
 		else {
 			sql.append("""
 					FROM log
+					""");
+		}
+		// the resource attributes of the results are read from the cache, so the join is
+		// only needed by conditions that mix resource attributes with other fields
+		if (logConjuncts.stream().anyMatch(conjunct -> columns(conjunct).contains(RESOURCE_ATTRIBUTES))) {
+			sql.append("""
 					JOIN resource_attributes ON log.resource_attributes_digest = resource_attributes.digest
 					""");
 		}
@@ -59,12 +129,13 @@ public class JdbcLogQuery implements LogQuery {
 		if (request.pageRequest() != null) {
 			Cursor cursor = request.pageRequest().cursor();
 			if (cursor != null) {
+				// seeks the log_observed_timestamp_timestamp_log_id index
 				sql.append("""
-						AND observed_timestamp <= :observed_timestamp
-						AND timestamp < :timestamp
+						AND (observed_timestamp, timestamp, log.log_id) < (:observed_timestamp, :timestamp, :log_id)
 						""");
 				params.put("observed_timestamp", Timestamp.from(cursor.observedTimestamp()));
 				params.put("timestamp", Timestamp.from(cursor.timestamp()));
+				params.put("log_id", cursor.logId());
 			}
 		}
 		if (request.from() != null) {
@@ -79,22 +150,83 @@ public class JdbcLogQuery implements LogQuery {
 					""");
 			params.put("to", Timestamp.from(request.to()));
 		}
-		if (StringUtils.hasText(query)) {
+		if (request.untilLogId() != null) {
 			sql.append("""
-					AND log_fts MATCH(:query)
+					AND log.log_id <= :until_log_id
 					""");
-			params.put("query", Sqlite3QueryConverter.convertQuery(query));
+			params.put("until_log_id", request.untilLogId());
 		}
-		if (request.filterExpression() != null) {
-			sql.append("AND ")
-				.append(this.converter.convertExpression(request.filterExpression()))
+		if (StringUtils.hasText(query)) {
+			// the logs that are not indexed yet are scanned, in the snapshot of the index
+			String unindexed = """
+					SELECT tail.log_id FROM log AS tail
+					WHERE tail.log_id > (SELECT log_id FROM log_fts_indexed) AND (%s)
+					""".formatted(Sqlite3QueryConverter.convertCondition(query, "tail.body"));
+			if (fullTextTable != null) {
+				if (deferred) {
+					sql.append("""
+							AND log.log_id IN (
+							    SELECT rowid FROM %s WHERE %s MATCH(:query)
+							    UNION ALL
+							    %s)
+							""".formatted(fullTextTable, fullTextTable, unindexed));
+				}
+				else {
+					sql.append("""
+							AND %s MATCH(:query)
+							""".formatted(fullTextTable));
+				}
+				params.put("query", Sqlite3QueryConverter.convertQuery(query, this.fullTextIndexProps));
+			}
+			else {
+				// the terms are looked up in their indexes one by one
+				String lookup = Sqlite3QueryConverter.convertLookup(query, "log.log_id", this.fullTextIndexProps);
+				if (deferred) {
+					sql.append("""
+							AND (log.log_id <= (SELECT log_id FROM log_fts_indexed) AND (%s)
+							     OR log.log_id IN (%s))
+							""".formatted(lookup, unindexed));
+				}
+				else {
+					sql.append("""
+							AND (%s)
+							""".formatted(lookup));
+				}
+			}
+		}
+		if (!resourceConjuncts.isEmpty()) {
+			// there are far fewer resources than logs, so the matching digests are
+			// looked up first and the logs are read through the digest index
+			sql.append("""
+					AND log.resource_attributes_digest IN (SELECT digest FROM resource_attributes WHERE %s)
+					""".formatted(this.converter.convertExpression(and(resourceConjuncts))));
+		}
+		if (!invertedConjuncts.isEmpty()) {
+			// each condition is a range of the log_attr primary key
+			List<String> lookups = new ArrayList<>();
+			for (int i = 0; i < invertedConjuncts.size(); i++) {
+				Filter.Expression conjunct = invertedConjuncts.get(i);
+				FieldPath path = FieldPath.parse(((Filter.Key) conjunct.left()).key());
+				lookups.add("SELECT log_id FROM log_attr WHERE key = :attr_key_%d AND value IN (:attr_values_%d)"
+					.formatted(i, i));
+				params.put("attr_key_" + i, Objects.requireNonNull(path.attribute()));
+				params.put("attr_values_" + i, invertedValues((Filter.Value) Objects.requireNonNull(conjunct.right())));
+			}
+			sql.append("""
+					AND log.log_id IN (%s)
+					""".formatted(String.join(" INTERSECT ", lookups)));
+		}
+		if (!logConjuncts.isEmpty()) {
+			// parenthesized so that a top-level OR does not escape the other conditions
+			sql.append("AND (")
+				.append(this.converter.convertExpression(and(logConjuncts)))
+				.append(")")
 				.append(System.lineSeparator());
 		}
 		return new QueryAndParams(sql.toString(), params);
 	}
 
-	@Override
-	public List<Log> findLatestLogs(SearchRequest request) {
+	QueryAndParams buildLatestLogsQueryAndParams(SearchRequest request) {
 		StringBuilder sql = new StringBuilder("""
 				SELECT log.log_id,
 				       log.timestamp,
@@ -107,35 +239,85 @@ public class JdbcLogQuery implements LogQuery {
 				       log.trace_id,
 				       log.span_id,
 				       log.trace_flags,
-				       log.attributes,
-				       resource_attributes.resource_attributes
+				       json(log.attributes) AS attributes,
+				       log.resource_attributes_digest
 				""");
 		QueryAndParams queryAndParams = buildQueryAndParams(request);
 		sql.append(queryAndParams.query());
 		sql.append("""
-				ORDER BY observed_timestamp DESC, timestamp DESC
+				ORDER BY observed_timestamp DESC, timestamp DESC, log.log_id DESC
 				""");
 		if (request.pageRequest() != null && request.pageRequest().pageSize() > 0) {
 			sql.append("LIMIT %d".formatted(request.pageRequest().pageSize()));
 		}
-		return this.jdbcClient.sql(sql.toString()) //
+		return new QueryAndParams(sql.toString(), queryAndParams.params());
+	}
+
+	@Override
+	public List<Log> findLatestLogs(SearchRequest request) {
+		QueryAndParams queryAndParams = buildLatestLogsQueryAndParams(request);
+		List<Row> rows = this.readJdbcClient.sql(queryAndParams.query()) //
 			.params(queryAndParams.params()) //
-			.query((rs, rowNum) -> LogBuilder.log()
-				.logId(rs.getLong("log_id"))
-				.timestamp(rs.getTimestamp("timestamp").toInstant())
-				.observedTimestamp(rs.getTimestamp("observed_timestamp").toInstant())
-				.severityText(rs.getString("severity_text"))
-				.severityNumber(rs.getInt("severity_number"))
-				.serviceName(rs.getString("service_name"))
-				.scope(rs.getString("scope"))
-				.body(rs.getString("body"))
-				.traceId(rs.getString("trace_id"))
-				.spanId(rs.getString("span_id"))
-				.traceFlags(rs.getInt("trace_flags"))
-				.attributes(Json.parse(this.objectMapper, rs.getString("attributes")))
-				.resourceAttributes(Json.parse(this.objectMapper, rs.getString("resource_attributes")))
-				.build()) //
+			.query((rs, rowNum) -> new Row(rs.getLong("resource_attributes_digest"),
+					LogBuilder.log()
+						.logId(rs.getLong("log_id"))
+						.timestamp(rs.getTimestamp("timestamp").toInstant())
+						.observedTimestamp(rs.getTimestamp("observed_timestamp").toInstant())
+						.severityText(rs.getString("severity_text"))
+						.severityNumber(rs.getInt("severity_number"))
+						.serviceName(rs.getString("service_name"))
+						.scope(rs.getString("scope"))
+						.body(rs.getString("body"))
+						.traceId(rs.getString("trace_id"))
+						.spanId(rs.getString("span_id"))
+						.traceFlags(rs.getInt("trace_flags"))
+						.attributes(Json.parse(this.objectMapper, rs.getString("attributes"))))) //
 			.list();
+		Map<Long, Map<String, Object>> resourceAttributes = findResourceAttributes(
+				rows.stream().map(Row::digest).collect(Collectors.toSet()));
+		return rows.stream()
+			.map(row -> row.log()
+				.resourceAttributes(resourceAttributes.getOrDefault(row.digest(), Map.of()))
+				.resourceAttributesDigest(row.digest())
+				.build())
+			.toList();
+	}
+
+	/**
+	 * Returns the parsed resource attributes of the digests, from the cache if possible.
+	 */
+	Map<Long, Map<String, Object>> findResourceAttributes(Set<Long> digests) {
+		Map<Long, Map<String, Object>> resourceAttributes = new HashMap<>();
+		List<Long> missing = new ArrayList<>();
+		synchronized (this.resourceAttributesCache) {
+			for (Long digest : digests) {
+				Map<String, Object> cached = this.resourceAttributesCache.get(digest);
+				if (cached != null) {
+					resourceAttributes.put(digest, cached);
+				}
+				else {
+					missing.add(digest);
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return resourceAttributes;
+		}
+		Map<Long, Map<String, Object>> loaded = new HashMap<>();
+		for (List<Long> chunk : splitList(missing, 1000)) {
+			this.readJdbcClient.sql(
+					"SELECT digest, json(resource_attributes) AS resource_attributes FROM resource_attributes WHERE digest IN (:digests)")
+				.param("digests", chunk)
+				.query(rs -> {
+					loaded.put(rs.getLong("digest"), Collections
+						.unmodifiableMap(Json.parse(this.objectMapper, rs.getString("resource_attributes"))));
+				});
+		}
+		synchronized (this.resourceAttributesCache) {
+			this.resourceAttributesCache.putAll(loaded);
+		}
+		resourceAttributes.putAll(loaded);
+		return resourceAttributes;
 	}
 
 	@Override
@@ -145,7 +327,7 @@ public class JdbcLogQuery implements LogQuery {
 				""");
 		QueryAndParams queryAndParams = buildQueryAndParams(request);
 		sql.append(queryAndParams.query());
-		return this.jdbcClient.sql(sql.toString()) //
+		return this.readJdbcClient.sql(sql.toString()) //
 			.params(queryAndParams.params()) //
 			.query(Long.class)
 			.single();
@@ -165,30 +347,128 @@ public class JdbcLogQuery implements LogQuery {
 				GROUP BY date
 				ORDER BY date ASC;
 				""");
-		return this.jdbcClient.sql(sql.toString()) //
+		return this.readJdbcClient.sql(sql.toString()) //
 			.params(queryAndParams.params()) //
 			.query((rs, rowNum) -> new Volume(Instant.parse(rs.getString("date")), rs.getLong("count"))) //
 			.list();
 	}
 
 	@Override
-	@Transactional
 	public int delete(SearchRequest request) {
-		StringBuilder sql = new StringBuilder("SELECT log.log_id ");
 		QueryAndParams queryAndParams = buildQueryAndParams(request);
-		sql.append(queryAndParams.query());
-		List<Long> deleteIds = this.jdbcClient.sql(sql.toString())
+		return this.jdbcClient
+			.sql("DELETE FROM log WHERE log_id IN (SELECT log.log_id %s)".formatted(queryAndParams.query()))
+			.params(queryAndParams.params())
+			.update();
+	}
+
+	@Override
+	public int delete(SearchRequest request, long fromLogId, long toLogId) {
+		QueryAndParams queryAndParams = buildQueryAndParams(request);
+		// the range bounds both the matching logs and the deleted rows, so that a
+		// transaction only touches a slice of the primary key
+		return this.jdbcClient.sql("""
+				DELETE FROM log
+				WHERE log_id >= :from_log_id AND log_id < :to_log_id
+				  AND log_id IN (SELECT log.log_id %s AND log.log_id >= :from_log_id AND log.log_id < :to_log_id)
+				""".formatted(queryAndParams.query()))
 			.params(queryAndParams.params())
+			.param("from_log_id", fromLogId)
+			.param("to_log_id", toLogId)
+			.update();
+	}
+
+	@Override
+	@Nullable
+	public Long nextLogId(long fromLogId) {
+		return this.readJdbcClient.sql("SELECT MIN(log_id) FROM log WHERE log_id >= :from_log_id")
+			.param("from_log_id", fromLogId)
 			.query(Long.class)
-			.list();
-		List<List<Long>> splitList = splitList(deleteIds, 1000);
-		int deleted = 0;
-		for (List<Long> deleteIdList : splitList) {
-			deleted += this.jdbcClient.sql("DELETE FROM log WHERE log_id IN (:ids)")
-				.param("ids", deleteIdList) //
-				.update();
+			.optional()
+			.orElse(null);
+	}
+
+	@Override
+	public long latestLogId() {
+		return this.readJdbcClient.sql("SELECT COALESCE(MAX(log_id), 0) FROM log").query(Long.class).single();
+	}
+
+	/**
+	 * Returns the operands of the top-level {@code AND}s of the operand.
+	 */
+	static List<Filter.Operand> conjuncts(Filter.Operand operand) {
+		if (operand instanceof Filter.Group group && group.content().type() == ExpressionType.AND) {
+			return conjuncts(group.content());
+		}
+		if (operand instanceof Filter.Expression expression && expression.type() == ExpressionType.AND) {
+			List<Filter.Operand> conjuncts = new ArrayList<>(conjuncts(expression.left()));
+			conjuncts.addAll(conjuncts(Objects.requireNonNull(expression.right())));
+			return conjuncts;
+		}
+		return List.of(operand);
+	}
+
+	/**
+	 * Returns whether the operand only refers to the resource attributes.
+	 */
+	static boolean isResourceOnly(Filter.Operand operand) {
+		return Set.of(RESOURCE_ATTRIBUTES).containsAll(columns(operand));
+	}
+
+	/**
+	 * Returns whether the operand is an {@code ==} or {@code IN} condition on an
+	 * attribute that is in the {@code log_attr} table.
+	 */
+	boolean isInverted(Filter.Operand operand) {
+		if (!(operand instanceof Filter.Expression expression)
+				|| (expression.type() != ExpressionType.EQ && expression.type() != ExpressionType.IN)
+				|| !(expression.left() instanceof Filter.Key key) || !(expression.right() instanceof Filter.Value)) {
+			return false;
+		}
+		FieldPath path = FieldPath.parse(key.key());
+		String attribute = path.attribute();
+		return AttributeIndexes.ATTRIBUTES.equals(path.column()) && attribute != null
+				&& this.attributeIndexes.isInverted(attribute);
+	}
+
+	/**
+	 * @return the values of the condition as they are stored by {@code json_each}
+	 */
+	private static List<Object> invertedValues(Filter.Value value) {
+		List<?> values = value.value() instanceof List<?> list ? list : List.of(value.value());
+		return values.stream().map(v -> Objects.requireNonNull(SqliteValues.normalize(v))).toList();
+	}
+
+	/**
+	 * Returns the columns that the operand refers to.
+	 */
+	static Set<String> columns(@Nullable Filter.Operand operand) {
+		return switch (operand) {
+			case null -> Set.of();
+			case Filter.Key key -> Set.of(FieldPath.parse(key.key()).column());
+			case Filter.Group group -> columns(group.content());
+			case Filter.Expression expression -> {
+				Set<String> columns = new HashSet<>(columns(expression.left()));
+				columns.addAll(columns(expression.right()));
+				yield columns;
+			}
+			default -> Set.of();
+		};
+	}
+
+	private static Filter.Expression and(List<Filter.Operand> conjuncts) {
+		Filter.Operand result = null;
+		for (Filter.Operand conjunct : conjuncts) {
+			// keep OR below AND
+			Filter.Operand operand = conjunct instanceof Filter.Expression expression
+					&& expression.type() == ExpressionType.OR ? new Filter.Group(expression) : conjunct;
+			result = result == null ? operand : new Filter.Expression(ExpressionType.AND, result, operand);
 		}
-		return deleted;
+		return switch (Objects.requireNonNull(result)) {
+			case Filter.Expression expression -> expression;
+			case Filter.Group group -> group.content();
+			default -> throw new IllegalArgumentException("Unexpected operand: " + result);
+		};
 	}
 
 	static <T> List<List<T>> splitList(List<T> originalList, int chunkSize) {
@@ -200,7 +480,10 @@ public class JdbcLogQuery implements LogQuery {
 		return partitionedList;
 	}
 
-	private record QueryAndParams(String query, Map<String, Object> params) {
+	record QueryAndParams(String query, Map<String, Object> params) {
+	}
+
+	private record Row(long digest, LogBuilder log) {
 	}
 
 }
@@ -1,51 +1,66 @@
 package am.ik.lognroll.logs.jdbc;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.util.List;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
-import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogBatch;
 import am.ik.lognroll.logs.LogStore;
-import am.ik.lognroll.util.Json;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component
 public class JdbcLogStore implements LogStore {
 
 	private final JdbcTemplate jdbcTemplate;
 
-	private final ObjectMapper objectMapper;
+	/**
+	 * Digests that are known to be stored in {@code resource_attributes}. Most batches
+	 * come from a small number of long-lived resources, so this saves a write for almost
+	 * every ingest. The least recently used digests are evicted.
+	 */
+	private final Map<Long, Boolean> knownDigests = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+			return size() > MAX_KNOWN_DIGESTS;
+		}
+	};
+
+	static final int MAX_KNOWN_DIGESTS = 4096;
+
+	/**
+	 * The number of free pages returned per {@code PRAGMA incremental_vacuum}.
+	 */
+	static final int VACUUM_PAGES = 1000;
 
-	public JdbcLogStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+	public JdbcLogStore(JdbcTemplate jdbcTemplate) {
 		this.jdbcTemplate = jdbcTemplate;
-		this.objectMapper = objectMapper;
 	}
 
 	@Transactional
 	@Override
-	public void addAll(List<Log> logs) {
-		if (CollectionUtils.isEmpty(logs)) {
+	public void addAll(LogBatch batch) {
+		if (batch.isEmpty()) {
 			return;
 		}
-		Map<Long, List<Log>> logsMap = logs.stream().collect(Collectors.groupingBy(Log::resourceAttributesDigest));
-		logsMap.forEach(this::addAllByDigest);
-	}
-
-	private void addAllByDigest(long digest, List<Log> logs) {
-		Log firstLog = logs.getFirst();
-		int count = Objects.requireNonNull(this.jdbcTemplate
-			.queryForObject("SELECT COUNT(digest) FROM resource_attributes WHERE digest = ?", Integer.class, digest));
-		if (count == 0) {
-			this.jdbcTemplate.update("INSERT INTO resource_attributes(digest, resource_attributes) VALUES (?, ?)",
-					digest, Json.stringify(this.objectMapper, firstLog.resourceAttributes()));
-		}
+		batch.resourceAttributes().forEach((digest, resourceAttributes) -> {
+			if (!isKnownDigest(digest)) {
+				this.jdbcTemplate.update(
+						"INSERT OR IGNORE INTO resource_attributes(digest, resource_attributes) VALUES (?, jsonb(?))",
+						digest, resourceAttributes);
+				rememberDigest(digest);
+			}
+		});
+		// the attributes are stored as JSONB, which json_extract reads without
+		// parsing, and are read back as text with json()
 		this.jdbcTemplate.batchUpdate("""
 				INSERT INTO log(
 				    timestamp,
@@ -61,12 +76,62 @@ public class JdbcLogStore implements LogStore {
 				    attributes,
 				    resource_attributes_digest
 				)
-				VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-				""".trim(), logs.stream()
-			.map(log -> new Object[] { Timestamp.from(log.timestamp()), Timestamp.from(log.observedTimestamp()),
-					log.severityText(), log.severityNumber(), log.serviceName(), log.scope(), log.body(), log.traceId(),
-					log.spanId(), log.traceFlags(), Json.stringify(this.objectMapper, log.attributes()), digest })
-			.toList());
+				VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, jsonb(?), ?)
+				""".trim(), new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setTimestamp(1, toTimestamp(batch.timestamp(i)));
+				ps.setTimestamp(2, toTimestamp(batch.observedTimestamp(i)));
+				ps.setString(3, batch.severityText(i));
+				ps.setInt(4, batch.severityNumber(i));
+				ps.setString(5, batch.serviceName(i));
+				ps.setString(6, batch.scope(i));
+				ps.setString(7, batch.body(i));
+				ps.setString(8, batch.traceId(i));
+				ps.setString(9, batch.spanId(i));
+				ps.setInt(10, batch.traceFlags(i));
+				ps.setString(11, batch.attributes(i));
+				ps.setLong(12, batch.resourceAttributesDigest(i));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return batch.size();
+			}
+		});
+	}
+
+	static Timestamp toTimestamp(long epochNanos) {
+		Timestamp timestamp = new Timestamp(Math.floorDiv(epochNanos, 1_000_000L));
+		timestamp.setNanos((int) Math.floorMod(epochNanos, 1_000_000_000L));
+		return timestamp;
+	}
+
+	private boolean isKnownDigest(long digest) {
+		synchronized (this.knownDigests) {
+			return this.knownDigests.get(digest) != null;
+		}
+	}
+
+	private void rememberDigest(long digest) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// the row is visible only after commit
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					putKnownDigest(digest);
+				}
+			});
+		}
+		else {
+			putKnownDigest(digest);
+		}
+	}
+
+	private void putKnownDigest(long digest) {
+		synchronized (this.knownDigests) {
+			this.knownDigests.put(digest, Boolean.TRUE);
+		}
 	}
 
 	@Transactional
@@ -74,12 +139,14 @@ public class JdbcLogStore implements LogStore {
 	public void clear() {
 		this.jdbcTemplate.update("DELETE FROM resource_attributes");
 		this.jdbcTemplate.update("DELETE FROM log");
+		synchronized (this.knownDigests) {
+			this.knownDigests.clear();
+		}
 	}
 
 	@Override
-	public void vacuum() {
-		this.jdbcTemplate.execute("PRAGMA auto_vacuum = 1");
-		this.jdbcTemplate.execute("VACUUM");
+	public long vacuum(Duration timeBudget) {
+		return AutoVacuum.vacuum(this.jdbcTemplate, VACUUM_PAGES, System.nanoTime() + timeBudget.toNanos());
 	}
 
 }
@@ -0,0 +1,171 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import am.ik.lognroll.config.DbProps;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checkpoints the write-ahead log in the background. A long search keeps the automatic
+ * checkpoints from reaching the end of the {@code -wal} file, which then grows as long as
+ * logs are stored. Checkpoints are {@code PASSIVE}, which never waits, until the file
+ * exceeds {@link CheckpointProps#restartSize()}. Then they wait for the readers up to the
+ * busy timeout, so that the file is written from its start again, and above
+ * {@link CheckpointProps#truncateSize()} they also truncate it.
+ * <p>
+ * Checkpoints run on the single write connection, so they happen between two stored
+ * batches. The size of the {@code -wal} file is exported as {@code logs.wal.size}, the
+ * frames not yet copied into the database as {@code logs.wal.pending}, and the duration
+ * of the checkpoints as {@code logs.wal.checkpoint}, tagged with their mode.
+ */
+@Component
+public class WalCheckpointer implements SmartLifecycle {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final DbProps dbProps;
+
+	private final CheckpointProps props;
+
+	private final MeterRegistry registry;
+
+	private final Path walFile;
+
+	private final Logger logger = LoggerFactory.getLogger(WalCheckpointer.class);
+
+	private volatile long pendingFrames = 0;
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> checkpoints;
+
+	private volatile boolean running = false;
+
+	public WalCheckpointer(JdbcTemplate jdbcTemplate, DbProps dbProps, CheckpointProps props, MeterRegistry registry) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.dbProps = dbProps;
+		this.props = props;
+		this.registry = registry;
+		this.walFile = Path.of(dbProps.path() + "-wal");
+		Gauge.builder("logs.wal.size", this, WalCheckpointer::walSize)
+			.description("Size of the write-ahead log file")
+			.baseUnit("bytes")
+			.register(registry);
+		Gauge.builder("logs.wal.pending", this, checkpointer -> checkpointer.pendingFrames)
+			.description("Frames of the write-ahead log not copied into the database by the last checkpoint")
+			.baseUnit("frames")
+			.register(registry);
+	}
+
+	/**
+	 * Run a checkpoint whose mode depends on the size of the {@code -wal} file.
+	 */
+	public Checkpoint checkpoint() {
+		long walSize = walSize();
+		Mode mode = walSize > this.props.truncateSize().toBytes() ? Mode.TRUNCATE
+				: walSize > this.props.restartSize().toBytes() ? Mode.RESTART : Mode.PASSIVE;
+		Checkpoint checkpoint = Objects.requireNonNull(Timer.builder("logs.wal.checkpoint")
+			.description("Duration of the checkpoints of the write-ahead log")
+			.tag("mode", mode.name().toLowerCase(Locale.ROOT))
+			.register(this.registry)
+			.record(() -> this.jdbcTemplate.queryForObject("PRAGMA wal_checkpoint(%s)".formatted(mode),
+					(rs, rowNum) -> new Checkpoint(mode, rs.getInt(1) == 1, rs.getLong(2), rs.getLong(3)))));
+		this.pendingFrames = Math.max(0, checkpoint.walFrames() - checkpoint.checkpointedFrames());
+		if (checkpoint.busy() && mode != Mode.PASSIVE) {
+			logger.info("Checkpoint {} of the {} bytes write-ahead log was blocked by readers", mode, walSize);
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Returns the size of the {@code -wal} file, or {@code 0} if there is none.
+	 */
+	long walSize() {
+		try {
+			return Files.size(this.walFile);
+		}
+		catch (NoSuchFileException e) {
+			return 0;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void start() {
+		if (this.dbProps.journalMode() == SQLiteConfig.JournalMode.WAL) {
+			ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-checkpoint").factory());
+			this.checkpoints = executor.scheduleWithFixedDelay(() -> {
+				try {
+					checkpoint();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to checkpoint the write-ahead log", e);
+				}
+			}, this.props.interval().toMillis(), this.props.interval().toMillis(), TimeUnit.MILLISECONDS);
+			this.executor = executor;
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> checkpoints = this.checkpoints;
+		if (checkpoints != null) {
+			checkpoints.cancel(false);
+			this.checkpoints = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	public enum Mode {
+
+		PASSIVE, RESTART, TRUNCATE
+
+	}
+
+	/**
+	 * Result of a checkpoint.
+	 *
+	 * @param mode the checkpoint mode
+	 * @param busy whether the checkpoint could not complete because of readers or writers
+	 * @param walFrames the number of frames in the write-ahead log
+	 * @param checkpointedFrames the number of frames copied into the database
+	 */
+	public record Checkpoint(Mode mode, boolean busy, long walFrames, long checkpointedFrames) {
+	}
+
+}
@@ -0,0 +1,276 @@
+package am.ik.lognroll.logs.maintenance;
+
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import am.ik.lognroll.logs.ingest.LogsStoredEvent;
+import am.ik.lognroll.logs.jdbc.AutoVacuum;
+import am.ik.lognroll.logs.jdbc.FullTextIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the planner statistics and the full-text index in shape. A run updates the
+ * statistics of the tables that need it with {@code PRAGMA optimize}, limited by
+ * {@code PRAGMA analysis_limit}, and merges the segments of the full-text indexes that
+ * every stored batch adds, a few pages per transaction until the time budget is used up.
+ * <p>
+ * Runs start once no logs have been stored for {@link MaintenanceProps#quietPeriod()}, or
+ * after {@link MaintenanceProps#maxDelay()} at the latest. The duration of each task is
+ * recorded as {@code logs.maintenance}, tagged with the task, and the number of segments
+ * of the full-text index is exported as {@code logs.fts.segments}.
+ */
+@Component
+public class DatabaseMaintenance implements SmartLifecycle {
+
+	/**
+	 * The tasks of the scheduled runs.
+	 */
+	static final Set<Task> SCHEDULED_TASKS = EnumSet.of(Task.OPTIMIZE, Task.MERGE);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final MaintenanceProps props;
+
+	private final MeterRegistry registry;
+
+	private final Clock clock;
+
+	private final AtomicInteger segments = new AtomicInteger();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Logger logger = LoggerFactory.getLogger(DatabaseMaintenance.class);
+
+	private volatile Instant lastStoredAt;
+
+	private volatile Instant lastRunAt;
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> maintenanceRun;
+
+	private volatile boolean running = false;
+
+	@Autowired
+	public DatabaseMaintenance(JdbcTemplate jdbcTemplate, MaintenanceProps props, MeterRegistry registry) {
+		this(jdbcTemplate, props, registry, Clock.systemUTC());
+	}
+
+	DatabaseMaintenance(JdbcTemplate jdbcTemplate, MaintenanceProps props, MeterRegistry registry, Clock clock) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.props = props;
+		this.registry = registry;
+		this.clock = clock;
+		this.lastStoredAt = clock.instant();
+		this.lastRunAt = clock.instant();
+		Gauge.builder("logs.fts.segments", this.segments, AtomicInteger::get)
+			.description("Number of segments of the full-text index")
+			.register(registry);
+	}
+
+	@EventListener
+	public void onLogsStored(LogsStoredEvent event) {
+		this.lastStoredAt = this.clock.instant();
+	}
+
+	/**
+	 * Returns whether a scheduled run is due.
+	 */
+	boolean isDue() {
+		Instant now = this.clock.instant();
+		Duration sinceLastRun = Duration.between(this.lastRunAt, now);
+		return sinceLastRun.compareTo(this.props.interval()) >= 0
+				&& (Duration.between(this.lastStoredAt, now).compareTo(this.props.quietPeriod()) >= 0
+						|| sinceLastRun.compareTo(this.props.maxDelay()) >= 0);
+	}
+
+	/**
+	 * Run the tasks in the order of {@link Task}, waiting for a run in progress to
+	 * finish. The time budget is shared by the tasks that can be stopped early.
+	 */
+	public Report run(Set<Task> tasks) {
+		this.lock.lock();
+		try {
+			long deadline = System.nanoTime() + this.props.timeBudget().toNanos();
+			List<Result> results = new ArrayList<>();
+			Set<Task> ordered = EnumSet.noneOf(Task.class);
+			ordered.addAll(tasks);
+			for (Task task : ordered) {
+				long start = System.nanoTime();
+				boolean completed = run(task, deadline);
+				Duration duration = Duration.ofNanos(System.nanoTime() - start);
+				Timer.builder("logs.maintenance")
+					.description("Duration of the database maintenance tasks")
+					.tag("task", task.name().toLowerCase(Locale.ROOT))
+					.register(this.registry)
+					.record(duration);
+				results.add(new Result(task, completed, duration));
+			}
+			this.lastRunAt = this.clock.instant();
+			return new Report(results, updateSegments());
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private boolean run(Task task, long deadline) {
+		return switch (task) {
+			case OPTIMIZE -> {
+				analyze("PRAGMA optimize");
+				yield true;
+			}
+			case ANALYZE -> {
+				analyze("ANALYZE");
+				yield true;
+			}
+			case MERGE -> FullTextIndex.merge(this.jdbcTemplate, this.props.mergePages(), deadline);
+			case OPTIMIZE_FULL_TEXT_INDEX -> {
+				FullTextIndex.optimize(this.jdbcTemplate);
+				yield true;
+			}
+			case VACUUM -> {
+				AutoVacuum.enableIncremental(this.jdbcTemplate);
+				yield true;
+			}
+		};
+	}
+
+	private void analyze(String sql) {
+		// the limit only applies to the connection it is set on
+		this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("PRAGMA analysis_limit = %d".formatted(this.props.analysisLimit()));
+				statement.execute(sql);
+			}
+			return null;
+		});
+	}
+
+	int updateSegments() {
+		int segments = FullTextIndex.segments(this.jdbcTemplate);
+		this.segments.set(segments);
+		return segments;
+	}
+
+	@Override
+	public void start() {
+		if (this.props.enabled()) {
+			ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-maintenance").factory());
+			long period = this.props.quietPeriod().toMillis();
+			this.maintenanceRun = executor.scheduleWithFixedDelay(() -> {
+				try {
+					updateSegments();
+					if (isDue()) {
+						Report report = run(SCHEDULED_TASKS);
+						logger.info("Maintained the database: {}", report);
+					}
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to maintain the database", e);
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+			this.executor = executor;
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> maintenanceRun = this.maintenanceRun;
+		if (maintenanceRun != null) {
+			maintenanceRun.cancel(false);
+			this.maintenanceRun = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	public enum Task {
+
+		/**
+		 * {@code PRAGMA optimize}, which analyzes the tables whose statistics are missing
+		 * or stale.
+		 */
+		OPTIMIZE,
+		/**
+		 * {@code ANALYZE} of all tables.
+		 */
+		ANALYZE,
+		/**
+		 * Incremental merges of the segments of the full-text index within the time
+		 * budget.
+		 */
+		MERGE,
+		/**
+		 * Merge all segments of the full-text index into one in a single transaction,
+		 * which blocks writes until it is done.
+		 */
+		OPTIMIZE_FULL_TEXT_INDEX,
+		/**
+		 * Rebuild the database with {@code VACUUM}, which returns all free pages to the
+		 * file system and switches it to incremental auto-vacuum for the retention. It
+		 * blocks writes until it is done and needs as much free disk space as the
+		 * database.
+		 */
+		VACUUM
+
+	}
+
+	/**
+	 * Result of a task of a run.
+	 *
+	 * @param task the task
+	 * @param completed whether the task finished within the time budget
+	 * @param duration how long the task took
+	 */
+	public record Result(Task task, boolean completed, Duration duration) {
+	}
+
+	/**
+	 * Report of a run.
+	 *
+	 * @param results the results of the tasks in the order they ran
+	 * @param segments the number of segments of the full-text index after the run
+	 */
+	public record Report(List<Result> results, int segments) {
+	}
+
+}
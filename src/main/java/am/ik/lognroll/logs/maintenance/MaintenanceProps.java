@@ -0,0 +1,29 @@
+package am.ik.lognroll.logs.maintenance;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Database maintenance that runs when no logs have been stored for a while.
+ *
+ * @param enabled whether maintenance runs on its own. It can always be run through the
+ * admin API.
+ * @param interval the minimum delay between two runs
+ * @param quietPeriod how long no logs must have been stored before a run starts. Also how
+ * often this is checked.
+ * @param maxDelay the delay after which a run starts even if logs keep being stored
+ * @param timeBudget the maximum time a run merges the segments of the full-text index.
+ * The rest is left to the next run.
+ * @param analysisLimit {@code PRAGMA analysis_limit}, the number of rows of each index
+ * that {@code ANALYZE} examines. {@code 0} examines all of them.
+ * @param mergePages the number of pages of the full-text index written per merge
+ * transaction
+ */
+@ConfigurationProperties(prefix = "lognroll.maintenance")
+public record MaintenanceProps(@DefaultValue("true") boolean enabled, @DefaultValue("1h") Duration interval,
+		@DefaultValue("1m") Duration quietPeriod, @DefaultValue("1d") Duration maxDelay,
+		@DefaultValue("10s") Duration timeBudget, @DefaultValue("1000") int analysisLimit,
+		@DefaultValue("64") int mergePages) {
+}
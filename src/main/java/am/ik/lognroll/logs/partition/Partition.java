@@ -0,0 +1,300 @@
+package am.ik.lognroll.logs.partition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import am.ik.lognroll.config.DataSourceConfig;
+import am.ik.lognroll.config.DbProps;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.jdbc.AttributeIndexProps;
+import am.ik.lognroll.logs.jdbc.AttributeIndexes;
+import am.ik.lognroll.logs.jdbc.AutoVacuum;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps;
+import am.ik.lognroll.logs.jdbc.JdbcLogQuery;
+import am.ik.lognroll.logs.jdbc.JdbcLogStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.Nullable;
+import org.flywaydb.core.Flyway;
+import org.sqlite.SQLiteDataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * One database file with the logs observed in a time window. It has the same schema as
+ * the single database, so the logs are stored and queried with {@link JdbcLogStore} and
+ * {@link JdbcLogQuery}. Attributes are not indexed per partition. Like the single
+ * database, it is written through a single connection and read through a pool of
+ * read-only connections, both configured by {@link DbProps}.
+ * <p>
+ * Log ids start at the hour of the window shifted by 32 bits, so that they are unique
+ * across partitions and later windows have larger ids.
+ * <p>
+ * Every access holds a read lock, and closing the partition waits for the write lock, so
+ * that it is not closed while in use. Afterwards it behaves as an empty partition, except
+ * that it rejects new logs.
+ */
+final class Partition implements AutoCloseable {
+
+	private static final Pattern FILE_NAME = Pattern.compile("log-(\\d{8}|\\d{10})\\.db");
+
+	private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("uuuuMMdd").withZone(ZoneOffset.UTC);
+
+	private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("uuuuMMddHH").withZone(ZoneOffset.UTC);
+
+	private final Path file;
+
+	private final Instant start;
+
+	private final Instant end;
+
+	private final HikariDataSource writeDataSource;
+
+	private final HikariDataSource readDataSource;
+
+	private final JdbcLogStore store;
+
+	private final JdbcLogQuery query;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private boolean closed = false;
+
+	private Partition(Path file, Instant start, Instant end, HikariDataSource writeDataSource,
+			HikariDataSource readDataSource, ObjectMapper objectMapper) {
+		this.file = file;
+		this.start = start;
+		this.end = end;
+		this.writeDataSource = writeDataSource;
+		this.readDataSource = readDataSource;
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(writeDataSource);
+		this.store = new JdbcLogStore(jdbcTemplate);
+		// never started, so attributes are neither promoted nor inverted, and logs are
+		// indexed by the log_ai trigger
+		this.query = new JdbcLogQuery(JdbcClient.create(writeDataSource), readDataSource, objectMapper,
+				new AttributeIndexes(jdbcTemplate, readDataSource,
+						new AttributeIndexProps(0, 0, List.of(), AttributeIndexProps.Inverted.DISABLED)),
+				FullTextIndexProps.DEFAULT);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(writeDataSource));
+	}
+
+	/**
+	 * Open the file of the window, creating and migrating it if necessary.
+	 */
+	static Partition open(Path directory, PartitionProps.Window window, Instant start, DbProps dbProps, int poolSize,
+			ObjectMapper objectMapper) {
+		return openFile(file(directory, window, start), window, start, dbProps, poolSize, objectMapper);
+	}
+
+	/**
+	 * Returns the file of the window that starts at the instant.
+	 */
+	static Path file(Path directory, PartitionProps.Window window, Instant start) {
+		return directory.resolve("log-" + (window == PartitionProps.Window.HOUR ? HOUR : DAY).format(start) + ".db");
+	}
+
+	/**
+	 * Open an existing file of either window.
+	 * @return {@code null} if the file is not a partition
+	 */
+	@Nullable
+	static Partition open(Path file, DbProps dbProps, int poolSize, ObjectMapper objectMapper) {
+		Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+		if (!matcher.matches()) {
+			return null;
+		}
+		String timestamp = matcher.group(1);
+		PartitionProps.Window window = timestamp.length() == 10 ? PartitionProps.Window.HOUR
+				: PartitionProps.Window.DAY;
+		Instant start = window == PartitionProps.Window.HOUR
+				? LocalDateTime.parse(timestamp, HOUR).toInstant(ZoneOffset.UTC)
+				: LocalDate.parse(timestamp, DAY).atStartOfDay(ZoneOffset.UTC).toInstant();
+		return openFile(file, window, start, dbProps, poolSize, objectMapper);
+	}
+
+	private static Partition openFile(Path file, PartitionProps.Window window, Instant start, DbProps dbProps,
+			int poolSize, ObjectMapper objectMapper) {
+		// migrations open more than one connection, which the write pool does not allow
+		SQLiteDataSource migrationDataSource = DataSourceConfig.sqliteDataSource(dbProps, file.toString(), false);
+		Flyway.configure().dataSource(migrationDataSource).load().migrate();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(migrationDataSource);
+		// switch a new file to incremental auto-vacuum, so that deleted logs can be
+		// returned to the file system
+		if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+				"SELECT NOT EXISTS (SELECT 1 FROM log) AND NOT EXISTS (SELECT 1 FROM sqlite_sequence)",
+				Boolean.class))) {
+			AutoVacuum.enableIncremental(jdbcTemplate);
+		}
+		long firstLogId = firstLogId(window, start);
+		jdbcTemplate.update("""
+				INSERT INTO sqlite_sequence (name, seq)
+				SELECT 'log', ?
+				WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'log')
+				""", firstLogId);
+		String poolName = "lognroll-" + file.getFileName();
+		HikariDataSource writeDataSource = DataSourceConfig.writeDataSource(dbProps, file.toString(),
+				poolName + "-write");
+		HikariDataSource readDataSource = DataSourceConfig.readDataSource(dbProps, file.toString(), poolName + "-read",
+				poolSize);
+		return new Partition(file, start, window.end(start), writeDataSource, readDataSource, objectMapper);
+	}
+
+	/**
+	 * Returns the id after which the ids of the logs of the window are assigned. The ids
+	 * are unique across the files of both windows, which are open at the same time after
+	 * the window has been changed: the hours since the epoch and whether the window is a
+	 * day are followed by 32 bits for the logs of the window.
+	 */
+	static long firstLogId(PartitionProps.Window window, Instant start) {
+		long hours = start.getEpochSecond() / ChronoUnit.HOURS.getDuration().getSeconds();
+		return ((hours << 1) | (window == PartitionProps.Window.DAY ? 1 : 0)) << 32;
+	}
+
+	Path file() {
+		return this.file;
+	}
+
+	Instant start() {
+		return this.start;
+	}
+
+	/**
+	 * Returns the end of the window, exclusive.
+	 */
+	Instant end() {
+		return this.end;
+	}
+
+	/**
+	 * Returns whether the window overlaps the inclusive range.
+	 */
+	boolean overlaps(@Nullable Instant from, @Nullable Instant to) {
+		return (from == null || this.end.isAfter(from)) && (to == null || !this.start.isAfter(to));
+	}
+
+	/**
+	 * Store the logs in a transaction.
+	 * @throws IllegalStateException if the partition has been closed
+	 */
+	void addAll(LogBatch batch) {
+		addAll(batch, () -> {
+		});
+	}
+
+	/**
+	 * Store the logs and run the action in the same transaction, which is rolled back if
+	 * the action fails.
+	 * @throws IllegalStateException if the partition has been closed
+	 */
+	void addAll(LogBatch batch, Runnable action) {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			if (this.closed) {
+				throw new IllegalStateException("Partition %s has been closed".formatted(this));
+			}
+			this.transactionTemplate.executeWithoutResult(status -> {
+				this.store.addAll(batch);
+				action.run();
+			});
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Run the action with the query of the partition.
+	 * @return the result of the action or {@code ifClosed} if the partition has been
+	 * closed
+	 */
+	<T> T query(Function<LogQuery, T> action, T ifClosed) {
+		Lock lock = this.lock.readLock();
+		lock.lock();
+		try {
+			return this.closed ? ifClosed : action.apply(this.query);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	int delete(LogQuery.SearchRequest request) {
+		return query(query -> {
+			Integer deleted = this.transactionTemplate.execute(status -> query.delete(request));
+			return deleted == null ? 0 : deleted;
+		}, 0);
+	}
+
+	int delete(LogQuery.SearchRequest request, long fromLogId, long toLogId) {
+		return query(query -> {
+			Integer deleted = this.transactionTemplate.execute(status -> query.delete(request, fromLogId, toLogId));
+			return deleted == null ? 0 : deleted;
+		}, 0);
+	}
+
+	long vacuum(Duration timeBudget) {
+		return query(query -> this.store.vacuum(timeBudget), 0L);
+	}
+
+	/**
+	 * Close the connections once the partition is no longer in use.
+	 */
+	@Override
+	public void close() {
+		Lock lock = this.lock.writeLock();
+		lock.lock();
+		try {
+			this.closed = true;
+			this.readDataSource.close();
+			this.writeDataSource.close();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Close the partition and delete its files.
+	 */
+	void drop() {
+		close();
+		try {
+			for (String suffix : List.of("", "-wal", "-shm", "-journal")) {
+				Files.deleteIfExists(this.file.resolveSibling(this.file.getFileName() + suffix));
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.file.getFileName().toString();
+	}
+
+}
@@ -0,0 +1,54 @@
+package am.ik.lognroll.logs.partition;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import jakarta.annotation.Nullable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the partitioned storage. Each file is opened with the connection settings
+ * of {@code lognroll.db}.
+ *
+ * @param enabled whether logs are stored in one database file per time window instead of
+ * {@code lognroll.db.path}
+ * @param directory the directory of the database files
+ * @param window the time window of the observed timestamps that a file holds
+ * @param maxAge if set, files whose window ended longer ago than this are deleted
+ * @param checkInterval how often the files are checked against {@code maxAge}
+ * @param poolSize the maximum number of read-only connections per file, which are used in
+ * addition to its single write connection
+ */
+@ConfigurationProperties(prefix = "lognroll.partition")
+public record PartitionProps(@DefaultValue("false") boolean enabled,
+		@DefaultValue("/tmp/lognroll-partitions") Path directory, @DefaultValue("day") Window window,
+		@Nullable Duration maxAge, @DefaultValue("1m") Duration checkInterval, @DefaultValue("4") int poolSize) {
+
+	public enum Window {
+
+		HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+		private final ChronoUnit unit;
+
+		Window(ChronoUnit unit) {
+			this.unit = unit;
+		}
+
+		/**
+		 * Returns the start of the window in UTC that contains the instant.
+		 */
+		public Instant start(Instant instant) {
+			return instant.truncatedTo(this.unit);
+		}
+
+		public Instant end(Instant start) {
+			return start.plus(1, this.unit);
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+package am.ik.lognroll.logs.partition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import am.ik.lognroll.logs.jdbc.AttributeIndexProps;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps;
+import am.ik.lognroll.logs.retention.RetentionProps;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects settings that only apply to the single database, so that enabling partitions
+ * does not silently ignore them. Partitions are dropped by
+ * {@link PartitionProps#maxAge()}, attributes are not indexed per partition, and the
+ * full-text index of a partition always has the default layout and is updated as logs are
+ * stored.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lognroll.partition", name = "enabled", havingValue = "true")
+public class PartitionSettings {
+
+	public PartitionSettings(RetentionProps retentionProps, AttributeIndexProps attributeIndexProps,
+			FullTextIndexProps fullTextIndexProps) {
+		List<String> unsupported = unsupported(retentionProps, attributeIndexProps, fullTextIndexProps);
+		if (!unsupported.isEmpty()) {
+			throw new IllegalStateException(
+					"lognroll.partition.enabled=true does not support " + String.join(", ", unsupported));
+		}
+	}
+
+	static List<String> unsupported(RetentionProps retentionProps, AttributeIndexProps attributeIndexProps,
+			FullTextIndexProps fullTextIndexProps) {
+		List<String> unsupported = new ArrayList<>();
+		if (retentionProps.hasPolicies()) {
+			unsupported.add("lognroll.retention (use lognroll.partition.max-age)");
+		}
+		if (!attributeIndexProps.promoted().isEmpty()) {
+			unsupported.add("lognroll.attribute-index.promoted");
+		}
+		if (attributeIndexProps.inverted().enabled()) {
+			unsupported.add("lognroll.attribute-index.inverted.enabled");
+		}
+		if (fullTextIndexProps.tokenizer() != FullTextIndexProps.DEFAULT.tokenizer()
+				|| fullTextIndexProps.detail() != FullTextIndexProps.DEFAULT.detail()
+				|| fullTextIndexProps.contentless() != FullTextIndexProps.DEFAULT.contentless()) {
+			unsupported.add("lognroll.full-text-index.tokenizer, detail and contentless");
+		}
+		if (fullTextIndexProps.deferred().enabled()) {
+			unsupported.add("lognroll.full-text-index.deferred.enabled");
+		}
+		return unsupported;
+	}
+
+}
@@ -0,0 +1,138 @@
+package am.ik.lognroll.logs.partition;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.pagination.CursorPageRequest;
+import jakarta.annotation.Nullable;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * Queries only the partitions whose window overlaps {@code from} and {@code to}, and
+ * combines their results. A partition that is dropped while it is queried counts as
+ * empty.
+ * <p>
+ * Log ids only grow within a partition, so {@link SearchRequest#untilLogId()} pins the
+ * logs of the latest partition. Logs that arrive late into an earlier partition may still
+ * be included.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "lognroll.partition", name = "enabled", havingValue = "true")
+public class PartitionedLogQuery implements LogQuery {
+
+	static final Comparator<Log> LATEST_FIRST = Comparator.comparing(Log::observedTimestamp)
+		.thenComparing(Log::timestamp)
+		.thenComparing(Log::logId)
+		.reversed();
+
+	private final Partitions partitions;
+
+	public PartitionedLogQuery(Partitions partitions) {
+		this.partitions = partitions;
+	}
+
+	@Override
+	public List<Log> findLatestLogs(SearchRequest request) {
+		CursorPageRequest<Cursor> pageRequest = request.pageRequest();
+		int pageSize = pageRequest != null ? pageRequest.pageSize() : 0;
+		Instant to = request.to();
+		if (pageRequest != null && pageRequest.cursor() != null) {
+			Instant observedTimestamp = pageRequest.cursor().observedTimestamp();
+			if (to == null || observedTimestamp.isBefore(to)) {
+				to = observedTimestamp;
+			}
+		}
+		List<Log> logs = new ArrayList<>();
+		for (Partition partition : this.partitions.overlapping(request.from(), to)) {
+			if (pageSize > 0 && logs.size() >= pageSize
+					&& !partition.end().isAfter(logs.getLast().observedTimestamp())) {
+				// the partitions are ordered by their end, so the remaining ones only
+				// have older logs
+				break;
+			}
+			logs.addAll(partition.query(query -> query.findLatestLogs(request), List.of()));
+			logs.sort(LATEST_FIRST);
+			if (pageSize > 0 && logs.size() > pageSize) {
+				logs = new ArrayList<>(logs.subList(0, pageSize));
+			}
+		}
+		return logs;
+	}
+
+	@Override
+	public long count(SearchRequest request) {
+		long count = 0;
+		for (Partition partition : this.partitions.overlapping(request.from(), request.to())) {
+			count += partition.query(query -> query.count(request), 0L);
+		}
+		return count;
+	}
+
+	@Override
+	public List<Volume> findVolumes(SearchRequest request, Duration interval) {
+		// a bucket never spans two windows unless the window has been changed
+		Map<Instant, Long> volumes = new TreeMap<>();
+		for (Partition partition : this.partitions.overlapping(request.from(), request.to())) {
+			for (Volume volume : partition.query(query -> query.findVolumes(request, interval), List.<Volume>of())) {
+				volumes.merge(volume.date(), volume.count(), Long::sum);
+			}
+		}
+		return volumes.entrySet().stream().map(e -> new Volume(e.getKey(), e.getValue())).toList();
+	}
+
+	@Override
+	public int delete(SearchRequest request) {
+		int deleted = 0;
+		for (Partition partition : this.partitions.overlapping(request.from(), request.to())) {
+			deleted += partition.delete(request);
+		}
+		return deleted;
+	}
+
+	@Override
+	public int delete(SearchRequest request, long fromLogId, long toLogId) {
+		int deleted = 0;
+		for (Partition partition : this.partitions.overlapping(request.from(), request.to())) {
+			deleted += partition.delete(request, fromLogId, toLogId);
+		}
+		return deleted;
+	}
+
+	@Override
+	@Nullable
+	public Long nextLogId(long fromLogId) {
+		// the id ranges of the partitions are far apart, which this skips
+		Long nextLogId = null;
+		for (Partition partition : this.partitions.overlapping(null, null)) {
+			Long next = partition
+				.query(query -> Optional.ofNullable(query.nextLogId(fromLogId)), Optional.<Long>empty())
+				.orElse(null);
+			if (next != null && (nextLogId == null || next < nextLogId)) {
+				nextLogId = next;
+			}
+		}
+		return nextLogId;
+	}
+
+	@Override
+	public long latestLogId() {
+		long latestLogId = 0;
+		for (Partition partition : this.partitions.overlapping(null, null)) {
+			latestLogId = Math.max(latestLogId, partition.query(LogQuery::latestLogId, 0L));
+		}
+		return latestLogId;
+	}
+
+}
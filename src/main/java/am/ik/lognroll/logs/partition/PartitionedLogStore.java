@@ -0,0 +1,84 @@
+package am.ik.lognroll.logs.partition;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogStore;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores each log in the partition of its observed timestamp, or of the current window if
+ * it has none. A batch usually falls into a single partition and is stored as it is.
+ * <p>
+ * A batch that spans partitions is stored in one transaction per partition. The
+ * transactions are nested in the order of the windows, so that concurrent batches do not
+ * wait for each other in a cycle, and commit once all logs have been inserted. A failing
+ * insert therefore rolls back the logs of every partition. Only a failure while
+ * committing keeps the logs of the partitions that have already committed, which a retry
+ * stores again.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "lognroll.partition", name = "enabled", havingValue = "true")
+public class PartitionedLogStore implements LogStore {
+
+	private final Partitions partitions;
+
+	public PartitionedLogStore(Partitions partitions) {
+		this.partitions = partitions;
+	}
+
+	@Override
+	public void addAll(LogBatch batch) {
+		Set<Partition> targets = new LinkedHashSet<>();
+		Partition[] partitionOf = new Partition[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			partitionOf[i] = this.partitions.partitionFor(batch.observedTimestamp(i));
+			targets.add(partitionOf[i]);
+		}
+		if (targets.size() == 1) {
+			targets.iterator().next().addAll(batch);
+			return;
+		}
+		List<Partition> ordered = targets.stream()
+			.sorted(Comparator.comparing(Partition::start).thenComparing(Partition::end))
+			.toList();
+		List<LogBatch> batches = ordered.stream()
+			.map(partition -> batch.filter(i -> partitionOf[i] == partition))
+			.toList();
+		addAll(ordered, batches, 0);
+	}
+
+	private static void addAll(List<Partition> partitions, List<LogBatch> batches, int index) {
+		if (index < partitions.size()) {
+			partitions.get(index).addAll(batches.get(index), () -> addAll(partitions, batches, index + 1));
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.partitions.dropAll();
+	}
+
+	@Override
+	public long vacuum(Duration timeBudget) {
+		long deadline = System.nanoTime() + timeBudget.toNanos();
+		long vacuumed = 0;
+		for (Partition partition : this.partitions.overlapping(null, null)) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			vacuumed += partition.vacuum(Duration.ofNanos(remaining));
+		}
+		return vacuumed;
+	}
+
+}
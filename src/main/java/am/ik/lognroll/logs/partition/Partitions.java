@@ -0,0 +1,226 @@
+package am.ik.lognroll.logs.partition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import am.ik.lognroll.config.DbProps;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * The open partitions. Partitions are created when the first log of their window is
+ * stored, and dropped by deleting their files, either when they are older than
+ * {@link PartitionProps#maxAge()} or when all logs are cleared.
+ * <p>
+ * The files of the other window are opened as well, so that the window can be changed
+ * without losing logs. Their windows overlap the new ones, which queries take into
+ * account.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lognroll.partition", name = "enabled", havingValue = "true")
+public class Partitions implements SmartLifecycle {
+
+	private final PartitionProps props;
+
+	private final DbProps dbProps;
+
+	private final ObjectMapper objectMapper;
+
+	private final Clock clock;
+
+	private final Map<Path, Partition> partitions = new ConcurrentHashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Logger logger = LoggerFactory.getLogger(Partitions.class);
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> expiryCheck;
+
+	@Autowired
+	public Partitions(PartitionProps props, DbProps dbProps, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		this(props, dbProps, objectMapper, meterRegistry, Clock.systemUTC());
+	}
+
+	Partitions(PartitionProps props, DbProps dbProps, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			Clock clock) {
+		this.props = props;
+		this.dbProps = dbProps;
+		this.objectMapper = objectMapper;
+		this.clock = clock;
+		Gauge.builder("logs.partitions", this.partitions, Map::size)
+			.description("Number of open partitions")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Returns the partition of the window that contains the observed timestamp in epoch
+	 * nanoseconds, created if necessary. Logs without an observed timestamp belong to the
+	 * current window instead of one that has expired long ago.
+	 */
+	Partition partitionFor(long observedTimestamp) {
+		return partitionFor(
+				observedTimestamp == 0 ? this.clock.instant() : Instant.ofEpochSecond(0, observedTimestamp));
+	}
+
+	/**
+	 * Returns the partition of the window that contains the observed timestamp, created
+	 * if necessary.
+	 */
+	Partition partitionFor(Instant observedTimestamp) {
+		Instant start = this.props.window().start(observedTimestamp);
+		Path file = Partition.file(this.props.directory(), this.props.window(), start);
+		Partition partition = this.partitions.get(file);
+		if (partition != null) {
+			return partition;
+		}
+		this.lock.lock();
+		try {
+			partition = this.partitions.get(file);
+			if (partition == null) {
+				partition = Partition.open(this.props.directory(), this.props.window(), start, this.dbProps,
+						this.props.poolSize(), this.objectMapper);
+				this.partitions.put(file, partition);
+				logger.info("Created partition {}", partition);
+			}
+			return partition;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the partitions whose window overlaps the inclusive range, the latest end
+	 * first.
+	 */
+	List<Partition> overlapping(@Nullable Instant from, @Nullable Instant to) {
+		return this.partitions.values()
+			.stream()
+			.filter(partition -> partition.overlaps(from, to))
+			.sorted(Comparator.comparing(Partition::end).thenComparing(Partition::start).reversed())
+			.toList();
+	}
+
+	/**
+	 * Delete the partitions whose window ended at or before the instant.
+	 * @return the number of dropped partitions
+	 */
+	int dropBefore(Instant instant) {
+		List<Partition> dropped = new ArrayList<>();
+		this.lock.lock();
+		try {
+			this.partitions.values().removeIf(partition -> {
+				if (partition.end().isAfter(instant)) {
+					return false;
+				}
+				dropped.add(partition);
+				return true;
+			});
+		}
+		finally {
+			this.lock.unlock();
+		}
+		for (Partition partition : dropped) {
+			partition.drop();
+			logger.info("Dropped partition {}", partition);
+		}
+		return dropped.size();
+	}
+
+	/**
+	 * Delete all partitions.
+	 */
+	void dropAll() {
+		dropBefore(Instant.MAX);
+	}
+
+	void dropExpired() {
+		Duration maxAge = this.props.maxAge();
+		if (maxAge != null) {
+			dropBefore(this.clock.instant().minus(maxAge));
+		}
+	}
+
+	@Override
+	public void start() {
+		try {
+			Files.createDirectories(this.props.directory());
+			try (Stream<Path> files = Files.list(this.props.directory())) {
+				for (Path file : files.sorted().toList()) {
+					Partition partition = Partition.open(file, this.dbProps, this.props.poolSize(), this.objectMapper);
+					if (partition != null) {
+						this.partitions.put(file, partition);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		logger.info("Opened {} partitions in {}", this.partitions.size(), this.props.directory());
+		ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-partitions").factory());
+		if (this.props.maxAge() != null) {
+			this.expiryCheck = executor.scheduleWithFixedDelay(() -> {
+				try {
+					dropExpired();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to drop the expired partitions", e);
+				}
+			}, 0, this.props.checkInterval().toMillis(), TimeUnit.MILLISECONDS);
+		}
+		this.executor = executor;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> expiryCheck = this.expiryCheck;
+		if (expiryCheck != null) {
+			expiryCheck.cancel(false);
+			this.expiryCheck = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+		this.partitions.values().forEach(Partition::close);
+		this.partitions.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.executor != null;
+	}
+
+}
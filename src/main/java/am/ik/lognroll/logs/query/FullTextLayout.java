@@ -0,0 +1,30 @@
+package am.ik.lognroll.logs.query;
+
+/**
+ * The full-text indexes that the terms of a search query are looked up in.
+ */
+public interface FullTextLayout {
+
+	/**
+	 * Returns the FTS5 table that the term is looked up in.
+	 */
+	String table(String term);
+
+	/**
+	 * Returns the FTS5 query that matches the term in its {@link #table(String) table}.
+	 */
+	String match(String term);
+
+	/**
+	 * Returns whether the term is looked up in a trigram index, which finds nothing for
+	 * terms shorter than three characters.
+	 */
+	boolean isTrigram(String term);
+
+	/**
+	 * Returns whether the words of a term that is looked up in a word index have to
+	 * follow each other, instead of only all occurring somewhere in the text.
+	 */
+	boolean isPhrase(String term);
+
+}
@@ -0,0 +1,144 @@
+package am.ik.lognroll.logs.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import am.ik.query.Node;
+import am.ik.query.QueryParser;
+import am.ik.query.RootNode;
+import am.ik.query.TokenNode;
+import am.ik.query.TokenType;
+import jakarta.annotation.Nullable;
+
+/**
+ * Matches a log body against a search query in memory, the same way as the {@code MATCH}
+ * conditions that {@link Sqlite3QueryConverter} produces for the {@link FullTextLayout
+ * layout} do:
+ * <ul>
+ * <li>a term that is looked up in the trigram index matches if it is a case-insensitive
+ * substring of the body, and terms shorter than three characters match nothing</li>
+ * <li>a term that is looked up in the word index matches if its words are words of the
+ * body, next to each other if the layout {@link FullTextLayout#isPhrase(String) matches
+ * phrases}</li>
+ * <li>terms are combined with {@code AND} unless joined by {@code OR}, excluded terms are
+ * {@code NOT}, and {@code NOT} binds tighter than {@code AND}, which binds tighter than
+ * {@code OR}</li>
+ * </ul>
+ */
+public final class FullTextQueryMatcher {
+
+	/**
+	 * What separates the words the way the {@code unicode61} tokenizer does.
+	 */
+	private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	private final Predicate<Body> predicate;
+
+	private FullTextQueryMatcher(Predicate<Body> predicate) {
+		this.predicate = predicate;
+	}
+
+	public static FullTextQueryMatcher compile(String query, FullTextLayout layout) {
+		return new FullTextQueryMatcher(compile(QueryParser.parseQuery(query), layout));
+	}
+
+	public boolean matches(@Nullable String body) {
+		return body != null && this.predicate.test(new Body(body.toLowerCase(Locale.ROOT)));
+	}
+
+	private static Predicate<Body> compile(RootNode root, FullTextLayout layout) {
+		List<Predicate<Body>> disjunction = new ArrayList<>();
+		List<Predicate<Body>> conjunction = new ArrayList<>();
+		Iterator<Node> iterator = root.children().iterator();
+		while (iterator.hasNext()) {
+			Node node = iterator.next();
+			switch (node) {
+				case TokenNode token -> {
+					if (token.type() == TokenType.OR) {
+						if (iterator.hasNext()) {
+							if (!conjunction.isEmpty()) {
+								disjunction.add(and(conjunction));
+								conjunction = new ArrayList<>();
+							}
+							conjunction.add(term(iterator.next().value(), layout));
+						}
+					}
+					else if (token.type() == TokenType.EXCLUDE) {
+						conjunction.add(term(token.value(), layout).negate());
+					}
+					else {
+						conjunction.add(term(token.value(), layout));
+					}
+				}
+				case RootNode nest -> conjunction.add(compile(nest, layout));
+				default -> throw new IllegalArgumentException("Unexpected node: " + node);
+			}
+		}
+		if (!conjunction.isEmpty()) {
+			disjunction.add(and(conjunction));
+		}
+		if (disjunction.isEmpty()) {
+			return body -> true;
+		}
+		return disjunction.size() == 1 ? disjunction.getFirst()
+				: body -> disjunction.stream().anyMatch(p -> p.test(body));
+	}
+
+	private static Predicate<Body> and(List<Predicate<Body>> predicates) {
+		return predicates.size() == 1 ? predicates.getFirst() : body -> predicates.stream().allMatch(p -> p.test(body));
+	}
+
+	private static Predicate<Body> term(String value, FullTextLayout layout) {
+		String term = value.toLowerCase(Locale.ROOT);
+		if (layout.isTrigram(value)) {
+			if (term.codePointCount(0, term.length()) < 3) {
+				return body -> false;
+			}
+			return body -> body.text.contains(term);
+		}
+		List<String> words = words(term);
+		if (words.isEmpty()) {
+			return body -> false;
+		}
+		if (layout.isPhrase(value)) {
+			return body -> Collections.indexOfSubList(body.words(), words) >= 0;
+		}
+		return body -> body.words().containsAll(words);
+	}
+
+	private static List<String> words(String text) {
+		return Arrays.stream(WORD_SEPARATOR.split(text)).filter(word -> !word.isEmpty()).toList();
+	}
+
+	/**
+	 * A lower-cased body, which is split into words only if a term needs them.
+	 */
+	private static final class Body {
+
+		private final String text;
+
+		@Nullable
+		private List<String> words;
+
+		private Body(String text) {
+			this.text = text;
+		}
+
+		private List<String> words() {
+			List<String> words = this.words;
+			if (words == null) {
+				words = FullTextQueryMatcher.words(this.text);
+				this.words = words;
+			}
+			return words;
+		}
+
+	}
+
+}
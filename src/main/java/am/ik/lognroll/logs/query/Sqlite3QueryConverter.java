@@ -1,6 +1,9 @@
 package am.ik.lognroll.logs.query;
 
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
 
 import am.ik.query.Node;
 import am.ik.query.QueryParser;
@@ -12,10 +15,62 @@ public class Sqlite3QueryConverter {
 
 	public static String convertQuery(String query) {
 		RootNode root = QueryParser.parseQuery(query);
-		return convertQuery(root);
+		return convertQuery(root, term -> "\"" + term + "\"", " ");
 	}
 
-	private static String convertQuery(RootNode root) {
+	/**
+	 * Convert the query to the {@code MATCH} condition of the index that the layout picks
+	 * for its terms, which must all be looked up in the
+	 * {@link #tables(String, FullTextLayout) same one}.
+	 */
+	public static String convertQuery(String query, FullTextLayout layout) {
+		RootNode root = QueryParser.parseQuery(query);
+		return convertQuery(root, layout::match, " ");
+	}
+
+	/**
+	 * Convert the query to a SQL condition on the column of the rowid that looks up every
+	 * term in the index that the layout picks for it.
+	 */
+	public static String convertLookup(String query, String column, FullTextLayout layout) {
+		RootNode root = QueryParser.parseQuery(query);
+		return convertQuery(root, term -> {
+			String table = layout.table(term);
+			return "%s IN (SELECT rowid FROM %s WHERE %s MATCH '%s')".formatted(column, table, table,
+					layout.match(term).replace("'", "''"));
+		}, " AND ");
+	}
+
+	/**
+	 * Returns the tables that the layout picks for the terms of the query.
+	 */
+	public static Set<String> tables(String query, FullTextLayout layout) {
+		Set<String> tables = new LinkedHashSet<>();
+		// the conversion visits every term
+		convertQuery(QueryParser.parseQuery(query), term -> {
+			tables.add(layout.table(term));
+			return "";
+		}, " ");
+		return tables;
+	}
+
+	/**
+	 * Convert the query to a SQL condition on the column that selects the rows that a
+	 * trigram index would, by a scan. Terms are case-insensitive substrings, though only
+	 * ASCII letters are folded, and terms that are shorter than three characters match
+	 * nothing.
+	 */
+	public static String convertCondition(String query, String column) {
+		RootNode root = QueryParser.parseQuery(query);
+		return convertQuery(root, term -> term.codePointCount(0, term.length()) < 3 ? "0"
+				: "instr(lower(%s), lower('%s')) > 0".formatted(column, term.replace("'", "''")), " AND ");
+	}
+
+	/**
+	 * @param term converts a term to a condition
+	 * @param excludeSeparator what precedes {@code NOT} after another term
+	 */
+	private static String convertQuery(RootNode root, Function<String, String> term, String excludeSeparator) {
 		StringBuilder builder = new StringBuilder();
 		Iterator<Node> iterator = root.children().iterator();
 		while (iterator.hasNext()) {
@@ -25,27 +80,27 @@ public class Sqlite3QueryConverter {
 					if (!builder.isEmpty()) {
 						switch (token.type()) {
 							case OR -> builder.append(" OR ");
-							case EXCLUDE -> builder.append(" ");
+							case EXCLUDE -> builder.append(excludeSeparator);
 							default -> builder.append(" AND ");
 						}
 					}
 					if (token.type() == TokenType.OR) {
 						if (iterator.hasNext()) {
-							builder.append("\"").append(iterator.next().value()).append("\"");
+							builder.append(term.apply(iterator.next().value()));
 						}
 					}
 					else if (token.type() == TokenType.EXCLUDE) {
-						builder.append("NOT \"").append(token.value()).append("\"");
+						builder.append("NOT ").append(term.apply(token.value()));
 					}
 					else {
-						builder.append("\"").append(token.value()).append("\"");
+						builder.append(term.apply(token.value()));
 					}
 				}
 				case RootNode nest -> {
 					if (!builder.isEmpty()) {
 						builder.append(" AND ");
 					}
-					builder.append("(").append(convertQuery(nest)).append(")");
+					builder.append("(").append(convertQuery(nest, term, excludeSeparator)).append(")");
 				}
 			}
 		}
@@ -0,0 +1,57 @@
+package am.ik.lognroll.logs.retention;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.annotation.Nullable;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Retention policies that are applied in the background. The first policy that selects a
+ * log decides how long it is kept: the {@code rules} in order, then {@code services},
+ * then {@code maxAge}. Logs that no policy selects are kept forever.
+ *
+ * @param maxAge if set, how long logs are kept
+ * @param services how long the logs of a service are kept, by service name. Use
+ * {@code services[my.service]=7d} for names with dots.
+ * @param rules how long the logs selected by a filter are kept
+ * @param maxSize if set, the oldest logs are deleted while the database uses more than
+ * this, regardless of the other policies
+ * @param interval the delay between two runs
+ * @param batchSize the maximum number of logs deleted per transaction, so that ingest is
+ * blocked only briefly
+ * @param timeBudget the maximum time a run deletes logs and reclaims pages. The rest is
+ * left to the next run.
+ * @param vacuumPages the number of pages the full-text index is merged by while the
+ * oldest logs are deleted for {@code maxSize}, so that its deleted entries are freed
+ */
+@ConfigurationProperties(prefix = "lognroll.retention")
+public record RetentionProps(@Nullable Duration maxAge, @DefaultValue Map<String, Duration> services,
+		@DefaultValue List<Rule> rules, @Nullable DataSize maxSize, @DefaultValue("1m") Duration interval,
+		@DefaultValue("1000") int batchSize, @DefaultValue("1s") Duration timeBudget,
+		@DefaultValue("1000") int vacuumPages) {
+
+	/**
+	 * Returns whether any policy is configured.
+	 */
+	public boolean hasPolicies() {
+		return this.maxAge != null || !this.services.isEmpty() || !this.rules.isEmpty() || this.maxSize != null;
+	}
+
+	/**
+	 * A policy for the logs that match a filter.
+	 *
+	 * @param name the name of the rule that is used as the {@code policy} tag of its
+	 * metrics. Defaults to {@code rules[<index>]}.
+	 * @param filter the filter expression that selects the logs the rule applies to, e.g.
+	 * {@code severityText == 'ERROR'}
+	 * @param maxAge how long the selected logs are kept
+	 */
+	public record Rule(@Nullable String name, String filter, Duration maxAge) {
+	}
+
+}
@@ -0,0 +1,304 @@
+package am.ik.lognroll.logs.retention;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.filter.converter.Sqlite3FilterExpressionConverter;
+import am.ik.lognroll.logs.jdbc.AutoVacuum;
+import am.ik.lognroll.logs.jdbc.FullTextIndex;
+import am.ik.lognroll.logs.retention.RetentionProps.Rule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Applies the {@link RetentionProps retention policies} in the background. Each run
+ * deletes expired logs in small transactions, so that ingest interleaves with them, and
+ * stops when its time budget is used up. Free pages are then returned to the file system
+ * with {@link LogStore#vacuum} for the rest of the budget.
+ * <p>
+ * The number of deleted logs is counted per policy as {@code logs.retention.deleted}, and
+ * the duration of the runs is recorded as {@code logs.retention.run}.
+ */
+@Component
+public class RetentionScheduler implements SmartLifecycle {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final LogStore logStore;
+
+	private final JdbcClient jdbcClient;
+
+	private final RetentionProps props;
+
+	private final Clock clock;
+
+	private final List<Policy> policies;
+
+	private final MeterRegistry registry;
+
+	private final Timer runTimer;
+
+	private final Counter vacuumedPages;
+
+	private final Logger logger = LoggerFactory.getLogger(RetentionScheduler.class);
+
+	@Nullable
+	private volatile ScheduledExecutorService executor;
+
+	@Nullable
+	private volatile ScheduledFuture<?> retentionRun;
+
+	private volatile boolean running = false;
+
+	@Autowired
+	public RetentionScheduler(JdbcTemplate jdbcTemplate, LogStore logStore, RetentionProps props,
+			MeterRegistry registry) {
+		this(jdbcTemplate, logStore, props, registry, Clock.systemUTC());
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a rule is invalid
+	 */
+	RetentionScheduler(JdbcTemplate jdbcTemplate, LogStore logStore, RetentionProps props, MeterRegistry registry,
+			Clock clock) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.logStore = logStore;
+		this.jdbcClient = JdbcClient.create(jdbcTemplate);
+		this.props = props;
+		this.clock = clock;
+		this.registry = registry;
+		this.policies = compile(props);
+		this.runTimer = Timer.builder("logs.retention.run")
+			.description("Duration of the retention runs")
+			.register(registry);
+		this.vacuumedPages = Counter.builder("logs.retention.vacuumed")
+			.description("Number of free pages returned to the file system")
+			.baseUnit("pages")
+			.register(registry);
+	}
+
+	/**
+	 * Apply the policies once within the time budget.
+	 * @return the number of deleted logs
+	 */
+	public long run() {
+		return this.runTimer.record(() -> {
+			long deadline = System.nanoTime() + this.props.timeBudget().toNanos();
+			long deleted = 0;
+			for (int i = 0; i < this.policies.size(); i++) {
+				deleted += deleteExpired(i, deadline);
+			}
+			DataSize maxSize = this.props.maxSize();
+			if (maxSize != null) {
+				deleted += deleteOldest(maxSize, deadline);
+			}
+			long remaining = Math.max(0, deadline - System.nanoTime());
+			this.vacuumedPages.increment((double) this.logStore.vacuum(Duration.ofNanos(remaining)));
+			return deleted;
+		});
+	}
+
+	private long deleteExpired(int index, long deadline) {
+		Policy policy = this.policies.get(index);
+		StringBuilder where = new StringBuilder(
+				"log.observed_timestamp < :cutoff AND (%s)".formatted(policy.condition()));
+		Map<String, Object> params = new HashMap<>(policy.params());
+		// logs selected by an earlier policy are left to it
+		for (Policy earlier : this.policies.subList(0, index)) {
+			where.append(" AND NOT COALESCE((%s), 0)".formatted(earlier.condition()));
+			params.putAll(earlier.params());
+		}
+		params.put("cutoff", Timestamp.from(this.clock.instant().minus(policy.maxAge())));
+		return deleteInBatches("""
+				DELETE FROM log WHERE log_id IN (
+				    SELECT log.log_id
+				    FROM log
+				    LEFT JOIN resource_attributes ON log.resource_attributes_digest = resource_attributes.digest
+				    WHERE %s
+				    LIMIT :limit
+				)
+				""".formatted(where), params, policy.deleted(), deadline);
+	}
+
+	private long deleteOldest(DataSize maxSize, long deadline) {
+		long deleted = 0;
+		while (usedBytes() > maxSize.toBytes() && System.nanoTime() - deadline < 0) {
+			int batch = this.jdbcClient.sql("""
+					DELETE FROM log WHERE log_id IN (
+					    SELECT log_id
+					    FROM log
+					    ORDER BY observed_timestamp, timestamp, log_id
+					    LIMIT :limit
+					)
+					""").param("limit", this.props.batchSize()).update();
+			counter("max-size").increment(batch);
+			deleted += batch;
+			if (batch == 0) {
+				break;
+			}
+			// deleted logs only leave the full-text index when its segments are merged,
+			// and are counted as used until then
+			FullTextIndex.merge(this.jdbcTemplate, -this.props.vacuumPages(), deadline);
+		}
+		return deleted;
+	}
+
+	private long deleteInBatches(String sql, Map<String, Object> params, Counter counter, long deadline) {
+		long deleted = 0;
+		while (System.nanoTime() - deadline < 0) {
+			// every batch is a transaction of its own
+			int batch = this.jdbcClient.sql(sql).params(params).param("limit", this.props.batchSize()).update();
+			counter.increment(batch);
+			deleted += batch;
+			if (batch < this.props.batchSize()) {
+				break;
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Switch an empty database to incremental auto-vacuum, which takes a {@code VACUUM}
+	 * that is instant while there are no logs. A database with logs is only switched by
+	 * the {@code VACUUM} task of
+	 * {@link am.ik.lognroll.logs.maintenance.DatabaseMaintenance}, which rewrites the
+	 * whole file.
+	 * @return whether the database is in incremental auto-vacuum mode
+	 */
+	boolean enableIncrementalVacuum() {
+		if (AutoVacuum.isIncremental(this.jdbcTemplate)) {
+			return true;
+		}
+		Boolean empty = this.jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM log)", Boolean.class);
+		if (!Boolean.TRUE.equals(empty)) {
+			return false;
+		}
+		AutoVacuum.enableIncremental(this.jdbcTemplate);
+		return true;
+	}
+
+	/**
+	 * Returns the size of the pages in use, i.e. the size of the file without the free
+	 * pages.
+	 */
+	long usedBytes() {
+		return (pragma("page_count") - pragma("freelist_count")) * pragma("page_size");
+	}
+
+	private long pragma(String name) {
+		return this.jdbcClient.sql("PRAGMA " + name).query(Long.class).single();
+	}
+
+	private Counter counter(String policy) {
+		return Counter.builder("logs.retention.deleted")
+			.description("Number of logs deleted by a retention policy")
+			.tag("policy", policy)
+			.register(this.registry);
+	}
+
+	private List<Policy> compile(RetentionProps props) {
+		FilterExpressionTextParser parser = new FilterExpressionTextParser();
+		Sqlite3FilterExpressionConverter converter = new Sqlite3FilterExpressionConverter();
+		List<Policy> policies = new ArrayList<>();
+		for (int i = 0; i < props.rules().size(); i++) {
+			Rule rule = props.rules().get(i);
+			String name = Objects.requireNonNullElse(rule.name(), "rules[%d]".formatted(i));
+			String condition;
+			try {
+				condition = converter.convertExpression(parser.parse(rule.filter()));
+			}
+			catch (FilterExpressionTextParser.FilterExpressionParseException | IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+						"Invalid filter of retention rule '%s': %s (%s)".formatted(name, rule.filter(), e.getMessage()),
+						e);
+			}
+			policies.add(new Policy(condition, Map.of(), rule.maxAge(), counter(name)));
+		}
+		int i = 0;
+		for (Map.Entry<String, Duration> service : props.services().entrySet()) {
+			String param = "service_" + i++;
+			policies.add(new Policy("log.service_name = :" + param, Map.of(param, service.getKey()), service.getValue(),
+					counter("services[%s]".formatted(service.getKey()))));
+		}
+		Duration maxAge = props.maxAge();
+		if (maxAge != null) {
+			policies.add(new Policy("1 = 1", Map.of(), maxAge, counter("max-age")));
+		}
+		return List.copyOf(policies);
+	}
+
+	@Override
+	public void start() {
+		if (this.props.hasPolicies()) {
+			if (!enableIncrementalVacuum()) {
+				logger.info(
+						"Space freed by retention is reused but not returned to the file system until the VACUUM maintenance task has run once");
+			}
+			ScheduledExecutorService executor = Executors
+				.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("lognroll-retention").factory());
+			this.retentionRun = executor.scheduleWithFixedDelay(() -> {
+				try {
+					long deleted = run();
+					if (deleted > 0) {
+						logger.info("Deleted {} logs by retention", deleted);
+					}
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to apply the retention policies", e);
+				}
+			}, this.props.interval().toMillis(), this.props.interval().toMillis(), TimeUnit.MILLISECONDS);
+			this.executor = executor;
+		}
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledFuture<?> retentionRun = this.retentionRun;
+		if (retentionRun != null) {
+			retentionRun.cancel(false);
+			this.retentionRun = null;
+		}
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+			this.executor = null;
+		}
+		this.running = false;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * @param condition the SQL condition that selects the logs of the policy
+	 */
+	private record Policy(String condition, Map<String, Object> params, Duration maxAge, Counter deleted) {
+	}
+
+}
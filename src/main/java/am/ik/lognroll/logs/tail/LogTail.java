@@ -0,0 +1,109 @@
+package am.ik.lognroll.logs.tail;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.ingest.LogsStoredEvent;
+import am.ik.lognroll.logs.query.FullTextQueryMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes stored logs to the live tail streams. Every stored batch is handed to each
+ * stream as it is, and the streams match and send it on their own virtual threads, so
+ * neither querying the database nor a slow client is on the ingest path.
+ * <p>
+ * The streams are completed when the application stops, before the web server waits for
+ * the active requests to finish.
+ */
+@Component
+public class LogTail implements SmartLifecycle {
+
+	private final TailProps props;
+
+	private final ObjectMapper objectMapper;
+
+	private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean running = false;
+
+	public LogTail(TailProps props, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		this.props = props;
+		this.objectMapper = objectMapper;
+		Gauge.builder("logs.tail.subscribers", this.subscriptions, Set::size)
+			.description("Number of live tail streams")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Open a stream of the stored logs that match the query and the filter.
+	 * @return the emitter of the new stream or {@code null} if there are too many streams
+	 * or the application is stopping
+	 */
+	@Nullable
+	public SseEmitter subscribe(@Nullable FullTextQueryMatcher query, @Nullable Predicate<FieldAccessor> filter,
+			Duration interval) {
+		if (!this.running || this.subscriptions.size() >= this.props.maxSubscribers()) {
+			return null;
+		}
+		SseEmitter emitter = new SseEmitter(this.props.timeout().toMillis());
+		Subscription subscription = new Subscription(emitter, query, filter, interval, this.props, this.objectMapper);
+		Runnable unsubscribe = () -> {
+			subscription.close();
+			this.subscriptions.remove(subscription);
+		};
+		emitter.onCompletion(unsubscribe);
+		emitter.onTimeout(unsubscribe);
+		emitter.onError(e -> unsubscribe.run());
+		this.subscriptions.add(subscription);
+		Thread.ofVirtual().name("log-tail").start(() -> {
+			try {
+				subscription.run();
+			}
+			finally {
+				this.subscriptions.remove(subscription);
+				emitter.complete();
+			}
+		});
+		return emitter;
+	}
+
+	@EventListener
+	public void onLogsStored(LogsStoredEvent event) {
+		for (Subscription subscription : this.subscriptions) {
+			subscription.offer(event.logs());
+		}
+	}
+
+	int subscribers() {
+		return this.subscriptions.size();
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.subscriptions.forEach(Subscription::close);
+		this.subscriptions.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+}
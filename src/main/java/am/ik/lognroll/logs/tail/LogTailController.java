@@ -0,0 +1,67 @@
+package am.ik.lognroll.logs.tail;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.filter.converter.PredicateFilterExpressionConverter;
+import am.ik.lognroll.logs.query.FullTextLayout;
+import am.ik.lognroll.logs.query.FullTextQueryMatcher;
+import jakarta.annotation.Nullable;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+public class LogTailController {
+
+	private final LogTail logTail;
+
+	private final FullTextLayout layout;
+
+	private final FilterExpressionTextParser parser = new FilterExpressionTextParser();
+
+	private final PredicateFilterExpressionConverter converter = new PredicateFilterExpressionConverter();
+
+	public LogTailController(LogTail logTail, FullTextLayout layout) {
+		this.logTail = logTail;
+		this.layout = layout;
+	}
+
+	@GetMapping(path = "/api/logs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter stream(@RequestParam(required = false) String query,
+			@RequestParam(required = false) String filter,
+			@RequestParam(required = false, defaultValue = "PT10M") Duration interval) {
+		if (interval.toMinutes() < 1) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'interval' must be at least one minute");
+		}
+		FullTextQueryMatcher matcher = StringUtils.hasText(query) ? FullTextQueryMatcher.compile(query, this.layout)
+				: null;
+		SseEmitter emitter = this.logTail.subscribe(matcher, compileFilter(filter), interval);
+		if (emitter == null) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live tail streams");
+		}
+		return emitter;
+	}
+
+	@Nullable
+	private Predicate<FieldAccessor> compileFilter(@Nullable String filter) {
+		if (!StringUtils.hasText(filter)) {
+			return null;
+		}
+		try {
+			return this.converter.convertExpression(this.parser.parse(filter));
+		}
+		catch (FilterExpressionTextParser.FilterExpressionParseException | IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,208 @@
+package am.ik.lognroll.logs.tail;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogBatchFieldAccessor;
+import am.ik.lognroll.logs.LogBuilder;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.QueryController;
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.query.FullTextQueryMatcher;
+import am.ik.lognroll.util.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nullable;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * One live tail stream. Stored batches are queued by the publishing thread and matched by
+ * the virtual thread of the subscription, so that slow clients never hold up the ingest
+ * path. The stream carries three kinds of events:
+ * <ul>
+ * <li>{@code logs}: the matching logs of a batch, like {@code /api/logs}</li>
+ * <li>{@code delta}: the number of matching logs and the volumes since the previous
+ * delta, and the number of logs that were skipped because the client was too slow</li>
+ * <li>a comment if nothing happened, so that closed connections are detected</li>
+ * </ul>
+ */
+class Subscription implements Runnable {
+
+	private final SseEmitter emitter;
+
+	@Nullable
+	private final FullTextQueryMatcher query;
+
+	@Nullable
+	private final Predicate<FieldAccessor> filter;
+
+	private final long intervalMinutes;
+
+	private final Duration deltaInterval;
+
+	private final BlockingQueue<LogBatch> queue;
+
+	private final ObjectMapper objectMapper;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final Map<Instant, Long> volumes = new TreeMap<>();
+
+	private long count = 0;
+
+	private volatile boolean closed = false;
+
+	Subscription(SseEmitter emitter, @Nullable FullTextQueryMatcher query, @Nullable Predicate<FieldAccessor> filter,
+			Duration interval, TailProps props, ObjectMapper objectMapper) {
+		this.emitter = emitter;
+		this.query = query;
+		this.filter = filter;
+		this.intervalMinutes = interval.toMinutes();
+		this.deltaInterval = props.deltaInterval();
+		this.queue = new ArrayBlockingQueue<>(props.bufferSize());
+		this.objectMapper = objectMapper;
+	}
+
+	void offer(LogBatch logs) {
+		if (!this.closed && !this.queue.offer(logs)) {
+			this.dropped.addAndGet(logs.size());
+		}
+	}
+
+	void close() {
+		this.closed = true;
+	}
+
+	boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public void run() {
+		long nextDelta = System.nanoTime() + this.deltaInterval.toNanos();
+		try {
+			while (!this.closed) {
+				LogBatch logs = this.queue.poll(Math.max(nextDelta - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+				if (logs != null) {
+					send(logs);
+				}
+				if (System.nanoTime() - nextDelta >= 0) {
+					sendDelta();
+					nextDelta = System.nanoTime() + this.deltaInterval.toNanos();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException | IllegalStateException e) {
+			// the client has gone or the emitter has been completed
+		}
+		finally {
+			this.closed = true;
+			this.queue.clear();
+		}
+	}
+
+	void send(LogBatch logs) throws IOException {
+		List<Log> matched = new ArrayList<>();
+		Map<Long, Map<String, Object>> resourceAttributes = new HashMap<>();
+		LogBatchFieldAccessor accessor = new LogBatchFieldAccessor(logs);
+		for (int i = 0; i < logs.size(); i++) {
+			if (!matches(logs, accessor.at(i), i)) {
+				continue;
+			}
+			this.count++;
+			this.volumes.merge(bucket(logs.observedTimestamp(i)), 1L, Long::sum);
+			matched.add(toLog(logs, i, resourceAttributes));
+		}
+		if (!matched.isEmpty()) {
+			this.emitter.send(SseEmitter.event()
+				.name("logs")
+				.data(new QueryController.LogsResponse(matched), MediaType.APPLICATION_JSON));
+		}
+	}
+
+	void sendDelta() throws IOException {
+		long dropped = this.dropped.getAndSet(0);
+		if (this.count == 0 && dropped == 0) {
+			this.emitter.send(SseEmitter.event().comment("heartbeat"));
+			return;
+		}
+		List<LogQuery.Volume> volumes = this.volumes.entrySet()
+			.stream()
+			.map(e -> new LogQuery.Volume(e.getKey(), e.getValue()))
+			.toList();
+		this.emitter.send(SseEmitter.event()
+			.name("delta")
+			.data(new Delta(this.count, volumes, dropped), MediaType.APPLICATION_JSON));
+		this.count = 0;
+		this.volumes.clear();
+	}
+
+	private boolean matches(LogBatch logs, FieldAccessor accessor, int i) {
+		FullTextQueryMatcher query = this.query;
+		if (query != null && !query.matches(logs.body(i))) {
+			return false;
+		}
+		Predicate<FieldAccessor> filter = this.filter;
+		return filter == null || filter.test(accessor);
+	}
+
+	/**
+	 * Same buckets as {@code /api/logs/volumes}, i.e. the observed timestamp truncated to
+	 * a multiple of the interval within its hour.
+	 */
+	Instant bucket(long observedTimestamp) {
+		Instant instant = Instant.ofEpochSecond(0, observedTimestamp);
+		Instant hour = instant.truncatedTo(ChronoUnit.HOURS);
+		long minutes = Duration.between(hour, instant).toMinutes();
+		return hour.plus(minutes / this.intervalMinutes * this.intervalMinutes, ChronoUnit.MINUTES);
+	}
+
+	private Log toLog(LogBatch logs, int i, Map<Long, Map<String, Object>> resourceAttributes) {
+		long digest = logs.resourceAttributesDigest(i);
+		return LogBuilder.log()
+			.timestamp(Instant.ofEpochSecond(0, logs.timestamp(i)))
+			.observedTimestamp(Instant.ofEpochSecond(0, logs.observedTimestamp(i)))
+			.severityText(logs.severityText(i))
+			.severityNumber(logs.severityNumber(i))
+			.serviceName(logs.serviceName(i))
+			.scope(logs.scope(i))
+			.body(logs.body(i))
+			.traceId(logs.traceId(i))
+			.spanId(logs.spanId(i))
+			.traceFlags(logs.traceFlags(i))
+			.attributes(Json.parse(this.objectMapper, logs.attributes(i)))
+			.resourceAttributes(resourceAttributes.computeIfAbsent(digest,
+					d -> Json.parse(this.objectMapper, Objects.requireNonNull(logs.resourceAttributes().get(d)))))
+			.resourceAttributesDigest(digest)
+			.build();
+	}
+
+	/**
+	 * @param count the number of matching logs since the previous delta
+	 * @param volumes the number of matching logs per bucket since the previous delta
+	 * @param dropped the number of stored logs that were skipped because the client could
+	 * not keep up
+	 */
+	record Delta(long count, List<LogQuery.Volume> volumes, long dropped) {
+	}
+
+}
@@ -0,0 +1,21 @@
+package am.ik.lognroll.logs.tail;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the live tail.
+ *
+ * @param maxSubscribers the maximum number of concurrent live tail streams
+ * @param deltaInterval how often the count and volume deltas are pushed to a stream
+ * @param timeout the time after which a stream is closed. Clients reconnect
+ * automatically.
+ * @param bufferSize the maximum number of stored batches waiting to be matched per
+ * stream. Batches beyond that are skipped and reported as dropped.
+ */
+@ConfigurationProperties(prefix = "lognroll.tail")
+public record TailProps(@DefaultValue("64") int maxSubscribers, @DefaultValue("5s") Duration deltaInterval,
+		@DefaultValue("30m") Duration timeout, @DefaultValue("256") int bufferSize) {
+}
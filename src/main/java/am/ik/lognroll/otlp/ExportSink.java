@@ -0,0 +1,69 @@
+package am.ik.lognroll.otlp;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.ingest.IngestRejectedException;
+import am.ik.lognroll.logs.ingest.LogIngester;
+import io.micrometer.core.instrument.Counter;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsPartialSuccess;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
+
+/**
+ * Hands the decoded batches of one export request to the {@link LogIngester}. If the
+ * first batch is rejected, the {@link IngestRejectedException} is propagated so that the
+ * whole request is retried by the client. Once a batch has been accepted, a retry would
+ * duplicate it, so the remaining batches of a rejected request are counted and reported
+ * as {@code partial_success} instead.
+ */
+class ExportSink implements Consumer<LogBatch> {
+
+	private final LogIngester logIngester;
+
+	private final Counter counter;
+
+	private long accepted = 0;
+
+	private long rejected = 0;
+
+	private String rejectedMessage = "";
+
+	ExportSink(LogIngester logIngester, Counter counter) {
+		this.logIngester = logIngester;
+		this.counter = counter;
+	}
+
+	@Override
+	public void accept(LogBatch batch) {
+		if (this.rejected > 0) {
+			this.rejected += batch.size();
+			return;
+		}
+		try {
+			this.logIngester.ingest(batch);
+		}
+		catch (IngestRejectedException e) {
+			if (this.accepted == 0) {
+				throw e;
+			}
+			this.rejected += batch.size();
+			this.rejectedMessage = Objects.requireNonNullElse(e.getMessage(), "");
+			return;
+		}
+		this.accepted += batch.size();
+		this.counter.increment(batch.size());
+	}
+
+	ExportLogsServiceResponse response() {
+		if (this.rejected == 0) {
+			return ExportLogsServiceResponse.getDefaultInstance();
+		}
+		return ExportLogsServiceResponse.newBuilder()
+			.setPartialSuccess(ExportLogsPartialSuccess.newBuilder()
+				.setRejectedLogRecords(this.rejected)
+				.setErrorMessage(this.rejectedMessage))
+			.build();
+	}
+
+}
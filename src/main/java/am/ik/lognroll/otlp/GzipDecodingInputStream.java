@@ -0,0 +1,224 @@
+package am.ik.lognroll.otlp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Gzip decoder that, unlike {@link java.util.zip.GZIPInputStream}, borrows its
+ * {@link Inflater} and input buffer from a pool instead of allocating (and finalizing)
+ * them per request. Concatenated gzip members are supported. A truncated stream is
+ * reported as a {@link ZipException} like any other malformed input. The pooled resources
+ * are returned on {@link #close()}.
+ */
+class GzipDecodingInputStream extends InputStream {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int FHCRC = 2;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FNAME = 8;
+
+	private static final int FCOMMENT = 16;
+
+	private static final BlockingQueue<Resources> pool = new ArrayBlockingQueue<>(
+			Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+	private final InputStream in;
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] single = new byte[1];
+
+	@Nullable
+	private Resources resources;
+
+	/**
+	 * start of the bytes in the buffer that are neither consumed by the header/trailer
+	 * parser nor handed to the inflater
+	 */
+	private int pos = 0;
+
+	private int limit = 0;
+
+	private long size = 0;
+
+	private boolean eof = false;
+
+	GzipDecodingInputStream(InputStream in) {
+		this.in = in;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return read(this.single, 0, 1) == -1 ? -1 : this.single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (this.eof) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		Resources resources = this.resources;
+		if (resources == null) {
+			resources = borrow();
+			this.resources = resources;
+			readHeader(resources);
+		}
+		Inflater inflater = resources.inflater();
+		while (true) {
+			int n;
+			try {
+				n = inflater.inflate(b, off, len);
+			}
+			catch (DataFormatException e) {
+				String message = e.getMessage();
+				throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+			}
+			if (n > 0) {
+				this.crc.update(b, off, n);
+				this.size += n;
+				return n;
+			}
+			if (inflater.finished()) {
+				this.pos = this.limit - inflater.getRemaining();
+				readTrailer(resources);
+				if (!hasMoreInput(resources)) {
+					this.eof = true;
+					return -1;
+				}
+				inflater.reset();
+				readHeader(resources);
+			}
+			else if (inflater.needsDictionary()) {
+				throw new ZipException("Unexpected preset dictionary");
+			}
+			else if (inflater.needsInput()) {
+				if (fill(resources) <= 0) {
+					throw new ZipException("Unexpected end of ZLIB input stream");
+				}
+				inflater.setInput(resources.buffer(), this.pos, this.limit - this.pos);
+				this.pos = this.limit;
+			}
+		}
+	}
+
+	private void readHeader(Resources resources) throws IOException {
+		this.crc.reset();
+		this.size = 0;
+		// the header checksum covers the header bytes only
+		CRC32 headerCrc = new CRC32();
+		if (readUShort(resources, headerCrc) != GZIP_MAGIC) {
+			throw new ZipException("Not in GZIP format");
+		}
+		if (readUByte(resources, headerCrc) != 8) {
+			throw new ZipException("Unsupported compression method");
+		}
+		int flags = readUByte(resources, headerCrc);
+		// MTIME, XFL and OS
+		for (int i = 0; i < 6; i++) {
+			readUByte(resources, headerCrc);
+		}
+		if ((flags & FEXTRA) == FEXTRA) {
+			int length = readUShort(resources, headerCrc);
+			for (int i = 0; i < length; i++) {
+				readUByte(resources, headerCrc);
+			}
+		}
+		if ((flags & FNAME) == FNAME) {
+			while (readUByte(resources, headerCrc) != 0) {
+				// skip
+			}
+		}
+		if ((flags & FCOMMENT) == FCOMMENT) {
+			while (readUByte(resources, headerCrc) != 0) {
+				// skip
+			}
+		}
+		if ((flags & FHCRC) == FHCRC) {
+			int expected = (int) headerCrc.getValue() & 0xffff;
+			if (readUShort(resources, null) != expected) {
+				throw new ZipException("Corrupt GZIP header");
+			}
+		}
+		resources.inflater().setInput(resources.buffer(), this.pos, this.limit - this.pos);
+		this.pos = this.limit;
+	}
+
+	private void readTrailer(Resources resources) throws IOException {
+		long crc = readUInt(resources);
+		long isize = readUInt(resources);
+		if (crc != this.crc.getValue() || isize != (this.size & 0xffffffffL)) {
+			throw new ZipException("Corrupt GZIP trailer");
+		}
+	}
+
+	private boolean hasMoreInput(Resources resources) throws IOException {
+		return this.pos < this.limit || fill(resources) > 0;
+	}
+
+	private long readUInt(Resources resources) throws IOException {
+		long s = readUShort(resources, null);
+		return ((long) readUShort(resources, null) << 16) | s;
+	}
+
+	private int readUShort(Resources resources, @Nullable CRC32 headerCrc) throws IOException {
+		int b = readUByte(resources, headerCrc);
+		return (readUByte(resources, headerCrc) << 8) | b;
+	}
+
+	private int readUByte(Resources resources, @Nullable CRC32 headerCrc) throws IOException {
+		if (this.pos >= this.limit && fill(resources) <= 0) {
+			throw new ZipException("Unexpected end of GZIP input stream");
+		}
+		int b = resources.buffer()[this.pos++] & 0xff;
+		if (headerCrc != null) {
+			headerCrc.update(b);
+		}
+		return b;
+	}
+
+	private int fill(Resources resources) throws IOException {
+		int n = this.in.read(resources.buffer(), 0, resources.buffer().length);
+		this.pos = 0;
+		this.limit = Math.max(n, 0);
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		Resources resources = this.resources;
+		if (resources != null) {
+			this.resources = null;
+			this.eof = true;
+			resources.inflater().reset();
+			if (!pool.offer(resources)) {
+				resources.inflater().end();
+			}
+		}
+		this.in.close();
+	}
+
+	private static Resources borrow() {
+		Resources resources = pool.poll();
+		return resources != null ? resources : new Resources(new Inflater(true), new byte[BUFFER_SIZE]);
+	}
+
+	private record Resources(Inflater inflater, byte[] buffer) {
+	}
+
+}
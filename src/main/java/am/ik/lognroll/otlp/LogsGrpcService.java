@@ -0,0 +1,176 @@
+package am.ik.lognroll.otlp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.ingest.IngestRejectedException;
+import am.ik.lognroll.logs.ingest.LogIngester;
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.rpc.Code;
+import com.google.rpc.RetryInfo;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceRequest;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import org.springframework.dao.TransientDataAccessException;
+
+/**
+ * {@code opentelemetry.proto.collector.logs.v1.LogsService} that feeds the same ingest
+ * pipeline as {@link LogsV1Controller}. The service is bound with a hand-written
+ * {@link MethodDescriptor} whose request marshaller decodes the message with
+ * {@link OtlpLogsDecoder}, so no {@code ExportLogsServiceRequest} is materialized.
+ */
+public class LogsGrpcService {
+
+	public static final String SERVICE_NAME = "opentelemetry.proto.collector.logs.v1.LogsService";
+
+	private final LogIngester logIngester;
+
+	private final MeterRegistry registry;
+
+	private final OtlpLogsDecoder decoder;
+
+	public LogsGrpcService(LogIngester logIngester, MeterRegistry registry, OtlpLogsDecoder decoder) {
+		this.logIngester = logIngester;
+		this.registry = registry;
+		this.decoder = decoder;
+	}
+
+	public ServerServiceDefinition bindService() {
+		MethodDescriptor<ExportRequest, ExportLogsServiceResponse> export = MethodDescriptor
+			.<ExportRequest, ExportLogsServiceResponse>newBuilder()
+			.setType(MethodDescriptor.MethodType.UNARY)
+			.setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, "Export"))
+			.setRequestMarshaller(new ExportRequestMarshaller(this.decoder))
+			.setResponseMarshaller(ProtoUtils.marshaller(ExportLogsServiceResponse.getDefaultInstance()))
+			.build();
+		return ServerServiceDefinition.builder(SERVICE_NAME)
+			.addMethod(export, ServerCalls.asyncUnaryCall(this::export))
+			.build();
+	}
+
+	void export(ExportRequest request, StreamObserver<ExportLogsServiceResponse> responseObserver) {
+		ExportSink sink = new ExportSink(this.logIngester, Counter.builder("logs.ingested").register(this.registry));
+		try {
+			request.batches().forEach(sink);
+		}
+		catch (IngestRejectedException e) {
+			responseObserver.onError(resourceExhausted(e));
+			return;
+		}
+		catch (RuntimeException e) {
+			responseObserver.onError(status(e).withDescription(e.getMessage()).withCause(e).asRuntimeException());
+			return;
+		}
+		responseObserver.onNext(sink.response());
+		responseObserver.onCompleted();
+	}
+
+	/**
+	 * OTLP clients retry {@code UNAVAILABLE}, so it is only returned for errors that go
+	 * away by themselves: a locked database ({@code SQLITE_BUSY} / {@code SQLITE_LOCKED})
+	 * or a timeout while waiting for a pooled connection. Anything else is
+	 * {@code INTERNAL}, which is not retried.
+	 */
+	static Status status(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof TransientDataAccessException || cause instanceof SQLTransientException) {
+				return Status.UNAVAILABLE;
+			}
+			if (cause instanceof SQLiteException ex) {
+				SQLiteErrorCode code = ex.getResultCode();
+				// extended result codes such as SQLITE_BUSY_SNAPSHOT share the
+				// primary code
+				int primary = code.code & 0xff;
+				if (primary == SQLiteErrorCode.SQLITE_BUSY.code || primary == SQLiteErrorCode.SQLITE_LOCKED.code) {
+					return Status.UNAVAILABLE;
+				}
+			}
+		}
+		return Status.INTERNAL;
+	}
+
+	/**
+	 * OTLP clients retry {@code RESOURCE_EXHAUSTED} only if the status carries
+	 * {@link RetryInfo}.
+	 */
+	static StatusRuntimeException resourceExhausted(IngestRejectedException e) {
+		Duration retryAfter = e.getRetryAfter();
+		RetryInfo retryInfo = RetryInfo.newBuilder()
+			.setRetryDelay(com.google.protobuf.Duration.newBuilder()
+				.setSeconds(retryAfter.getSeconds())
+				.setNanos(retryAfter.getNano()))
+			.build();
+		com.google.rpc.Status status = com.google.rpc.Status.newBuilder()
+			.setCode(Code.RESOURCE_EXHAUSTED_VALUE)
+			.setMessage(Objects.requireNonNullElse(e.getMessage(), ""))
+			.addDetails(Any.pack(retryInfo))
+			.build();
+		return StatusProto.toStatusRuntimeException(status);
+	}
+
+	/**
+	 * Decoded {@code ExportLogsServiceRequest}.
+	 */
+	record ExportRequest(List<LogBatch> batches) {
+	}
+
+	static class ExportRequestMarshaller implements MethodDescriptor.Marshaller<ExportRequest> {
+
+		private final OtlpLogsDecoder decoder;
+
+		ExportRequestMarshaller(OtlpLogsDecoder decoder) {
+			this.decoder = decoder;
+		}
+
+		/**
+		 * Requests are only ever parsed, as the descriptor is bound on the server side.
+		 */
+		@Override
+		public InputStream stream(ExportRequest value) {
+			throw new IllegalStateException("Export requests are never serialized on the server side");
+		}
+
+		/**
+		 * Decode the whole request before it is handed to the ingester, so that a
+		 * malformed request is rejected before any of its logs is stored. The decoded
+		 * batches of a call are bounded by {@link OtlpProps#maxRequestSize()}, as the
+		 * decoder stops at that size, and the number of concurrent calls per connection
+		 * by {@link OtlpProps.Grpc#maxConcurrentCallsPerConnection()}.
+		 */
+		@Override
+		public ExportRequest parse(InputStream stream) {
+			try {
+				return new ExportRequest(this.decoder.decode(stream));
+			}
+			catch (OtlpLogsDecoder.RequestTooLargeException e) {
+				throw Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).withCause(e).asRuntimeException();
+			}
+			catch (InvalidProtocolBufferException e) {
+				throw Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asRuntimeException();
+			}
+			catch (IOException e) {
+				throw Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException();
+			}
+		}
+
+	}
+
+}
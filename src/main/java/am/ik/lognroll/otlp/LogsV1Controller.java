@@ -1,38 +1,64 @@
 package am.ik.lognroll.otlp;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.zip.ZipException;
 
-import am.ik.lognroll.logs.Log;
-import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.LogBatch;
 import am.ik.lognroll.logs.Logs;
+import am.ik.lognroll.logs.ingest.LogIngester;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
 import io.opentelemetry.proto.logs.v1.LogsData;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 public class LogsV1Controller {
 
-	private final LogStore logStore;
+	private final LogIngester logIngester;
 
 	private final MeterRegistry registry;
 
-	public LogsV1Controller(LogStore logStore, MeterRegistry registry) {
-		this.logStore = logStore;
+	private final OtlpLogsDecoder decoder;
+
+	public LogsV1Controller(LogIngester logIngester, MeterRegistry registry, OtlpProps props) {
+		this.logIngester = logIngester;
 		this.registry = registry;
+		this.decoder = new OtlpLogsDecoder(props.maxRequestSize().toBytes(), props.decodeBatchSize());
+	}
+
+	@PostMapping(path = "/v1/logs", consumes = MediaType.APPLICATION_PROTOBUF_VALUE)
+	public ResponseEntity<ExportLogsServiceResponse> logs(InputStream body) throws IOException {
+		ExportSink sink = new ExportSink(this.logIngester, Counter.builder("logs.ingested").register(this.registry));
+		List<LogBatch> batches;
+		try {
+			batches = this.decoder.decode(body);
+		}
+		catch (OtlpLogsDecoder.RequestTooLargeException e) {
+			throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage(), e);
+		}
+		catch (InvalidProtocolBufferException | ZipException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+		}
+		batches.forEach(sink);
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_PROTOBUF).body(sink.response());
 	}
 
-	@PostMapping(path = "/v1/logs",
-			consumes = { MediaType.APPLICATION_PROTOBUF_VALUE, MediaType.APPLICATION_JSON_VALUE })
-	public void logs(@RequestBody LogsData logs) throws InvalidProtocolBufferException {
-		List<Log> data = Logs.from(logs);
-		Counter.builder("logs.ingested").register(this.registry).increment(data.size());
-		this.logStore.addAll(data);
+	@PostMapping(path = "/v1/logs", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<ExportLogsServiceResponse> logs(@RequestBody LogsData logs) {
+		ExportSink sink = new ExportSink(this.logIngester, Counter.builder("logs.ingested").register(this.registry));
+		sink.accept(Logs.toBatch(logs));
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(sink.response());
 	}
 
 }
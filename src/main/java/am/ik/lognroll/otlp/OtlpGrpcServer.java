@@ -0,0 +1,126 @@
+package am.ik.lognroll.otlp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import am.ik.lognroll.auth.AuthProps;
+import am.ik.lognroll.auth.GrpcAuthInterceptor;
+import am.ik.lognroll.logs.ingest.LogIngester;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.grpc.MetricCollectingServerInterceptor;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * OTLP/gRPC receiver. Export calls are handled on virtual threads and block until the
+ * ingest pipeline accepts the logs, so a slow store is pushed back to the exporters by
+ * HTTP/2 flow control: the window of a stream is only replenished when its message is
+ * consumed, and the number of concurrent calls per connection is capped. Per-RPC latency
+ * is recorded as {@code grpc.server.processing.duration}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lognroll.otlp.grpc", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class OtlpGrpcServer implements SmartLifecycle {
+
+	private final OtlpProps props;
+
+	private final LogsGrpcService service;
+
+	private final GrpcAuthInterceptor authInterceptor;
+
+	private final MetricCollectingServerInterceptor metricInterceptor;
+
+	private final Logger logger = LoggerFactory.getLogger(OtlpGrpcServer.class);
+
+	@Nullable
+	private Server server;
+
+	@Nullable
+	private ExecutorService executor;
+
+	public OtlpGrpcServer(LogIngester logIngester, MeterRegistry registry, OtlpProps props, AuthProps authProps) {
+		this.props = props;
+		this.service = new LogsGrpcService(logIngester, registry,
+				new OtlpLogsDecoder(props.maxRequestSize().toBytes(), props.decodeBatchSize()));
+		this.authInterceptor = new GrpcAuthInterceptor(authProps);
+		this.metricInterceptor = new MetricCollectingServerInterceptor(registry);
+	}
+
+	@Override
+	public void start() {
+		OtlpProps.Grpc grpc = this.props.grpc();
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		Server server = NettyServerBuilder.forPort(grpc.port())
+			.executor(executor)
+			.maxInboundMessageSize((int) Math.min(this.props.maxRequestSize().toBytes(), Integer.MAX_VALUE))
+			.maxConcurrentCallsPerConnection(grpc.maxConcurrentCallsPerConnection())
+			.flowControlWindow((int) grpc.flowControlWindow().toBytes())
+			.addService(ServerInterceptors.intercept(this.service.bindService(), this.authInterceptor,
+					this.metricInterceptor))
+			.build();
+		try {
+			server.start();
+		}
+		catch (IOException e) {
+			executor.shutdown();
+			throw new UncheckedIOException("Failed to start the OTLP/gRPC receiver", e);
+		}
+		logger.info("OTLP/gRPC receiver started on port {}", server.getPort());
+		this.server = server;
+		this.executor = executor;
+	}
+
+	@Override
+	public void stop() {
+		Server server = this.server;
+		if (server != null) {
+			server.shutdown();
+			try {
+				if (!server.awaitTermination(30, TimeUnit.SECONDS)) {
+					server.shutdownNow();
+				}
+			}
+			catch (InterruptedException e) {
+				server.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			this.server = null;
+		}
+		ExecutorService executor = this.executor;
+		if (executor != null) {
+			executor.shutdown();
+			this.executor = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.server != null;
+	}
+
+	@Override
+	public int getPhase() {
+		// same phase as the web server, that is after the ingest pipeline has started
+		return SmartLifecycle.DEFAULT_PHASE - 2048;
+	}
+
+	/**
+	 * Returns the port the receiver listens on, or {@code -1} if it is not running.
+	 */
+	public int getPort() {
+		Server server = this.server;
+		return server != null ? server.getPort() : -1;
+	}
+
+}
@@ -0,0 +1,239 @@
+package am.ik.lognroll.otlp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import am.ik.lognroll.logs.AttributesJsonWriter;
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.Logs;
+import am.ik.lognroll.logs.Logs.ResourceInfo;
+import am.ik.lognroll.logs.Logs.ScopeInfo;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import io.opentelemetry.proto.common.v1.InstrumentationScope;
+import io.opentelemetry.proto.logs.v1.LogRecord;
+import io.opentelemetry.proto.logs.v1.LogsData;
+import io.opentelemetry.proto.logs.v1.ResourceLogs;
+import io.opentelemetry.proto.logs.v1.ScopeLogs;
+import io.opentelemetry.proto.resource.v1.Resource;
+
+/**
+ * Decodes {@code LogsData} / {@code ExportLogsServiceRequest} (both share the same wire
+ * format) directly from an input stream. Only one {@link LogRecord} is materialized at a
+ * time and decoded logs are appended to compact {@link LogBatch}es. The batches are
+ * returned only once the whole stream has been decoded, so that a malformed or oversized
+ * request is rejected before any of its logs is stored. The memory used per request is
+ * therefore bounded by the max request size rather than by the size of a batch.
+ */
+public class OtlpLogsDecoder {
+
+	private static final int RESOURCE_LOGS_TAG = (LogsData.RESOURCE_LOGS_FIELD_NUMBER << 3)
+			| WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+	private static final int RESOURCE_TAG = (ResourceLogs.RESOURCE_FIELD_NUMBER << 3)
+			| WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+	private static final int SCOPE_LOGS_TAG = (ResourceLogs.SCOPE_LOGS_FIELD_NUMBER << 3)
+			| WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+	private static final int SCOPE_TAG = (ScopeLogs.SCOPE_FIELD_NUMBER << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+	private static final int LOG_RECORDS_TAG = (ScopeLogs.LOG_RECORDS_FIELD_NUMBER << 3)
+			| WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+	private static final ExtensionRegistryLite EMPTY_REGISTRY = ExtensionRegistryLite.getEmptyRegistry();
+
+	private final long maxRequestSize;
+
+	private final int batchSize;
+
+	public OtlpLogsDecoder(long maxRequestSize, int batchSize) {
+		this.maxRequestSize = maxRequestSize;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Decode the given stream completely.
+	 * @return the decoded logs in batches of at most the batch size
+	 * @throws RequestTooLargeException if the stream is larger than the max request size
+	 */
+	public List<LogBatch> decode(InputStream inputStream) throws IOException {
+		Emitter emitter = new Emitter(this.batchSize);
+		CodedInputStream input = CodedInputStream.newInstance(new LimitedInputStream(inputStream, this.maxRequestSize));
+		input.setSizeLimit(Integer.MAX_VALUE);
+		while (true) {
+			int tag = input.readTag();
+			if (tag == 0) {
+				break;
+			}
+			if (tag == RESOURCE_LOGS_TAG) {
+				int limit = input.pushLimit(input.readRawVarint32());
+				readResourceLogs(input, emitter);
+				input.popLimit(limit);
+			}
+			else if (!input.skipField(tag)) {
+				break;
+			}
+		}
+		return emitter.flush();
+	}
+
+	private void readResourceLogs(CodedInputStream input, Emitter emitter) throws IOException {
+		ResourceInfo resource = null;
+		// scope logs that precede the resource, which canonical encoders never produce
+		List<ByteString> pendingScopeLogs = null;
+		while (!input.isAtEnd()) {
+			int tag = input.readTag();
+			switch (tag) {
+				case RESOURCE_TAG -> resource = Logs.resource(input.readMessage(Resource.parser(), EMPTY_REGISTRY));
+				case SCOPE_LOGS_TAG -> {
+					if (resource != null) {
+						int limit = input.pushLimit(input.readRawVarint32());
+						readScopeLogs(input, resource, emitter);
+						input.popLimit(limit);
+					}
+					else {
+						if (pendingScopeLogs == null) {
+							pendingScopeLogs = new ArrayList<>();
+						}
+						pendingScopeLogs.add(input.readBytes());
+					}
+				}
+				default -> input.skipField(tag);
+			}
+		}
+		if (pendingScopeLogs != null) {
+			ResourceInfo r = resource != null ? resource : Logs.resource(Resource.getDefaultInstance());
+			for (ByteString scopeLogs : pendingScopeLogs) {
+				readScopeLogs(scopeLogs.newCodedInput(), r, emitter);
+			}
+		}
+	}
+
+	private void readScopeLogs(CodedInputStream input, ResourceInfo resource, Emitter emitter) throws IOException {
+		ScopeInfo scope = null;
+		// log records that precede the scope, which canonical encoders never produce
+		List<LogRecord> pendingLogRecords = null;
+		while (!input.isAtEnd()) {
+			int tag = input.readTag();
+			switch (tag) {
+				case SCOPE_TAG -> scope = Logs.scope(input.readMessage(InstrumentationScope.parser(), EMPTY_REGISTRY));
+				case LOG_RECORDS_TAG -> {
+					LogRecord logRecord = input.readMessage(LogRecord.parser(), EMPTY_REGISTRY);
+					if (scope != null) {
+						emitter.emit(logRecord, scope, resource);
+					}
+					else {
+						if (pendingLogRecords == null) {
+							pendingLogRecords = new ArrayList<>();
+						}
+						pendingLogRecords.add(logRecord);
+					}
+				}
+				default -> input.skipField(tag);
+			}
+		}
+		if (pendingLogRecords != null) {
+			ScopeInfo s = scope != null ? scope : Logs.scope(InstrumentationScope.getDefaultInstance());
+			for (LogRecord logRecord : pendingLogRecords) {
+				emitter.emit(logRecord, s, resource);
+			}
+		}
+	}
+
+	private static class Emitter {
+
+		private final List<LogBatch> batches = new ArrayList<>();
+
+		private final int batchSize;
+
+		private final AttributesJsonWriter writer = new AttributesJsonWriter();
+
+		private LogBatch batch;
+
+		Emitter(int batchSize) {
+			this.batchSize = batchSize;
+			this.batch = new LogBatch(batchSize);
+		}
+
+		void emit(LogRecord logRecord, ScopeInfo scope, ResourceInfo resource) {
+			Logs.append(this.batch, logRecord, scope, resource, this.writer);
+			if (this.batch.size() >= this.batchSize) {
+				this.batches.add(this.batch);
+				this.batch = new LogBatch(this.batchSize);
+			}
+		}
+
+		List<LogBatch> flush() {
+			if (!this.batch.isEmpty()) {
+				this.batches.add(this.batch);
+				this.batch = new LogBatch(this.batchSize);
+			}
+			return this.batches;
+		}
+
+	}
+
+	static class LimitedInputStream extends FilterInputStream {
+
+		private final long limit;
+
+		private long count = 0;
+
+		LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+
+		private void count(long n) {
+			this.count += n;
+			if (this.count > this.limit) {
+				throw new RequestTooLargeException(
+						"The request body exceeds the limit of %d bytes".formatted(this.limit));
+			}
+		}
+
+	}
+
+	/**
+	 * Unchecked so that it is not wrapped by the generated message parsers.
+	 */
+	public static class RequestTooLargeException extends RuntimeException {
+
+		public RequestTooLargeException(String message) {
+			super(message);
+		}
+
+	}
+
+}
@@ -0,0 +1,32 @@
+package am.ik.lognroll.otlp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the OTLP receivers.
+ *
+ * @param maxRequestSize the maximum size of a (decompressed) OTLP request body
+ * @param decodeBatchSize the number of decoded log records handed over to the ingest
+ * pipeline at a time
+ * @param grpc OTLP/gRPC receiver settings
+ */
+@ConfigurationProperties(prefix = "lognroll.otlp")
+public record OtlpProps(@DefaultValue("16MB") DataSize maxRequestSize, @DefaultValue("1000") int decodeBatchSize,
+		@DefaultValue Grpc grpc) {
+
+	/**
+	 * Settings of the OTLP/gRPC receiver.
+	 *
+	 * @param enabled whether to start the OTLP/gRPC receiver
+	 * @param port the port of the OTLP/gRPC receiver ({@code 0} for a random port)
+	 * @param maxConcurrentCallsPerConnection the maximum number of concurrent export
+	 * calls per connection, advertised as HTTP/2 {@code SETTINGS_MAX_CONCURRENT_STREAMS}
+	 * @param flowControlWindow the initial HTTP/2 flow control window per stream
+	 */
+	public record Grpc(@DefaultValue("true") boolean enabled, @DefaultValue("4317") int port,
+			@DefaultValue("16") int maxConcurrentCallsPerConnection, @DefaultValue("1MB") DataSize flowControlWindow) {
+	}
+
+}
@@ -0,0 +1,248 @@
+package am.ik.lognroll.otlp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipException;
+
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdInputStream;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Decompresses OTLP request bodies sent with {@code Content-Encoding: gzip} or
+ * {@code zstd}. The body is decoded as a stream while it is read by the controller. Gzip
+ * uses pooled inflaters and buffers (see {@link GzipDecodingInputStream}) and zstd is
+ * decoded by the pure Java implementation of aircompressor. Other encodings are rejected
+ * with {@code 415 Unsupported Media Type}. Malformed compressed data surfaces as a
+ * {@link ZipException} from the request input stream.
+ */
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+		if (contentEncoding == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+		if (encoding.isEmpty() || encoding.equals("identity")) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		Decoder decoder = switch (encoding) {
+			case "gzip", "x-gzip" -> GzipDecodingInputStream::new;
+			case "zstd" -> ZstdInputStream::new;
+			default -> null;
+		};
+		if (decoder == null) {
+			response.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd");
+			response.sendError(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value(),
+					"Unsupported Content-Encoding: " + contentEncoding);
+			return;
+		}
+		DecompressedRequest decompressed = new DecompressedRequest(request, decoder);
+		try {
+			filterChain.doFilter(decompressed, response);
+		}
+		finally {
+			decompressed.release();
+		}
+	}
+
+	@FunctionalInterface
+	interface Decoder {
+
+		InputStream decode(InputStream in) throws IOException;
+
+	}
+
+	static class DecompressedRequest extends HttpServletRequestWrapper {
+
+		private final Decoder decoder;
+
+		@Nullable
+		private DecompressingServletInputStream inputStream;
+
+		DecompressedRequest(HttpServletRequest request, Decoder decoder) {
+			super(request);
+			this.decoder = decoder;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			DecompressingServletInputStream inputStream = this.inputStream;
+			if (inputStream == null) {
+				inputStream = new DecompressingServletInputStream(super.getInputStream(), this.decoder);
+				this.inputStream = inputStream;
+			}
+			return inputStream;
+		}
+
+		@Override
+		public int getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public long getContentLengthLong() {
+			return -1;
+		}
+
+		@Override
+		@Nullable
+		public String getHeader(String name) {
+			return isHidden(name) ? null : super.getHeader(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaders(String name) {
+			return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaderNames() {
+			List<String> names = Collections.list(super.getHeaderNames());
+			names.removeIf(DecompressedRequest::isHidden);
+			return Collections.enumeration(names);
+		}
+
+		@Override
+		public int getIntHeader(String name) {
+			return isHidden(name) ? -1 : super.getIntHeader(name);
+		}
+
+		void release() throws IOException {
+			DecompressingServletInputStream inputStream = this.inputStream;
+			if (inputStream != null) {
+				inputStream.close();
+			}
+		}
+
+		private static boolean isHidden(String name) {
+			return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+					|| HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+		}
+
+	}
+
+	static class DecompressingServletInputStream extends ServletInputStream {
+
+		private final ServletInputStream source;
+
+		private final Decoder decoder;
+
+		private final byte[] single = new byte[1];
+
+		/**
+		 * created on the first read so that requests rejected before their body is read
+		 * (e.g. unauthorized) do not borrow any decoder resources
+		 */
+		@Nullable
+		private InputStream decoded;
+
+		private boolean finished = false;
+
+		DecompressingServletInputStream(ServletInputStream source, Decoder decoder) {
+			this.source = source;
+			this.decoder = decoder;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(this.single, 0, 1) == -1 ? -1 : this.single[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.finished) {
+				return -1;
+			}
+			try {
+				InputStream decoded = this.decoded;
+				if (decoded == null) {
+					decoded = this.decoder.decode(this.source);
+					this.decoded = decoded;
+				}
+				int n = decoded.read(b, off, len);
+				if (n == -1) {
+					this.finished = true;
+				}
+				return n;
+			}
+			catch (MalformedInputException e) {
+				ZipException exception = new ZipException("Malformed zstd data: " + e.getMessage());
+				exception.initCause(e);
+				throw exception;
+			}
+		}
+
+		@Override
+		public boolean isFinished() {
+			return this.finished;
+		}
+
+		@Override
+		public boolean isReady() {
+			return this.finished || this.source.isReady();
+		}
+
+		/**
+		 * Non-blocking reads are driven by the compressed source. Once the source has
+		 * been read completely, the listener is notified once more so that it drains what
+		 * the decoder still buffers before it is told that all data has been read.
+		 */
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			this.source.setReadListener(new ReadListener() {
+
+				@Override
+				public void onDataAvailable() throws IOException {
+					readListener.onDataAvailable();
+				}
+
+				@Override
+				public void onAllDataRead() throws IOException {
+					if (!DecompressingServletInputStream.this.finished) {
+						readListener.onDataAvailable();
+					}
+					readListener.onAllDataRead();
+				}
+
+				@Override
+				public void onError(Throwable t) {
+					readListener.onError(t);
+				}
+
+			});
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.finished = true;
+			InputStream decoded = this.decoded;
+			if (decoded != null) {
+				this.decoded = null;
+				decoded.close();
+			}
+		}
+
+	}
+
+}
@@ -1,11 +1,14 @@
 package am.ik.lognroll.problem;
 
+import am.ik.lognroll.logs.ingest.IngestRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -25,6 +28,14 @@ public class ProblemControllerAdvice {
 		return problemDetail;
 	}
 
+	@ExceptionHandler(IngestRejectedException.class)
+	public ResponseEntity<ProblemDetail> handleIngestRejectedException(IngestRejectedException e) {
+		ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+			.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(e.getRetryAfter().toSeconds(), 1)))
+			.body(problemDetail);
+	}
+
 	@ExceptionHandler(NoResourceFoundException.class)
 	@ResponseStatus(HttpStatus.NOT_FOUND)
 	public ProblemDetail handleNoResourceFoundException(NoResourceFoundException e) {
@@ -0,0 +1,98 @@
+package am.ik.lognroll.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Calculates a 64-bit digest of a map. The entries are encoded in a canonical form (keys
+ * sorted, values prefixed with their type and length) and hashed with SHA-256, so the
+ * digest does not depend on the iteration order of the map and different maps are
+ * practically never mapped to the same value.
+ */
+public final class MapDigest {
+
+	private MapDigest() {
+	}
+
+	public static long digest(Map<String, ?> map) {
+		MessageDigest messageDigest = sha256();
+		update(messageDigest, map);
+		return ByteBuffer.wrap(messageDigest.digest()).getLong();
+	}
+
+	private static void update(MessageDigest digest, @Nullable Object value) {
+		if (value == null) {
+			digest.update((byte) 'N');
+			return;
+		}
+		switch (value) {
+			case String s -> {
+				digest.update((byte) 'S');
+				updateBytes(digest, s.getBytes(StandardCharsets.UTF_8));
+			}
+			case Boolean b -> {
+				digest.update((byte) 'B');
+				digest.update((byte) (b ? 1 : 0));
+			}
+			case Long l -> updateLong(digest, 'I', l);
+			case Integer i -> updateLong(digest, 'I', i);
+			case Short s -> updateLong(digest, 'I', s);
+			case Byte b -> updateLong(digest, 'I', b);
+			case Number n -> updateLong(digest, 'D', Double.doubleToLongBits(n.doubleValue()));
+			case byte[] bytes -> {
+				digest.update((byte) 'X');
+				updateBytes(digest, bytes);
+			}
+			case Map<?, ?> map -> {
+				digest.update((byte) 'M');
+				updateInt(digest, map.size());
+				Map<String, Object> sorted = new TreeMap<>();
+				map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+				sorted.forEach((k, v) -> {
+					updateBytes(digest, k.getBytes(StandardCharsets.UTF_8));
+					update(digest, v);
+				});
+			}
+			case Collection<?> collection -> {
+				digest.update((byte) 'L');
+				updateInt(digest, collection.size());
+				collection.forEach(v -> update(digest, v));
+			}
+			default -> {
+				digest.update((byte) 'S');
+				updateBytes(digest, value.toString().getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private static void updateBytes(MessageDigest digest, byte[] bytes) {
+		updateInt(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateInt(MessageDigest digest, int value) {
+		digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value).array());
+	}
+
+	private static void updateLong(MessageDigest digest, char type, long value) {
+		digest.update((byte) type);
+		digest.update(ByteBuffer.allocate(Long.BYTES).putLong(value).array());
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
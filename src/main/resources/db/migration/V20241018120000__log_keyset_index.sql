@@ -0,0 +1,4 @@
+-- matches ORDER BY observed_timestamp DESC, timestamp DESC, log_id DESC and the keyset cursor
+CREATE INDEX log_observed_timestamp_timestamp_log_id ON log (observed_timestamp DESC, timestamp DESC, log_id DESC);
+-- covered by the index above
+DROP INDEX log_observed_timestamp;
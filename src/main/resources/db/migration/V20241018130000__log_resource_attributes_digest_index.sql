@@ -0,0 +1,2 @@
+-- drives the log scan from the digests of the resources that match a filter
+CREATE INDEX log_resource_attributes_digest ON log (resource_attributes_digest);
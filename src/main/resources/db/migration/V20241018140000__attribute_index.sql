@@ -0,0 +1,8 @@
+-- attributes of log that are indexed by log_attr_* expression indexes
+CREATE TABLE IF NOT EXISTS attribute_index
+(
+    name       TEXT PRIMARY KEY NOT NULL,
+    index_name TEXT             NOT NULL,
+    automatic  INTEGER          NOT NULL,
+    created_at DATETIME         NOT NULL
+);
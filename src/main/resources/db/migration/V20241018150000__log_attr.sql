@@ -0,0 +1,18 @@
+-- inverted index of the scalar top-level attributes of log. It is filled by the log_attr_ai trigger
+-- that is created when lognroll.attribute-index.inverted.enabled is set.
+-- value has no type, so that texts and numbers are compared like json_extract does.
+CREATE TABLE IF NOT EXISTS log_attr
+(
+    key    TEXT    NOT NULL,
+    value          NOT NULL,
+    log_id INTEGER NOT NULL,
+    PRIMARY KEY (key, value, log_id)
+) WITHOUT ROWID;
+
+CREATE INDEX log_attr_log_id ON log_attr (log_id);
+
+-- keys with too many distinct values to be worth indexing
+CREATE TABLE IF NOT EXISTS log_attr_excluded_key
+(
+    key TEXT PRIMARY KEY NOT NULL
+);
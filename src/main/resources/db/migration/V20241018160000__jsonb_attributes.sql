@@ -0,0 +1,20 @@
+-- the body is the only column in log_fts, so other updates need not reindex it
+DROP TRIGGER log_au;
+CREATE TRIGGER log_au
+    AFTER UPDATE OF body
+    ON log
+BEGIN
+    INSERT INTO log_fts (log_fts, rowid, body) VALUES ('delete', old.log_id, old.body);
+    INSERT INTO log_fts (rowid, body) VALUES (new.log_id, new.body);
+END;
+
+-- JSONB is read by json_extract without parsing. Rows that are not valid JSON text are kept as they are,
+-- json() returns both formats as text.
+UPDATE log
+SET attributes = jsonb(attributes)
+WHERE typeof(attributes) = 'text'
+  AND json_valid(attributes);
+UPDATE resource_attributes
+SET resource_attributes = jsonb(resource_attributes)
+WHERE typeof(resource_attributes) = 'text'
+  AND json_valid(resource_attributes);
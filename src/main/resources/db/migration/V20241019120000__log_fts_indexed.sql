@@ -0,0 +1,30 @@
+-- logs with a larger log_id are not in log_fts yet. They are indexed in batches in the background when
+-- lognroll.full-text-index.deferred.enabled is set, otherwise the log_ai trigger indexes every log
+-- and log_id is the maximum integer.
+CREATE TABLE IF NOT EXISTS log_fts_indexed
+(
+    id     INTEGER PRIMARY KEY CHECK (id = 0),
+    log_id INTEGER NOT NULL
+);
+INSERT INTO log_fts_indexed (id, log_id)
+VALUES (0, 9223372036854775807);
+
+-- deleting a log that is not in log_fts would corrupt it
+DROP TRIGGER log_au;
+CREATE TRIGGER log_au
+    AFTER UPDATE OF body
+    ON log
+    WHEN old.log_id <= (SELECT log_id FROM log_fts_indexed)
+BEGIN
+    INSERT INTO log_fts (log_fts, rowid, body) VALUES ('delete', old.log_id, old.body);
+    INSERT INTO log_fts (rowid, body) VALUES (new.log_id, new.body);
+END;
+
+DROP TRIGGER log_ad;
+CREATE TRIGGER log_ad
+    AFTER DELETE
+    ON log
+    WHEN old.log_id <= (SELECT log_id FROM log_fts_indexed)
+BEGIN
+    INSERT INTO log_fts (log_fts, rowid, body) VALUES ('delete', old.log_id, old.body);
+END;
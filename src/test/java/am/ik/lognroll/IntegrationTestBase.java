@@ -13,7 +13,8 @@ import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestClient;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
-		properties = { "lognroll.db.path=/tmp/lognroll-test.db", "logging.logback.ecs-encoder.enabled=false" })
+		properties = { "lognroll.db.path=/tmp/lognroll-test.db", "logging.logback.ecs-encoder.enabled=false",
+				"lognroll.otlp.grpc.port=0" })
 public abstract class IntegrationTestBase {
 
 	@Autowired
@@ -0,0 +1,58 @@
+package am.ik.lognroll.config;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteConfig;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DataSourceConfigTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readWhileWriting() throws Exception {
+		DbProps props = new DbProps(this.directory.resolve("lognroll.db").toString(), SQLiteConfig.JournalMode.WAL,
+				SQLiteConfig.SynchronousMode.NORMAL, Duration.ofSeconds(1), DataSize.ofMegabytes(1),
+				DataSize.ofMegabytes(2), SQLiteConfig.TempStore.MEMORY, 2);
+		DataSourceConfig config = new DataSourceConfig();
+		Flyway.configure().dataSource(config.flywayDataSource(props)).load().migrate();
+		try (HikariDataSource writeDataSource = config.dataSource(props);
+				HikariDataSource readDataSource = config.readDataSource(props)) {
+			JdbcTemplate write = new JdbcTemplate(writeDataSource);
+			JdbcTemplate read = new JdbcTemplate(readDataSource);
+			assertThat(write.queryForObject("PRAGMA journal_mode", String.class)).isEqualTo("wal");
+			assertThat(read.queryForObject("PRAGMA synchronous", Integer.class)).isEqualTo(1);
+			assertThat(read.queryForObject("PRAGMA busy_timeout", Integer.class)).isEqualTo(1000);
+			assertThat(read.queryForObject("PRAGMA mmap_size", Long.class)).isEqualTo(1024 * 1024);
+			assertThat(read.queryForObject("PRAGMA cache_size", Integer.class)).isEqualTo(-2048);
+			assertThat(read.queryForObject("PRAGMA temp_store", Integer.class)).isEqualTo(2);
+			assertThatThrownBy(() -> read.update("DELETE FROM log")).hasMessageContaining("readonly");
+
+			try (Connection connection = writeDataSource.getConnection();
+					Statement statement = connection.createStatement()) {
+				connection.setAutoCommit(false);
+				statement.executeUpdate("""
+						INSERT INTO log (timestamp, observed_timestamp, body) VALUES (0, 0, 'uncommitted')
+						""");
+				// readers see the last commit instead of waiting for the writer
+				assertThat(read.queryForObject("SELECT COUNT(*) FROM log", Integer.class)).isZero();
+				connection.commit();
+			}
+			assertThat(read.queryForObject("SELECT COUNT(*) FROM log", Integer.class)).isEqualTo(1);
+		}
+	}
+
+}
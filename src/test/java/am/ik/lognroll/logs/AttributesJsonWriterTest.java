@@ -0,0 +1,68 @@
+package am.ik.lognroll.logs;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.ArrayValue;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.common.v1.KeyValueList;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttributesJsonWriterTest {
+
+	final ObjectMapper objectMapper = new ObjectMapper();
+
+	final AttributesJsonWriter writer = new AttributesJsonWriter();
+
+	@Test
+	void writeKeyValuesSameAsObjectMapper() throws Exception {
+		List<KeyValue> attributes = List.of(keyValue("string", AnyValue.newBuilder().setStringValue("a\"b\n")),
+				keyValue("bool", AnyValue.newBuilder().setBoolValue(true)),
+				keyValue("int", AnyValue.newBuilder().setIntValue(Long.MAX_VALUE)),
+				keyValue("double", AnyValue.newBuilder().setDoubleValue(637.704)),
+				keyValue("bytes", AnyValue.newBuilder().setBytesValue(ByteString.copyFromUtf8("hello"))),
+				keyValue("array",
+						AnyValue.newBuilder()
+							.setArrayValue(ArrayValue.newBuilder()
+								.addValues(AnyValue.newBuilder().setIntValue(1))
+								.addValues(AnyValue.newBuilder().setStringValue("x")))),
+				keyValue("kvlist",
+						AnyValue.newBuilder()
+							.setKvlistValue(KeyValueList.newBuilder()
+								.addValues(keyValue("nested", AnyValue.newBuilder().setStringValue("y"))))),
+				keyValue("empty", AnyValue.newBuilder()));
+		String json = this.writer.write(List.of(), attributes);
+		Map<String, Object> expected = Map.ofEntries(attributes.stream()
+			.map(kv -> Map.entry(kv.getKey(), Logs.anyToObject(kv.getValue())))
+			.toArray(Map.Entry[]::new));
+		assertThat(this.objectMapper.readTree(json))
+			.isEqualTo(this.objectMapper.readTree(this.objectMapper.writeValueAsString(expected)));
+		assertThat(this.writer.write(expected)).isEqualTo(this.objectMapper.writeValueAsString(expected));
+	}
+
+	@Test
+	void recordAttributesTakePrecedence() throws Exception {
+		List<KeyValue> scopeAttributes = List.of(keyValue("a", AnyValue.newBuilder().setStringValue("scope")),
+				keyValue("b", AnyValue.newBuilder().setStringValue("scope")));
+		List<KeyValue> attributes = List.of(keyValue("a", AnyValue.newBuilder().setStringValue("first")),
+				keyValue("a", AnyValue.newBuilder().setStringValue("record")));
+		assertThat(this.objectMapper.readTree(this.writer.write(scopeAttributes, attributes)))
+			.isEqualTo(this.objectMapper.readTree("{\"a\":\"record\",\"b\":\"scope\"}"));
+	}
+
+	@Test
+	void scopeAttributesOnlyWithRecordAttributes() {
+		List<KeyValue> scopeAttributes = List.of(keyValue("a", AnyValue.newBuilder().setStringValue("scope")));
+		assertThat(this.writer.write(scopeAttributes, List.of())).isEqualTo("{}");
+	}
+
+	static KeyValue keyValue(String key, AnyValue.Builder value) {
+		return KeyValue.newBuilder().setKey(key).setValue(value).build();
+	}
+
+}
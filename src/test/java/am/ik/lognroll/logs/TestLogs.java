@@ -0,0 +1,59 @@
+package am.ik.lognroll.logs;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Logs for tests, with the fields that a test does not care about filled in.
+ */
+public final class TestLogs {
+
+	private TestLogs() {
+	}
+
+	/**
+	 * Returns a builder of an {@code INFO} log of the {@code demo} service without
+	 * attributes, observed at its timestamp.
+	 */
+	public static LogBuilder log(String body, Instant timestamp) {
+		return LogBuilder.log()
+			.timestamp(timestamp)
+			.observedTimestamp(timestamp)
+			.severityText("INFO")
+			.severityNumber(9)
+			.serviceName("demo")
+			.scope("test")
+			.body(body)
+			.traceId("")
+			.spanId("")
+			.traceFlags(0)
+			.attributes(Map.of())
+			.resourceAttributes(Map.of());
+	}
+
+	/**
+	 * Convert logs to a batch the way the decoders would have built it.
+	 */
+	public static LogBatch batch(List<Log> logs) {
+		LogBatch batch = new LogBatch(logs.size());
+		AttributesJsonWriter writer = new AttributesJsonWriter();
+		for (Log log : logs) {
+			long digest = Objects.requireNonNull(log.resourceAttributesDigest());
+			if (!batch.hasResource(digest)) {
+				batch.addResource(digest, writer.write(log.resourceAttributes()));
+			}
+			batch.add(toEpochNanos(log.timestamp()), toEpochNanos(log.observedTimestamp()), log.severityText(),
+					Objects.requireNonNullElse(log.severityNumber(), 0), log.serviceName(), log.scope(), log.body(),
+					log.traceId(), log.spanId(), Objects.requireNonNullElse(log.traceFlags(), 0),
+					writer.write(log.attributes()), digest);
+		}
+		return batch;
+	}
+
+	private static long toEpochNanos(Instant instant) {
+		return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+	}
+
+}
@@ -0,0 +1,143 @@
+package am.ik.lognroll.logs.delete;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.jdbc.JdbcLogQuery;
+import am.ik.lognroll.logs.jdbc.JdbcLogStore;
+import am.ik.lognroll.logs.jdbc.TestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class DeleteJobsTest {
+
+	static final Instant now = Instant.parse("2024-06-01T00:00:00Z");
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcTemplate jdbcTemplate = this.database.jdbcTemplate();
+
+	JdbcLogStore logStore = this.database.logStore();
+
+	JdbcLogQuery logQuery = this.database.logQuery();
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	DeleteJobs deleteJobs;
+
+	@BeforeEach
+	void setUp() {
+		this.deleteJobs = new DeleteJobs(this.logQuery, this.logStore, new DeleteProps(3, 2, Duration.ofSeconds(1)),
+				this.registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.deleteJobs.stop();
+		this.database.close();
+	}
+
+	@Test
+	void deleteInRanges() {
+		List<Log> logs = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			logs.add(log("hello " + i, i % 2 == 0 ? "ERROR" : "INFO"));
+		}
+		this.logStore.addAll(TestLogs.batch(logs));
+		this.deleteJobs.start();
+		DeleteJob job = this.deleteJobs.submit(request("hello", "severityText == 'ERROR'"));
+		await().until(job::isFinished);
+		DeleteJob.Progress progress = job.progress();
+		assertThat(progress.state()).isEqualTo(DeleteJob.State.COMPLETED);
+		assertThat(progress.deleted()).isEqualTo(5);
+		assertThat(progress.total()).isEqualTo(5);
+		assertThat(progress.ratio()).isEqualTo(1);
+		assertThat(progress.finishedAt()).isNotNull();
+		assertThat(this.jdbcTemplate.queryForList("SELECT body FROM log", String.class))
+			.containsExactlyInAnyOrder("hello 1", "hello 3", "hello 5", "hello 7", "hello 9");
+		assertThat(this.registry.get("logs.delete.deleted").counter().count()).isEqualTo(5);
+		assertThat(this.deleteJobs.find(job.id())).isSameAs(job);
+	}
+
+	@Test
+	void keepLogsStoredAfterSubmission() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", "INFO"), log("b", "INFO"))));
+		long lastLogId = this.logQuery.latestLogId();
+		this.logStore.addAll(TestLogs.batch(List.of(log("c", "INFO"))));
+		DeleteJob job = new DeleteJob("test", request("", null), 1, lastLogId, now);
+		this.deleteJobs.run(job);
+		assertThat(job.state()).isEqualTo(DeleteJob.State.COMPLETED);
+		assertThat(this.jdbcTemplate.queryForList("SELECT body FROM log", String.class)).containsExactly("c");
+	}
+
+	@Test
+	void cancel() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", "INFO"), log("b", "INFO"))));
+		DeleteJob job = new DeleteJob("test", request("", null), 1, this.logQuery.latestLogId(), now);
+		job.cancel();
+		this.deleteJobs.run(job);
+		assertThat(job.state()).isEqualTo(DeleteJob.State.CANCELLED);
+		assertThat(job.progress().deleted()).isZero();
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log", Integer.class)).isEqualTo(2);
+	}
+
+	@Test
+	void totalIsUnknownUntilCounted() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", "INFO"), log("b", "INFO"))));
+		DeleteJob job = new DeleteJob("test", request("", null), 1, this.logQuery.latestLogId(), now);
+		assertThat(job.progress().total()).isEqualTo(-1);
+		assertThat(job.progress().ratio()).isZero();
+		this.deleteJobs.run(job);
+		assertThat(job.progress().total()).isEqualTo(2);
+		assertThat(job.progress().deleted()).isEqualTo(2);
+	}
+
+	@Test
+	void rejectUnparsableQuery() {
+		this.deleteJobs.start();
+		assertThatThrownBy(() -> this.deleteJobs.submit(request("\"", null)))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThat(this.deleteJobs.list()).isEmpty();
+	}
+
+	@Test
+	void evictFinishedJobs() {
+		this.deleteJobs.start();
+		List<DeleteJob> jobs = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			DeleteJob job = this.deleteJobs.submit(request("", null));
+			await().until(job::isFinished);
+			jobs.add(job);
+		}
+		// the oldest finished jobs are evicted when a job is submitted
+		assertThat(this.deleteJobs.list()).containsExactly(jobs.get(1), jobs.get(2), jobs.get(3));
+	}
+
+	static LogQuery.SearchRequest request(String query, String filter) {
+		SearchRequestBuilder builder = SearchRequestBuilder.searchRequest().query(query);
+		if (filter != null) {
+			builder.filterExpression(new FilterExpressionTextParser().parse(filter));
+		}
+		return builder.build();
+	}
+
+	static Log log(String body, String severityText) {
+		return TestLogs.log(body, now).severityText(severityText).build();
+	}
+
+}
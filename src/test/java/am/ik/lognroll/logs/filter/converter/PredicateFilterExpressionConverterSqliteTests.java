@@ -0,0 +1,120 @@
+package am.ik.lognroll.logs.filter.converter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogBatchFieldAccessor;
+import am.ik.lognroll.logs.LogFieldAccessor;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.Filter;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.jdbc.JdbcLogQuery;
+import am.ik.lognroll.logs.jdbc.TestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Differential tests that check that the predicates match the same logs as the SQL
+ * produced by {@link Sqlite3FilterExpressionConverter}.
+ */
+class PredicateFilterExpressionConverterSqliteTests {
+
+	static final Instant now = Instant.parse("2024-06-01T00:00:00Z");
+
+	static final LogBatch batch = TestLogs.batch(List.of(
+			log("foo", "DEBUG", 5, "debug", 0, Map.of("http.status", 404, "retry", true, "user", "alice", "ratio", 0.5),
+					Map.of("service.namespace", "demo")),
+			log("foo", "INFO", 9, "info", 1, Map.of("http.status", "404", "user", "bob"),
+					Map.of("service.namespace", "prod")),
+			log("bar", "ERROR", 17, "error", 2, Map.of("http.status", 500, "retry", false, "ratio", 1), Map.of()),
+			log("bar", "warn", 13, "warn", 3, Map.of("user", "Ärger"), Map.of("service.namespace", "demo")),
+			log("baz", "10", 10, "numeric", 4, Map.of("user", "😀"), Map.of()),
+			log("", "DEBUG", 5, "empty", 5, Map.of("ratio", -2.5), Map.of("service.namespace", 1))));
+
+	static TestDatabase database;
+
+	static List<Log> logs;
+
+	static JdbcLogQuery logQuery;
+
+	final FilterExpressionTextParser parser = new FilterExpressionTextParser();
+
+	final PredicateFilterExpressionConverter converter = new PredicateFilterExpressionConverter();
+
+	@BeforeAll
+	static void setUp() {
+		database = new TestDatabase();
+		database.logStore().addAll(batch);
+		logQuery = database.logQuery();
+		logs = logQuery.findLatestLogs(SearchRequestBuilder.searchRequest().query("").build());
+		assertThat(logs).hasSize(batch.size());
+	}
+
+	@AfterAll
+	static void tearDown() {
+		database.close();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "severityText == 'DEBUG'", "severityText != 'DEBUG'", "severityText > 'E'",
+			"severityText < 'a'", "severityText == 10", "severityText > 9", "severityNumber == '9'",
+			"severityNumber > 9", "severityNumber <= 9", "severityNumber >= 9.5", "severityNumber < 'a'",
+			"serviceName == ''", "serviceName IN ['foo', 'baz']", "severityNumber IN [5, '17']",
+			"severityText IN ['DEBUG', 'INFO', 10]", "traceFlags == 1", "body >= 'e'",
+			"attributes[\"http.status\"] == 404", "attributes['http.status'] == '404'",
+			"attributes[\"http.status\"] >= 500", "attributes[\"http.status\"] < 'a'",
+			"attributes[\"http.status\"] > 400", "attributes[\"http.status\"] IN [404, 500]",
+			"attributes.user == 'alice'", "attributes.user != 'alice'", "attributes.user > 'b'",
+			"attributes.user > 'Z'", "attributes.user > 'Ö'", "attributes.retry == true", "attributes.retry == false",
+			"attributes.retry == 1", "attributes.ratio < 1", "attributes.ratio == 1", "attributes.ratio IN [0.5, 2]",
+			"attributes.ratio > -3", "attributes.missing == 'x'", "attributes.missing != 'x'",
+			"resource.attributes['service.namespace'] == 'demo'", "resourceAttributes.service.namespace == 'prod'",
+			"resourceAttributes[\"service.namespace\"] != 'demo'", "resourceAttributes[\"service.namespace\"] == 1",
+			"timestamp > 1717200002000", "observedTimestamp <= 1717200002000", "timestamp > '2024'",
+			"NOT severityText == 'DEBUG'", "NOT (serviceName == 'foo' && severityNumber > 5)",
+			"NOT (serviceName == 'foo' || attributes.user == 'alice')", "NOT attributes.user == 'alice'",
+			"(serviceName == 'foo' || serviceName == 'bar') && severityNumber >= 9",
+			"serviceName == 'foo' && (attributes.user == 'bob' || attributes.retry == true)" })
+	void sameAsSqlite(String filter) {
+		Filter.Expression expression = this.parser.parse(filter);
+		List<String> expected = logQuery
+			.findLatestLogs(SearchRequestBuilder.searchRequest().query("").filterExpression(expression).build())
+			.stream()
+			.map(Log::body)
+			.sorted()
+			.toList();
+		Predicate<FieldAccessor> predicate = this.converter.convertExpression(expression);
+		assertThat(logs.stream().filter(log -> predicate.test(new LogFieldAccessor(log))).map(Log::body).sorted())
+			.as("Log")
+			.containsExactlyElementsOf(expected);
+		LogBatchFieldAccessor accessor = new LogBatchFieldAccessor(batch);
+		assertThat(IntStream.range(0, batch.size())
+			.filter(i -> predicate.test(accessor.at(i)))
+			.mapToObj(batch::body)
+			.sorted()).as("LogBatch").containsExactlyElementsOf(expected);
+	}
+
+	static Log log(String serviceName, String severityText, int severityNumber, String body, int seconds,
+			Map<String, Object> attributes, Map<String, Object> resourceAttributes) {
+		return TestLogs.log(body, now.plusSeconds(seconds))
+			.serviceName(serviceName)
+			.severityText(severityText)
+			.severityNumber(severityNumber)
+			.traceFlags(seconds % 2)
+			.attributes(attributes)
+			.resourceAttributes(resourceAttributes)
+			.build();
+	}
+
+}
@@ -0,0 +1,107 @@
+package am.ik.lognroll.logs.filter.converter;
+
+import java.util.Map;
+
+import am.ik.lognroll.logs.filter.FieldAccessor;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.filter.LogField;
+import jakarta.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PredicateFilterExpressionConverterTests {
+
+	final FilterExpressionTextParser parser = new FilterExpressionTextParser();
+
+	final PredicateFilterExpressionConverter converter = new PredicateFilterExpressionConverter();
+
+	final FieldAccessor log = new MapFieldAccessor(
+			Map.of(LogField.SEVERITY_TEXT, "DEBUG", LogField.SEVERITY_NUMBER, 5, LogField.SERVICE_NAME, "foo",
+					LogField.TIMESTAMP, 1717200000000L),
+			Map.of("http.status", 404L, "retry", true, "user", "alice", "ratio", 0.5),
+			Map.of("service.namespace", "demo"));
+
+	boolean test(String filter) {
+		return this.converter.convertExpression(this.parser.parse(filter)).test(this.log);
+	}
+
+	@Test
+	void columns() {
+		assertThat(test("severityText == 'DEBUG' && serviceName == 'foo'")).isTrue();
+		assertThat(test("severityText == 'DEBUG' && serviceName == 'bar'")).isFalse();
+		assertThat(test("severityText == 'INFO' || serviceName == 'foo'")).isTrue();
+		assertThat(test("severityNumber < 9")).isTrue();
+		assertThat(test("severityNumber >= 9")).isFalse();
+		assertThat(test("severityText IN ['TRACE', 'DEBUG']")).isTrue();
+		assertThat(test("severityText NOT IN ['TRACE', 'DEBUG']")).isFalse();
+		assertThat(test("severityNumber IN [1, 5.0]")).isTrue();
+		assertThat(test("severityNumber IN ['5']")).isTrue();
+		assertThat(test("timestamp > 1717199999999")).isTrue();
+	}
+
+	@Test
+	void attributes() {
+		assertThat(test("attributes[\"http.status\"] == 404")).isTrue();
+		assertThat(test("attributes['http.status'] >= 500")).isFalse();
+		assertThat(test("attributes.user == 'alice'")).isTrue();
+		assertThat(test("attributes.retry == true")).isTrue();
+		assertThat(test("attributes.ratio < 1")).isTrue();
+		assertThat(test("resource.attributes['service.namespace'] == 'demo'")).isTrue();
+		assertThat(test("resourceAttributes[\"service.namespace\"] != 'demo'")).isFalse();
+	}
+
+	@Test
+	void affinity() {
+		// the literal is converted to the affinity of the column
+		assertThat(test("severityNumber == '5'")).isTrue();
+		assertThat(test("serviceName == 5")).isFalse();
+		// but not for json_extract(...), and numbers are less than texts
+		assertThat(test("attributes[\"http.status\"] == '404'")).isFalse();
+		assertThat(test("attributes[\"http.status\"] < 'a'")).isTrue();
+	}
+
+	@Test
+	void missingValueNeverMatches() {
+		assertThat(test("attributes.missing == 'x'")).isFalse();
+		assertThat(test("attributes.missing != 'x'")).isFalse();
+		assertThat(test("attributes.missing NOT IN ['x']")).isFalse();
+		assertThat(test("NOT attributes.missing == 'x'")).isFalse();
+		assertThat(test("body == 'x'")).isFalse();
+	}
+
+	@Test
+	void not() {
+		assertThat(test("NOT severityText == 'INFO'")).isTrue();
+		assertThat(test("NOT (severityText == 'DEBUG' && serviceName == 'bar')")).isTrue();
+		assertThat(test("NOT (NOT (severityText == 'DEBUG'))")).isTrue();
+		assertThat(test("NOT (NOT severityText == 'DEBUG' || serviceName == 'bar')")).isTrue();
+	}
+
+	@Test
+	void unknownField() {
+		assertThatThrownBy(() -> test("country == 'BG'")).isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("Unknown field: country");
+		assertThatThrownBy(() -> test("severityText.foo == 'BG'")).isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("Field 'severity_text' has no attributes: severityText.foo");
+	}
+
+	record MapFieldAccessor(Map<LogField, Object> columns, Map<String, Object> attributes,
+			Map<String, Object> resourceAttributes) implements FieldAccessor {
+
+		@Override
+		@Nullable
+		public Object get(LogField field) {
+			return this.columns.get(field);
+		}
+
+		@Override
+		@Nullable
+		public Object attribute(LogField field, String name) {
+			return (field == LogField.ATTRIBUTES ? this.attributes : this.resourceAttributes).get(name);
+		}
+
+	}
+
+}
@@ -0,0 +1,102 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.ingest.IngestProps.Action;
+import am.ik.lognroll.logs.ingest.IngestProps.Rule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static am.ik.lognroll.logs.ingest.LogIngesterTest.bodies;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestRulesTest {
+
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void drop() {
+		IngestRules rules = new IngestRules(
+				List.of(new Rule("debug", "severityText == 'DEBUG' && serviceName == 'foo'", Action.DROP, null, null)),
+				this.registry);
+		LogBatch kept = rules.apply(batch());
+		assertThat(bodies(kept)).containsExactly("foo-info", "bar-debug");
+		assertThat(count("debug", "dropped")).isEqualTo(2);
+		assertThat(count("debug", "kept")).isZero();
+	}
+
+	@Test
+	void firstMatchingRuleDecides() {
+		IngestRules rules = new IngestRules(
+				List.of(new Rule(null, "attributes[\"http.route\"] == '/healthz'", Action.SAMPLE, 100.0, null),
+						new Rule(null, "severityText == 'DEBUG'", Action.DROP, null, null)),
+				this.registry);
+		LogBatch kept = rules.apply(batch());
+		assertThat(bodies(kept)).containsExactly("foo-debug-healthz", "foo-info");
+		assertThat(count("rules[0]", "kept")).isEqualTo(1);
+		assertThat(count("rules[1]", "dropped")).isEqualTo(2);
+	}
+
+	@Test
+	void sampleOneIn() {
+		IngestRules rules = new IngestRules(
+				List.of(new Rule("debug", "severityText == 'DEBUG'", Action.SAMPLE, null, 2)), this.registry);
+		assertThat(bodies(rules.apply(batch()))).containsExactly("foo-debug-healthz", "foo-info", "bar-debug");
+		assertThat(bodies(rules.apply(batch()))).containsExactly("foo-debug", "foo-info");
+		assertThat(count("debug", "kept")).isEqualTo(3);
+		assertThat(count("debug", "dropped")).isEqualTo(3);
+	}
+
+	@Test
+	void samplePercentage() {
+		IngestRules none = new IngestRules(List.of(new Rule("none", "serviceName == 'foo'", Action.SAMPLE, 0.0, null)),
+				this.registry);
+		assertThat(bodies(none.apply(batch()))).containsExactly("bar-debug");
+		IngestRules all = new IngestRules(List.of(new Rule("all", "serviceName == 'foo'", Action.SAMPLE, 100.0, null)),
+				this.registry);
+		LogBatch batch = batch();
+		assertThat(all.apply(batch)).isSameAs(batch);
+	}
+
+	@Test
+	void invalidRules() {
+		assertThatThrownBy(() -> new IngestRules(List.of(new Rule("r", "severityText ==", Action.DROP, null, null)),
+				this.registry))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageStartingWith("Invalid filter of ingest rule 'r': severityText ==");
+		assertThatThrownBy(() -> new IngestRules(List.of(new Rule("r", "country == 'BG'", Action.DROP, null, null)),
+				this.registry))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("Invalid filter of ingest rule 'r': country == 'BG' (Unknown field: country)");
+		assertThatThrownBy(
+				() -> new IngestRules(List.of(new Rule("r", "severityText == 'DEBUG'", Action.SAMPLE, null, null)),
+						this.registry))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("Ingest rule 'r' must specify either 'percentage' or 'one-in'");
+	}
+
+	double count(String rule, String outcome) {
+		return this.registry.get("logs.ingest.rule").tag("rule", rule).tag("outcome", outcome).counter().count();
+	}
+
+	static LogBatch batch() {
+		return TestLogs.batch(List.of(log("foo", "DEBUG", "foo-debug-healthz", Map.of("http.route", "/healthz")),
+				log("foo", "DEBUG", "foo-debug", Map.of()), log("foo", "INFO", "foo-info", Map.of()),
+				log("bar", "DEBUG", "bar-debug", Map.of())));
+	}
+
+	static Log log(String serviceName, String severityText, String body, Map<String, Object> attributes) {
+		return TestLogs.log(body, Instant.now())
+			.serviceName(serviceName)
+			.severityText(severityText)
+			.attributes(attributes)
+			.build();
+	}
+
+}
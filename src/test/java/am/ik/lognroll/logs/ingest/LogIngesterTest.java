@@ -0,0 +1,245 @@
+package am.ik.lognroll.logs.ingest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.TestLogs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogIngesterTest {
+
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	final List<Object> events = new CopyOnWriteArrayList<>();
+
+	@Test
+	void directMode() {
+		RecordingLogStore logStore = new RecordingLogStore();
+		LogIngester ingester = new LogIngester(
+				logStore, new IngestProps(IngestProps.Mode.DIRECT, IngestProps.Durability.COMMIT, 16, 100,
+						Duration.ofMillis(10), 100000, Duration.ofSeconds(5), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		ingester.ingest(logs("a", "b"));
+		ingester.ingest(logs("c"));
+		ingester.stop();
+		assertThat(logStore.batches).hasSize(2);
+		assertThat(this.registry.get("logs.ingest.commit").timer().count()).isEqualTo(2);
+		assertThat(this.events).filteredOn(LogsStoredEvent.class::isInstance)
+			.map(event -> ((LogsStoredEvent) event).logs())
+			.containsExactlyElementsOf(logStore.batches);
+	}
+
+	@Test
+	void queueModeMergesBatches() throws Exception {
+		RecordingLogStore logStore = new RecordingLogStore();
+		LogIngester ingester = new LogIngester(
+				logStore, new IngestProps(IngestProps.Mode.QUEUE, IngestProps.Durability.COMMIT, 16, 100,
+						Duration.ofMillis(500), 100000, Duration.ofSeconds(5), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> futures = List.of(executor.submit(() -> ingester.ingest(logs("a", "b"))),
+					executor.submit(() -> ingester.ingest(logs("c"))),
+					executor.submit(() -> ingester.ingest(logs("d"))));
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		ingester.stop();
+		assertThat(logStore.batches).hasSize(1);
+		assertThat(bodies(logStore.batches.getFirst())).containsExactlyInAnyOrder("a", "b", "c", "d");
+		assertThat(this.registry.get("logs.ingest.queue.depth").gauge().value()).isZero();
+		assertThat(this.events).filteredOn(LogsStoredEvent.class::isInstance).hasSize(1);
+	}
+
+	@Test
+	void queueModeFlushesOnStop() {
+		RecordingLogStore logStore = new RecordingLogStore();
+		LogIngester ingester = new LogIngester(
+				logStore, new IngestProps(IngestProps.Mode.QUEUE, IngestProps.Durability.ENQUEUE, 16, 100,
+						Duration.ofSeconds(10), 100000, Duration.ofSeconds(5), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		ingester.ingest(logs("a"));
+		ingester.ingest(logs("b"));
+		ingester.stop();
+		assertThat(logStore.batches).flatExtracting(LogIngesterTest::bodies).containsExactly("a", "b");
+	}
+
+	@Test
+	void queueModePropagatesFailure() {
+		LogStore logStore = new RecordingLogStore() {
+			@Override
+			public void addAll(LogBatch batch) {
+				throw new IllegalStateException("database is locked");
+			}
+		};
+		LogIngester ingester = new LogIngester(
+				logStore, new IngestProps(IngestProps.Mode.QUEUE, IngestProps.Durability.COMMIT, 16, 100,
+						Duration.ofMillis(10), 100000, Duration.ofSeconds(5), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		try {
+			assertThatThrownBy(() -> ingester.ingest(logs("a"))).isInstanceOf(IllegalStateException.class)
+				.hasMessage("database is locked");
+		}
+		finally {
+			ingester.stop();
+		}
+	}
+
+	@Test
+	void queueModeFallsBackToDirectWhenWriterFails() throws Exception {
+		RecordingLogStore logStore = new RecordingLogStore() {
+			final AtomicBoolean failed = new AtomicBoolean();
+
+			@Override
+			public void addAll(LogBatch batch) {
+				if (this.failed.compareAndSet(false, true)) {
+					throw new AssertionError("writer failed");
+				}
+				super.addAll(batch);
+			}
+		};
+		LogIngester ingester = new LogIngester(
+				logStore, new IngestProps(IngestProps.Mode.QUEUE, IngestProps.Durability.COMMIT, 16, 100,
+						Duration.ofMillis(10), 100000, Duration.ofSeconds(5), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		try {
+			assertThatThrownBy(() -> ingester.ingest(logs("a"))).hasRootCauseMessage("writer failed");
+			// a batch that is enqueued before the writer has stopped fails instead of
+			// waiting forever, later batches are stored by the calling thread
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (logStore.batches.isEmpty() && System.nanoTime() < deadline) {
+				try {
+					ingester.ingest(logs("b"));
+				}
+				catch (IllegalStateException e) {
+					assertThat(e).hasMessage("The ingest writer has failed");
+				}
+			}
+			assertThat(logStore.batches).flatExtracting(LogIngesterTest::bodies).containsExactly("b");
+			// the failed batch is given back after its caller has been notified
+			while (this.registry.get("logs.ingest.queue.logs").gauge().value() > 0 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(this.registry.get("logs.ingest.queue.logs").gauge().value()).isZero();
+		}
+		finally {
+			ingester.stop();
+		}
+	}
+
+	@Test
+	void rejectsWhenBacklogIsFull() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		RecordingLogStore logStore = new RecordingLogStore() {
+			@Override
+			public void addAll(LogBatch batch) {
+				try {
+					latch.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.addAll(batch);
+			}
+		};
+		LogIngester ingester = new LogIngester(logStore, new IngestProps(IngestProps.Mode.QUEUE,
+				IngestProps.Durability.ENQUEUE, 16, 100, Duration.ofMillis(10), 2, Duration.ofSeconds(3), List.of()),
+				this.registry, this.events::add);
+		ingester.start();
+		try {
+			ingester.ingest(logs("a", "b"));
+			assertThatThrownBy(() -> ingester.ingest(logs("c"))).isInstanceOfSatisfying(IngestRejectedException.class,
+					e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(3)));
+			assertThat(this.registry.get("logs.ingest.rejected").counter().count()).isEqualTo(1);
+			assertThat(readinessStates()).containsExactly(ReadinessState.REFUSING_TRAFFIC);
+			latch.countDown();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (readinessStates().size() < 2 && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(readinessStates()).containsExactly(ReadinessState.REFUSING_TRAFFIC,
+					ReadinessState.ACCEPTING_TRAFFIC);
+			ingester.ingest(logs("c"));
+		}
+		finally {
+			latch.countDown();
+			ingester.stop();
+		}
+		assertThat(logStore.batches).flatExtracting(LogIngesterTest::bodies).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	void acceptsTrafficWhenRejectingWithNothingPending() {
+		LogIngester ingester = new LogIngester(
+				new RecordingLogStore(), new IngestProps(IngestProps.Mode.DIRECT, IngestProps.Durability.COMMIT, 16,
+						100, Duration.ofMillis(10), 2, Duration.ofSeconds(3), List.of()),
+				this.registry, this.events::add);
+		// the last pending logs were stored just before the request was rejected
+		ingester.reject(1, "Too many pending logs");
+		assertThat(readinessStates()).containsExactly(ReadinessState.REFUSING_TRAFFIC,
+				ReadinessState.ACCEPTING_TRAFFIC);
+	}
+
+	List<Object> readinessStates() {
+		return this.events.stream()
+			.filter(AvailabilityChangeEvent.class::isInstance)
+			.map(event -> ((AvailabilityChangeEvent<?>) event).getState())
+			.map(Object.class::cast)
+			.toList();
+	}
+
+	static LogBatch logs(String... bodies) {
+		Instant now = Instant.now();
+		return TestLogs.batch(Arrays.stream(bodies).map(body -> TestLogs.log(body, now).build()).toList());
+	}
+
+	static List<String> bodies(LogBatch batch) {
+		return IntStream.range(0, batch.size()).mapToObj(batch::body).toList();
+	}
+
+	static class RecordingLogStore implements LogStore {
+
+		final List<LogBatch> batches = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void addAll(LogBatch batch) {
+			this.batches.add(batch);
+		}
+
+		@Override
+		public void clear() {
+			this.batches.clear();
+		}
+
+		@Override
+		public long vacuum(Duration timeBudget) {
+			return 0;
+		}
+
+	}
+
+}
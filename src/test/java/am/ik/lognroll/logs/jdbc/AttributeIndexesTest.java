@@ -0,0 +1,194 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.filter.FieldPath;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.jdbc.AttributeIndexes.AttributeIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class AttributeIndexesTest {
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcTemplate jdbcTemplate = this.database.jdbcTemplate();
+
+	@AfterEach
+	void tearDown() {
+		this.database.close();
+	}
+
+	@Test
+	void promoteAndDemote() {
+		AttributeIndexes attributeIndexes = this.database.attributeIndexes();
+		attributeIndexes.start();
+		JdbcLogQuery logQuery = this.database.logQuery(attributeIndexes, FullTextIndexProps.DEFAULT);
+		this.database.logStore().addAll(TestLogs.batch(List.of(log("/foo"), log("/bar"))));
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(new FilterExpressionTextParser().parse("attributes[\"http.route\"] == '/foo'"))
+			.build();
+		assertThat(plan(logQuery, request)).doesNotContain("log_attr_");
+		// counted once per search request, not per query
+		attributeIndexes.recordUsage(Objects.requireNonNull(request.filterExpression()));
+		assertThat(attributeIndexes.list()).containsExactly(new AttributeIndex("http.route", 1, false));
+
+		assertThat(attributeIndexes.promote("http.route")).isTrue();
+		assertThat(attributeIndexes.promote("http.route")).isFalse();
+		assertThat(plan(logQuery, request)).contains("USING INDEX " + AttributeIndexes.indexName("http.route"));
+		assertThat(logQuery.count(request)).isEqualTo(1);
+		assertThat(attributeIndexes.list()).containsExactly(new AttributeIndex("http.route", 1, true));
+
+		assertThat(attributeIndexes.demote("http.route")).isTrue();
+		assertThat(attributeIndexes.demote("http.route")).isFalse();
+		assertThat(plan(logQuery, request)).doesNotContain("log_attr_");
+		assertThat(attributeIndexes.list()).containsExactly(new AttributeIndex("http.route", 0, false));
+		attributeIndexes.stop();
+	}
+
+	@Test
+	void autoPromote() {
+		AttributeIndexes attributeIndexes = new AttributeIndexes(this.jdbcTemplate, this.database.dataSource(),
+				new AttributeIndexProps(3, 1, List.of("configured"), AttributeIndexProps.Inverted.DISABLED));
+		attributeIndexes.start();
+		await().untilAsserted(() -> assertThat(attributeIndexes.list()).extracting(AttributeIndex::name)
+			.containsExactly("configured"));
+		for (int i = 0; i < 3; i++) {
+			attributeIndexes.recordUsage(new FieldPath("attributes", "a"));
+			attributeIndexes.recordUsage(new FieldPath("resource_attributes", "b"));
+		}
+		await().untilAsserted(() -> assertThat(attributeIndexes.list())
+			.containsExactly(new AttributeIndex("a", 3, true), new AttributeIndex("configured", 0, true)));
+		// the maximum number of automatic indexes is reached
+		for (int i = 0; i < 3; i++) {
+			attributeIndexes.recordUsage(new FieldPath("attributes", "c"));
+		}
+		attributeIndexes.stop();
+		assertThat(attributeIndexes.list()).contains(new AttributeIndex("c", 3, false));
+
+		// promoted attributes survive a restart
+		AttributeIndexes restarted = new AttributeIndexes(this.jdbcTemplate, this.database.dataSource(),
+				new AttributeIndexProps(3, 1, List.of(), AttributeIndexProps.Inverted.DISABLED));
+		restarted.start();
+		assertThat(restarted.list()).extracting(AttributeIndex::name).containsExactlyInAnyOrder("a", "configured");
+		restarted.stop();
+	}
+
+	@Test
+	void invalidName() {
+		AttributeIndexes attributeIndexes = this.database.attributeIndexes();
+		assertThatThrownBy(() -> attributeIndexes.promote("a') OR 1 = 1 --"))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThat(AttributeIndexes.indexName("http.route")).matches("log_attr_http_route_[0-9a-f]{8}");
+	}
+
+	@Test
+	void invertedIndex() {
+		JdbcLogStore logStore = this.database.logStore();
+		// indexed by the backfill
+		logStore.addAll(TestLogs
+			.batch(List.of(log(Map.of("status", 404, "cached", true)), log(Map.of("status", "404", "cached", false)))));
+		AttributeIndexes attributeIndexes = new AttributeIndexes(this.jdbcTemplate, this.database.dataSource(),
+				new AttributeIndexProps(0, 5, List.of(),
+						new AttributeIndexProps.Inverted(true, 10, Duration.ofHours(1))));
+		attributeIndexes.start();
+		await().until(() -> attributeIndexes.isInverted("status"));
+		// indexed by the trigger
+		logStore.addAll(TestLogs.batch(List.of(log(Map.of("status", 500, "cached", true)),
+				log(Map.of("status", 200, "nested", Map.of("a", 1))))));
+		JdbcLogQuery logQuery = this.database.logQuery(attributeIndexes, FullTextIndexProps.DEFAULT);
+		JdbcLogQuery jsonExtract = this.database.logQuery();
+		for (String filter : List.of("attributes.status == 404", "attributes.status == '404'",
+				"attributes.status IN [404, 500]", "attributes.cached == true",
+				"attributes.cached == true && attributes.status == 500", "attributes.status == 404 || body == 'x'")) {
+			LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+				.query("")
+				.filterExpression(new FilterExpressionTextParser().parse(filter))
+				.build();
+			assertThat(logQuery.findLatestLogs(request)).as(filter)
+				.map(Log::attributes)
+				.containsExactlyElementsOf(jsonExtract.findLatestLogs(request).stream().map(Log::attributes).toList());
+		}
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(
+					new FilterExpressionTextParser().parse("attributes.cached == true && attributes.status == 500"))
+			.build();
+		assertThat(logQuery.count(request)).isEqualTo(1);
+		assertThat(plan(logQuery, request)).contains("USING PRIMARY KEY").doesNotContain("SCAN log");
+		// objects are not indexed
+		assertThat(
+				this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log_attr WHERE key = 'nested'", Integer.class))
+			.isZero();
+		this.jdbcTemplate.update("DELETE FROM log");
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log_attr", Integer.class)).isZero();
+		attributeIndexes.stop();
+	}
+
+	@Test
+	void excludeHighCardinalityKeys() {
+		JdbcLogStore logStore = this.database.logStore();
+		AttributeIndexProps props = new AttributeIndexProps(0, 5, List.of(),
+				new AttributeIndexProps.Inverted(true, 2, Duration.ofHours(1)));
+		AttributeIndexes attributeIndexes = new AttributeIndexes(this.jdbcTemplate, this.database.dataSource(), props);
+		attributeIndexes.enableInverted();
+		logStore.addAll(TestLogs.batch(List.of(log("/a"), log("/b"), log("/c"))));
+		assertThat(attributeIndexes.isInverted("http.route")).isTrue();
+		attributeIndexes.excludeHighCardinalityKeys();
+		assertThat(attributeIndexes.isInverted("http.route")).isFalse();
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log_attr", Integer.class)).isZero();
+		logStore.addAll(TestLogs.batch(List.of(log("/d"))));
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log_attr", Integer.class)).isZero();
+
+		// the exclusion survives a restart
+		AttributeIndexes restarted = new AttributeIndexes(this.jdbcTemplate, this.database.dataSource(), props);
+		restarted.start();
+		await().until(() -> restarted.isInverted("other"));
+		assertThat(restarted.isInverted("http.route")).isFalse();
+		restarted.stop();
+
+		// disabling drops the index
+		AttributeIndexes disabled = this.database.attributeIndexes();
+		disabled.start();
+		assertThat(disabled.isInverted("other")).isFalse();
+		assertThat(this.jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'log_attr_%'", Integer.class))
+			.isZero();
+		disabled.stop();
+	}
+
+	String plan(JdbcLogQuery logQuery, LogQuery.SearchRequest request) {
+		JdbcLogQuery.QueryAndParams queryAndParams = logQuery.buildQueryAndParams(request);
+		return String.join("\n",
+				JdbcClient.create(this.database.dataSource())
+					.sql("EXPLAIN QUERY PLAN SELECT COUNT(log.log_id) " + queryAndParams.query())
+					.params(queryAndParams.params())
+					.query((rs, i) -> rs.getString("detail"))
+					.list());
+	}
+
+	static Log log(String route) {
+		return log(Map.of("http.route", route));
+	}
+
+	static Log log(Map<String, Object> attributes) {
+		return TestLogs.log("GET", Instant.parse("2024-06-01T00:00:00Z")).attributes(attributes).build();
+	}
+
+}
@@ -0,0 +1,18 @@
+package am.ik.lognroll.logs.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FullTextIndexTest {
+
+	@Test
+	void segments() {
+		// cookie, 2 levels, 5 segments
+		assertThat(FullTextIndex.segments(new byte[] { 0, 0, 0, 7, 2, 5 })).isEqualTo(5);
+		// cookie, structure v2 prefix, 1 level, 300 segments
+		assertThat(FullTextIndex.segments(new byte[] { 0, 0, 0, 7, (byte) 0xff, 0, 0, 1, 1, (byte) 0x82, 0x2c }))
+			.isEqualTo(300);
+	}
+
+}
@@ -0,0 +1,190 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps.Detail;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps.Tokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static am.ik.lognroll.logs.jdbc.JdbcLogQueryTest.log;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FullTextIndexerTest {
+
+	static final Instant now = Instant.parse("2024-06-01T00:00:00Z");
+
+	static final FullTextIndexProps deferred = new FullTextIndexProps(Tokenizer.TRIGRAM, Detail.FULL, false,
+			new FullTextIndexProps.Deferred(true, Duration.ofSeconds(1), 2));
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcTemplate jdbcTemplate = this.database.jdbcTemplate();
+
+	JdbcLogStore logStore = this.database.logStore();
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@AfterEach
+	void tearDown() {
+		this.database.close();
+	}
+
+	@Test
+	void searchLogsThatAreNotIndexedYet() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("Hello indexed", now), log("bye indexed", now))));
+		FullTextIndexer indexer = new FullTextIndexer(this.jdbcTemplate, deferred, this.registry);
+		indexer.enableDeferred();
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello pending", now), log("it's pending", now),
+				log("bye pending", now), log("HELLO pending", now), log("deleted pending", now))));
+		this.jdbcTemplate.update("DELETE FROM log WHERE body = 'deleted pending'");
+		assertThat(indexedBodies()).containsExactlyInAnyOrder("Hello indexed", "bye indexed");
+
+		JdbcLogQuery logQuery = logQuery(deferred);
+		assertThat(search(logQuery, "hello")).containsExactlyInAnyOrder("Hello indexed", "hello pending",
+				"HELLO pending");
+		assertThat(search(logQuery, "pending -bye")).containsExactlyInAnyOrder("hello pending", "it's pending",
+				"HELLO pending");
+		assertThat(search(logQuery, "bye or it's")).containsExactlyInAnyOrder("bye indexed", "it's pending",
+				"bye pending");
+		assertThat(logQuery.count(SearchRequestBuilder.searchRequest().query("indexed or pending").build()))
+			.isEqualTo(6);
+
+		indexer.indexAll();
+		assertThat(this.registry.get("logs.fts.indexed").counter().count()).isEqualTo(4);
+		assertThat(this.registry.get("logs.fts.pending").gauge().value()).isZero();
+		assertThat(indexedBodies()).hasSize(6);
+		assertThat(search(logQuery, "hello")).containsExactlyInAnyOrder("Hello indexed", "hello pending",
+				"HELLO pending");
+		assertThat(search(logQuery(FullTextIndexProps.DEFAULT), "hello")).containsExactlyInAnyOrder("Hello indexed",
+				"hello pending", "HELLO pending");
+		integrityCheck();
+	}
+
+	@Test
+	void indexRemainingLogsWhenDisabled() {
+		FullTextIndexer indexer = new FullTextIndexer(this.jdbcTemplate, deferred, this.registry);
+		indexer.enableDeferred();
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 1", now), log("hello 2", now))));
+		assertThat(indexer.indexNext()).isEqualTo(2);
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 3", now))));
+		this.jdbcTemplate.update("DELETE FROM log WHERE body = 'hello 1'");
+
+		indexer.disableDeferred();
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 4", now))));
+		this.jdbcTemplate.update("DELETE FROM log WHERE body = 'hello 4'");
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 5", now))));
+		assertThat(this.jdbcTemplate.queryForObject("SELECT log_id FROM log_fts_indexed", Long.class))
+			.isEqualTo(FullTextIndexer.ALL_INDEXED);
+		assertThat(indexedBodies()).containsExactlyInAnyOrder("hello 2", "hello 3", "hello 5");
+		integrityCheck();
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "TRIGRAM, FULL, false", "TRIGRAM, FULL, true", "UNICODE61, FULL, false", "UNICODE61, NONE, true",
+			"BOTH, FULL, false", "BOTH, COLUMN, false", "BOTH, NONE, true" })
+	void searchWithLayout(Tokenizer tokenizer, Detail detail, boolean contentless) {
+		this.logStore.addAll(TestLogs.batch(List.of(log("Hello World", now), log("say hi to helium", now),
+				log("foo.bar failed", now), log("bar foo", now))));
+		FullTextIndexProps props = new FullTextIndexProps(tokenizer, detail, contentless,
+				FullTextIndexProps.Deferred.DISABLED);
+		FullTextIndexer indexer = new FullTextIndexer(this.jdbcTemplate, props, this.registry);
+		assertThat(indexer.applyLayout()).isEqualTo(tokenizer != Tokenizer.TRIGRAM || contentless);
+		assertThat(indexer.applyLayout()).isFalse();
+		assertThat(FullTextIndex.tables(this.jdbcTemplate)).containsExactlyInAnyOrderElementsOf(props.tables());
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello again", now))));
+
+		JdbcLogQuery logQuery = logQuery(props);
+		assertThat(search(logQuery, "hello")).containsExactlyInAnyOrder("Hello World", "hello again");
+		assertThat(search(logQuery, "hel")).containsExactlyInAnyOrderElementsOf(tokenizer == Tokenizer.UNICODE61
+				? List.of() : List.of("Hello World", "say hi to helium", "hello again"));
+		assertThat(search(logQuery, "hi helium")).containsExactlyInAnyOrderElementsOf(
+				tokenizer == Tokenizer.TRIGRAM ? List.of() : List.of("say hi to helium"));
+		assertThat(search(logQuery, "foo.bar"))
+			.containsExactlyInAnyOrderElementsOf(tokenizer == Tokenizer.UNICODE61 && detail != Detail.FULL
+					? List.of("foo.bar failed", "bar foo") : List.of("foo.bar failed"));
+		this.jdbcTemplate.update("DELETE FROM log WHERE body = 'hello again'");
+		this.jdbcTemplate.update("UPDATE log SET body = 'Hello Earth' WHERE body = 'Hello World'");
+		assertThat(search(logQuery, "hello")).containsExactly("Hello Earth");
+		assertThat(search(logQuery, "world")).isEmpty();
+		if (!contentless) {
+			integrityCheck();
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = Tokenizer.class, names = { "UNICODE61", "BOTH" })
+	void rejectDeferredWithWordIndex(Tokenizer tokenizer) {
+		FullTextIndexProps props = new FullTextIndexProps(tokenizer, Detail.FULL, false,
+				new FullTextIndexProps.Deferred(true, Duration.ofSeconds(1), 100));
+		assertThatThrownBy(() -> new FullTextIndexer(this.jdbcTemplate, props, this.registry))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("tokenizer=" + tokenizer);
+	}
+
+	@Test
+	void wordIndexIsSmallerThanTrigramIndex() {
+		List<Log> logs = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			logs.add(log("GET /api/orders/%d returned 200 in %d ms for user-%d".formatted(i, i % 97, i % 13), now));
+		}
+		this.logStore.addAll(TestLogs.batch(logs));
+		long trigram = indexSize(FullTextIndexProps.TRIGRAM_TABLE);
+		new FullTextIndexer(this.jdbcTemplate,
+				new FullTextIndexProps(Tokenizer.UNICODE61, Detail.FULL, false, FullTextIndexProps.Deferred.DISABLED),
+				this.registry)
+			.applyLayout();
+		long wordFull = indexSize(FullTextIndexProps.WORD_TABLE);
+		new FullTextIndexer(this.jdbcTemplate,
+				new FullTextIndexProps(Tokenizer.UNICODE61, Detail.NONE, true, FullTextIndexProps.Deferred.DISABLED),
+				this.registry)
+			.applyLayout();
+		long wordNone = indexSize(FullTextIndexProps.WORD_TABLE);
+		assertThat(trigram).isGreaterThan(wordFull);
+		assertThat(wordFull).isGreaterThan(wordNone);
+	}
+
+	long indexSize(String table) {
+		FullTextIndex.optimize(this.jdbcTemplate);
+		return Objects.requireNonNull(this.jdbcTemplate
+			.queryForObject("SELECT SUM(length(block)) FROM %s_data".formatted(table), Long.class));
+	}
+
+	List<String> search(JdbcLogQuery logQuery, String query) {
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest().query(query).build();
+		return logQuery.findLatestLogs(request).stream().map(Log::body).toList();
+	}
+
+	List<String> indexedBodies() {
+		return this.jdbcTemplate.queryForList(
+				"SELECT log.body FROM log_fts JOIN log ON log_fts.rowid = log.log_id WHERE log_fts MATCH '\"ind\" OR \"pen\" OR \"hel\"'",
+				String.class);
+	}
+
+	void integrityCheck() {
+		for (String table : FullTextIndex.tables(this.jdbcTemplate)) {
+			this.jdbcTemplate
+				.execute("INSERT INTO %s (%s, rank) VALUES ('integrity-check', 1)".formatted(table, table));
+		}
+	}
+
+	JdbcLogQuery logQuery(FullTextIndexProps props) {
+		return this.database.logQuery(props);
+	}
+
+}
@@ -1,13 +1,45 @@
 package am.ik.lognroll.logs.jdbc;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.pagination.CursorPageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 class JdbcLogQueryTest {
 
+	static final Instant now = Instant.parse("2024-06-01T00:00:00Z");
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcLogStore logStore = this.database.logStore();
+
+	JdbcLogQuery logQuery = this.database.logQuery();
+
+	@AfterEach
+	void tearDown() {
+		this.database.close();
+	}
+
 	@Test
 	void splitList() {
 		List<Integer> list = List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
@@ -15,4 +47,192 @@ class JdbcLogQueryTest {
 		assertThat(lists).containsExactly(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7, 8, 9), List.of(10));
 	}
 
-}
\ No newline at end of file
+	@Test
+	void untilLogId() {
+		assertThat(this.logQuery.latestLogId()).isZero();
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 1", now), log("hello 2", now))));
+		long latestLogId = this.logQuery.latestLogId();
+		this.logStore.addAll(TestLogs.batch(List.of(log("hello 3", now))));
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("hello")
+			.untilLogId(latestLogId)
+			.build();
+		assertThat(this.logQuery.findLatestLogs(request)).extracting(Log::body)
+			.containsExactlyInAnyOrder("hello 1", "hello 2");
+		assertThat(this.logQuery.count(request)).isEqualTo(2);
+		assertThat(this.logQuery.findVolumes(request, Duration.ofMinutes(10))).extracting(LogQuery.Volume::count)
+			.containsExactly(2L);
+		assertThat(this.logQuery.count(SearchRequestBuilder.searchRequest().query("hello").build())).isEqualTo(3);
+	}
+
+	@Test
+	void pageThroughEqualTimestamps() {
+		this.logStore.addAll(
+				TestLogs.batch(IntStream.range(0, 7).mapToObj(i -> log("log " + i, now.plusSeconds(i / 3))).toList()));
+		List<String> bodies = new ArrayList<>();
+		LogQuery.Cursor cursor = null;
+		while (true) {
+			List<Log> page = this.logQuery.findLatestLogs(SearchRequestBuilder.searchRequest()
+				.query("")
+				.pageRequest(new CursorPageRequest<>(cursor, 2, CursorPageRequest.Navigation.NEXT))
+				.build());
+			if (page.isEmpty()) {
+				break;
+			}
+			page.forEach(log -> bodies.add(log.body()));
+			Log last = page.getLast();
+			cursor = LogQuery.Cursor
+				.valueOf("%s,%s,%d".formatted(last.timestamp(), last.observedTimestamp(), last.logId()));
+		}
+		assertThat(bodies).containsExactly("log 6", "log 5", "log 4", "log 3", "log 2", "log 1", "log 0");
+	}
+
+	@Test
+	void nextPageSeeksIndex() {
+		JdbcLogQuery.QueryAndParams queryAndParams = this.logQuery.buildLatestLogsQueryAndParams(SearchRequestBuilder
+			.searchRequest()
+			.query("")
+			.from(now)
+			.pageRequest(
+					new CursorPageRequest<>(new LogQuery.Cursor(now, now, 100), 30, CursorPageRequest.Navigation.NEXT))
+			.build());
+		String plan = String.join("\n",
+				JdbcClient.create(this.database.dataSource())
+					.sql("EXPLAIN QUERY PLAN " + queryAndParams.query())
+					.params(queryAndParams.params())
+					.query((rs, i) -> rs.getString("detail"))
+					.list());
+		assertThat(plan).contains("SEARCH log USING INDEX log_observed_timestamp_timestamp_log_id")
+			.doesNotContain("TEMP B-TREE");
+	}
+
+	@Test
+	void pushDownResourceFilter() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", now, Map.of("service.namespace", "prod"), "INFO"),
+				log("b", now, Map.of("service.namespace", "prod"), "ERROR"),
+				log("c", now, Map.of("service.namespace", "dev"), "ERROR"), log("d", now, Map.of(), "ERROR"))));
+		FilterExpressionTextParser parser = new FilterExpressionTextParser();
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(parser.parse(
+					"resourceAttributes[\"service.namespace\"] == 'prod' && (severityText == 'ERROR' || body == 'a')"))
+			.build();
+		assertThat(this.logQuery.findLatestLogs(request)).extracting(Log::body).containsExactlyInAnyOrder("a", "b");
+		JdbcLogQuery.QueryAndParams queryAndParams = this.logQuery.buildQueryAndParams(request);
+		assertThat(queryAndParams.query()).contains(
+				"AND log.resource_attributes_digest IN (SELECT digest FROM resource_attributes WHERE json_extract(resource_attributes, '$.\"service.namespace\"') == \"prod\")")
+			.contains("AND (severity_text == \"ERROR\" OR body == \"a\")");
+		String plan = String.join("\n",
+				JdbcClient.create(this.database.dataSource())
+					.sql("EXPLAIN QUERY PLAN SELECT COUNT(log.log_id) " + queryAndParams.query())
+					.params(queryAndParams.params())
+					.query((rs, i) -> rs.getString("detail"))
+					.list());
+		assertThat(plan).contains("USING INDEX log_resource_attributes_digest");
+		request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(
+					parser.parse("severityText == 'ERROR' && NOT resourceAttributes[\"service.namespace\"] == 'prod'"))
+			.build();
+		assertThat(this.logQuery.findLatestLogs(request)).extracting(Log::body).containsExactly("c");
+	}
+
+	@Test
+	void orFilterDoesNotEscapeOtherConditions() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", now), log("b", now.plusSeconds(60)))));
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.from(now.plusSeconds(30))
+			.filterExpression(new FilterExpressionTextParser().parse("body == 'a' || body == 'b'"))
+			.build();
+		assertThat(this.logQuery.findLatestLogs(request)).extracting(Log::body).containsExactly("b");
+	}
+
+	@Test
+	void joinResourceAttributesOnlyIfNeeded() {
+		this.logStore.addAll(TestLogs.batch(List.of(log("a", now, Map.of("service.namespace", "prod"), "INFO"),
+				log("b", now, Map.of("service.namespace", "dev"), "INFO"), log("c", now, Map.of(), "ERROR"))));
+		FilterExpressionTextParser parser = new FilterExpressionTextParser();
+		LogQuery.SearchRequest request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(parser.parse("resourceAttributes.service.namespace == 'prod'"))
+			.build();
+		assertThat(this.logQuery.buildQueryAndParams(request).query()).doesNotContain("JOIN");
+		assertThat(this.logQuery.findLatestLogs(request)).singleElement()
+			.satisfies(log -> assertThat(log.resourceAttributes()).isEqualTo(Map.of("service.namespace", "prod")));
+		request = SearchRequestBuilder.searchRequest()
+			.query("")
+			.filterExpression(parser.parse("resourceAttributes.service.namespace == 'dev' || severityText == 'ERROR'"))
+			.build();
+		assertThat(this.logQuery.buildQueryAndParams(request).query()).contains("JOIN resource_attributes");
+		assertThat(this.logQuery.findLatestLogs(request)).extracting(Log::body, Log::resourceAttributes)
+			.containsExactlyInAnyOrder(tuple("b", Map.of("service.namespace", "dev")), tuple("c", Map.of()));
+	}
+
+	@Test
+	void conjuncts() {
+		FilterExpressionTextParser parser = new FilterExpressionTextParser();
+		assertThat(JdbcLogQuery.conjuncts(parser.parse("a == 1 && (b == 2 && c == 3) && (d == 4 || e == 5)")))
+			.hasSize(4);
+		assertThat(JdbcLogQuery.conjuncts(parser.parse("a == 1 && b == 2 || c == 3"))).hasSize(1);
+		assertThat(JdbcLogQuery.isResourceOnly(parser.parse("resource.attributes['a'] == 1"))).isTrue();
+		assertThat(JdbcLogQuery.isResourceOnly(parser.parse("resourceAttributes.a == 1 || attributes.a == 1")))
+			.isFalse();
+		assertThat(JdbcLogQuery.isResourceOnly(parser.parse("resourceAttributesDigest == 1"))).isFalse();
+	}
+
+	@Test
+	void jsonbAttributes() {
+		SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+		try {
+			Flyway.configure().dataSource(dataSource).target("20241018150000").load().migrate();
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+			// stored as text before the migration
+			jdbcTemplate.update("INSERT INTO resource_attributes(digest, resource_attributes) VALUES (1, ?)",
+					"{\"service.name\":\"old\"}");
+			jdbcTemplate.update("""
+					INSERT INTO log(timestamp, observed_timestamp, body, attributes, resource_attributes_digest)
+					VALUES (?, ?, 'old', '{"status":404}', 1)
+					""", now.toEpochMilli(), now.toEpochMilli());
+			Flyway.configure().dataSource(dataSource).load().migrate();
+			new JdbcLogStore(jdbcTemplate).addAll(TestLogs.batch(List.of(TestLogs.log("new", now)
+				.serviceName("new")
+				.attributes(Map.of("status", 500))
+				.resourceAttributes(Map.of("service.name", "new"))
+				.build())));
+			assertThat(jdbcTemplate.queryForList("SELECT typeof(attributes) FROM log", String.class))
+				.containsOnly("blob");
+			assertThat(jdbcTemplate.queryForList("SELECT typeof(resource_attributes) FROM resource_attributes",
+					String.class))
+				.containsOnly("blob");
+			JdbcLogQuery logQuery = new JdbcLogQuery(JdbcClient.create(dataSource), dataSource, new ObjectMapper(),
+					new AttributeIndexes(jdbcTemplate, dataSource,
+							new AttributeIndexProps(0, 5, List.of(), AttributeIndexProps.Inverted.DISABLED)),
+					FullTextIndexProps.DEFAULT);
+			assertThat(logQuery.findLatestLogs(SearchRequestBuilder.searchRequest().query("").build()))
+				.extracting(Log::body, Log::attributes, Log::resourceAttributes)
+				.containsExactlyInAnyOrder(tuple("old", Map.of("status", 404), Map.of("service.name", "old")),
+						tuple("new", Map.of("status", 500), Map.of("service.name", "new")));
+			FilterExpressionTextParser parser = new FilterExpressionTextParser();
+			assertThat(logQuery.findLatestLogs(SearchRequestBuilder.searchRequest()
+				.query("")
+				.filterExpression(
+						parser.parse("attributes.status == 404 || resourceAttributes[\"service.name\"] == 'new'"))
+				.build())).extracting(Log::body).containsExactlyInAnyOrder("old", "new");
+			// the full-text index is intact
+			assertThat(logQuery.count(SearchRequestBuilder.searchRequest().query("old").build())).isEqualTo(1);
+		}
+		finally {
+			dataSource.destroy();
+		}
+	}
+
+	static Log log(String body, Instant timestamp, Map<String, Object> resourceAttributes, String severityText) {
+		return TestLogs.log(body, timestamp).severityText(severityText).resourceAttributes(resourceAttributes).build();
+	}
+
+	static Log log(String body, Instant timestamp) {
+		return TestLogs.log(body, timestamp).build();
+	}
+
+}
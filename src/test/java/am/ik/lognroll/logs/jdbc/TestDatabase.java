@@ -0,0 +1,66 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * A migrated in-memory database for tests. Logs are written and read through the same
+ * connection, which is closed by {@link #close()}.
+ */
+public final class TestDatabase implements AutoCloseable {
+
+	private final SingleConnectionDataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public TestDatabase() {
+		this.dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+		Flyway.configure().dataSource(this.dataSource).load().migrate();
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+	}
+
+	public SingleConnectionDataSource dataSource() {
+		return this.dataSource;
+	}
+
+	public JdbcTemplate jdbcTemplate() {
+		return this.jdbcTemplate;
+	}
+
+	public JdbcLogStore logStore() {
+		return new JdbcLogStore(this.jdbcTemplate);
+	}
+
+	/**
+	 * Returns attribute indexes that are never promoted automatically.
+	 */
+	public AttributeIndexes attributeIndexes() {
+		return new AttributeIndexes(this.jdbcTemplate, this.dataSource,
+				new AttributeIndexProps(0, 5, List.of(), AttributeIndexProps.Inverted.DISABLED));
+	}
+
+	public JdbcLogQuery logQuery() {
+		return logQuery(FullTextIndexProps.DEFAULT);
+	}
+
+	public JdbcLogQuery logQuery(FullTextIndexProps fullTextIndexProps) {
+		return logQuery(attributeIndexes(), fullTextIndexProps);
+	}
+
+	public JdbcLogQuery logQuery(AttributeIndexes attributeIndexes, FullTextIndexProps fullTextIndexProps) {
+		return new JdbcLogQuery(JdbcClient.create(this.dataSource), this.dataSource, new ObjectMapper(),
+				attributeIndexes, fullTextIndexProps);
+	}
+
+	@Override
+	public void close() {
+		this.dataSource.destroy();
+	}
+
+}
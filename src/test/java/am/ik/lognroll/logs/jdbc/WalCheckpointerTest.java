@@ -0,0 +1,90 @@
+package am.ik.lognroll.logs.jdbc;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import am.ik.lognroll.config.DataSourceConfig;
+import am.ik.lognroll.config.DbProps;
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.TestLogs;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteConfig;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WalCheckpointerTest {
+
+	@TempDir
+	Path directory;
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void escalateWhenTheWalGrows() throws Exception {
+		DbProps dbProps = new DbProps(this.directory.resolve("lognroll.db").toString(), SQLiteConfig.JournalMode.WAL,
+				SQLiteConfig.SynchronousMode.NORMAL, Duration.ofMillis(100), DataSize.ofBytes(0),
+				DataSize.ofMegabytes(2), SQLiteConfig.TempStore.MEMORY, 2);
+		DataSourceConfig config = new DataSourceConfig();
+		Flyway.configure().dataSource(config.flywayDataSource(dbProps)).load().migrate();
+		try (HikariDataSource writeDataSource = config.dataSource(dbProps);
+				HikariDataSource readDataSource = config.readDataSource(dbProps)) {
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(writeDataSource);
+			jdbcTemplate.execute("PRAGMA wal_autocheckpoint = 0");
+			JdbcLogStore logStore = new JdbcLogStore(jdbcTemplate);
+			logStore.addAll(TestLogs.batch(logs(0)));
+			WalCheckpointer passive = new WalCheckpointer(jdbcTemplate, dbProps,
+					new CheckpointProps(Duration.ofSeconds(10), DataSize.ofGigabytes(1), DataSize.ofGigabytes(1)),
+					this.registry);
+			long walSize = passive.walSize();
+			assertThat(walSize).isPositive();
+
+			try (Connection reader = readDataSource.getConnection(); Statement statement = reader.createStatement()) {
+				// a reader keeps the frames written after it started in the wal
+				reader.setAutoCommit(false);
+				try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM log")) {
+					resultSet.next();
+				}
+				logStore.addAll(TestLogs.batch(logs(100)));
+				WalCheckpointer.Checkpoint checkpoint = passive.checkpoint();
+				assertThat(checkpoint.mode()).isEqualTo(WalCheckpointer.Mode.PASSIVE);
+				assertThat(checkpoint.checkpointedFrames()).isLessThan(checkpoint.walFrames());
+				assertThat(this.registry.get("logs.wal.pending").gauge().value()).isPositive();
+				reader.commit();
+			}
+			assertThat(passive.walSize()).isGreaterThan(walSize);
+
+			WalCheckpointer truncate = new WalCheckpointer(jdbcTemplate, dbProps,
+					new CheckpointProps(Duration.ofSeconds(10), DataSize.ofBytes(1), DataSize.ofBytes(1)),
+					new SimpleMeterRegistry());
+			WalCheckpointer.Checkpoint checkpoint = truncate.checkpoint();
+			assertThat(checkpoint.mode()).isEqualTo(WalCheckpointer.Mode.TRUNCATE);
+			assertThat(checkpoint.busy()).isFalse();
+			assertThat(truncate.walSize()).isZero();
+			assertThat(new JdbcTemplate(readDataSource).queryForObject("SELECT COUNT(*) FROM log", Integer.class))
+				.isEqualTo(200);
+		}
+		assertThat(this.registry.get("logs.wal.checkpoint").tag("mode", "passive").timer().count()).isEqualTo(1);
+	}
+
+	static List<Log> logs(int offset) {
+		List<Log> logs = new ArrayList<>();
+		for (int i = offset; i < offset + 100; i++) {
+			logs.add(TestLogs.log("log " + i, Instant.EPOCH).build());
+		}
+		return logs;
+	}
+
+}
@@ -0,0 +1,130 @@
+package am.ik.lognroll.logs.maintenance;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+import java.util.List;
+
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.ingest.LogsStoredEvent;
+import am.ik.lognroll.logs.jdbc.JdbcLogStore;
+import am.ik.lognroll.logs.jdbc.TestDatabase;
+import am.ik.lognroll.logs.maintenance.DatabaseMaintenance.Task;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseMaintenanceTest {
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcTemplate jdbcTemplate = this.database.jdbcTemplate();
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@AfterEach
+	void tearDown() {
+		this.database.close();
+	}
+
+	@Test
+	void mergeFullTextIndex() {
+		JdbcLogStore logStore = this.database.logStore();
+		for (int i = 0; i < 10; i++) {
+			// every stored batch adds a segment
+			logStore.addAll(TestLogs.batch(List.of(TestLogs.log("log " + i, Instant.EPOCH).build())));
+		}
+		DatabaseMaintenance maintenance = maintenance(Clock.systemUTC());
+		assertThat(maintenance.updateSegments()).isEqualTo(10);
+		assertThat(this.registry.get("logs.fts.segments").gauge().value()).isEqualTo(10);
+
+		DatabaseMaintenance.Report report = maintenance.run(EnumSet.of(Task.OPTIMIZE_FULL_TEXT_INDEX, Task.OPTIMIZE));
+		assertThat(report.results()).extracting(DatabaseMaintenance.Result::task)
+			.containsExactly(Task.OPTIMIZE, Task.OPTIMIZE_FULL_TEXT_INDEX);
+		assertThat(report.results()).allMatch(DatabaseMaintenance.Result::completed);
+		assertThat(report.segments()).isEqualTo(1);
+		assertThat(this.registry.get("logs.fts.segments").gauge().value()).isEqualTo(1);
+		assertThat(this.registry.get("logs.maintenance").tag("task", "optimize").timer().count()).isEqualTo(1);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log_fts WHERE log_fts MATCH 'log'",
+				Integer.class))
+			.isEqualTo(10);
+	}
+
+	@Test
+	void vacuum() {
+		this.database.logStore().addAll(TestLogs.batch(List.of(TestLogs.log("log", Instant.EPOCH).build())));
+		assertThat(this.jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class)).isZero();
+
+		DatabaseMaintenance.Report report = maintenance(Clock.systemUTC()).run(EnumSet.of(Task.VACUUM));
+		assertThat(report.results()).extracting(DatabaseMaintenance.Result::task).containsExactly(Task.VACUUM);
+		// incremental, and the logs are kept
+		assertThat(this.jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class)).isEqualTo(2);
+		assertThat(this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM log", Integer.class)).isEqualTo(1);
+	}
+
+	@Test
+	void runWhenQuiet() {
+		MutableClock clock = new MutableClock(Instant.parse("2024-06-30T00:00:00Z"));
+		DatabaseMaintenance maintenance = maintenance(clock);
+		clock.advance(Duration.ofMinutes(59));
+		assertThat(maintenance.isDue()).isFalse();
+		clock.advance(Duration.ofMinutes(1));
+		maintenance.onLogsStored(new LogsStoredEvent(TestLogs.batch(List.of())));
+		assertThat(maintenance.isDue()).isFalse();
+		clock.advance(Duration.ofMinutes(1));
+		assertThat(maintenance.isDue()).isTrue();
+		maintenance.run(EnumSet.of(Task.MERGE));
+		assertThat(maintenance.isDue()).isFalse();
+		assertThat(this.registry.get("logs.maintenance").tag("task", "merge").timer().count()).isEqualTo(1);
+
+		// a database that is never quiet is maintained after the maximum delay
+		clock.advance(Duration.ofHours(23).plusMinutes(59));
+		maintenance.onLogsStored(new LogsStoredEvent(TestLogs.batch(List.of())));
+		assertThat(maintenance.isDue()).isFalse();
+		clock.advance(Duration.ofMinutes(1));
+		maintenance.onLogsStored(new LogsStoredEvent(TestLogs.batch(List.of())));
+		assertThat(maintenance.isDue()).isTrue();
+	}
+
+	DatabaseMaintenance maintenance(Clock clock) {
+		return new DatabaseMaintenance(this.jdbcTemplate, new MaintenanceProps(true, Duration.ofHours(1),
+				Duration.ofMinutes(1), Duration.ofDays(1), Duration.ofSeconds(10), 1000, 64), this.registry, clock);
+	}
+
+	static class MutableClock extends Clock {
+
+		private Instant instant;
+
+		MutableClock(Instant instant) {
+			this.instant = instant;
+		}
+
+		void advance(Duration duration) {
+			this.instant = this.instant.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return this.instant;
+		}
+
+	}
+
+}
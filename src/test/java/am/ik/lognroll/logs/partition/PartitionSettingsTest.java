@@ -0,0 +1,47 @@
+package am.ik.lognroll.logs.partition;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import am.ik.lognroll.logs.jdbc.AttributeIndexProps;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps;
+import am.ik.lognroll.logs.retention.RetentionProps;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionSettingsTest {
+
+	static final RetentionProps noRetention = new RetentionProps(null, Map.of(), List.of(), null, Duration.ofMinutes(1),
+			1000, Duration.ofSeconds(1), 1000);
+
+	static final AttributeIndexProps attributeIndexes = new AttributeIndexProps(100, 5, List.of(),
+			AttributeIndexProps.Inverted.DISABLED);
+
+	@Test
+	void defaults() {
+		assertThat(PartitionSettings.unsupported(noRetention, attributeIndexes, FullTextIndexProps.DEFAULT)).isEmpty();
+	}
+
+	@Test
+	void singleDatabaseSettings() {
+		RetentionProps retention = new RetentionProps(Duration.ofDays(7), Map.of(), List.of(), null,
+				Duration.ofMinutes(1), 1000, Duration.ofSeconds(1), 1000);
+		AttributeIndexProps inverted = new AttributeIndexProps(100, 5, List.of("http.method"),
+				new AttributeIndexProps.Inverted(true, 1000, Duration.ofMinutes(1)));
+		FullTextIndexProps deferred = new FullTextIndexProps(FullTextIndexProps.Tokenizer.TRIGRAM,
+				FullTextIndexProps.Detail.FULL, true,
+				new FullTextIndexProps.Deferred(true, Duration.ofSeconds(1), 10000));
+		assertThat(PartitionSettings.unsupported(retention, inverted, deferred)).containsExactly(
+				"lognroll.retention (use lognroll.partition.max-age)", "lognroll.attribute-index.promoted",
+				"lognroll.attribute-index.inverted.enabled",
+				"lognroll.full-text-index.tokenizer, detail and contentless",
+				"lognroll.full-text-index.deferred.enabled");
+		assertThatThrownBy(() -> new PartitionSettings(retention, attributeIndexes, FullTextIndexProps.DEFAULT))
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("lognroll.retention");
+	}
+
+}
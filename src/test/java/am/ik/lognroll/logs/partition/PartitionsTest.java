@@ -0,0 +1,177 @@
+package am.ik.lognroll.logs.partition;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import am.ik.lognroll.config.DataSourceConfig;
+import am.ik.lognroll.config.DbProps;
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.SearchRequestBuilder;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.pagination.CursorPageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteConfig;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionsTest {
+
+	static final Instant day1 = Instant.parse("2024-06-01T10:00:00Z");
+
+	static final Instant day2 = Instant.parse("2024-06-02T10:00:00Z");
+
+	static final Instant day3 = Instant.parse("2024-06-03T10:00:00Z");
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void storeAndQueryAcrossPartitions() throws Exception {
+		Partitions partitions = partitions(PartitionProps.Window.DAY, null, Clock.systemUTC());
+		partitions.start();
+		PartitionedLogStore logStore = new PartitionedLogStore(partitions);
+		PartitionedLogQuery logQuery = new PartitionedLogQuery(partitions);
+		logStore.addAll(TestLogs.batch(List.of(log("a", day1), log("b", day3), log("c", day2), log("d", day3))));
+		assertThat(Files.list(this.directory)).map(file -> file.getFileName().toString())
+			.contains("log-20240601.db", "log-20240602.db", "log-20240603.db");
+
+		List<String> bodies = page(logQuery, null, 3).stream().map(Log::body).toList();
+		assertThat(bodies).containsExactly("d", "b", "c");
+		Log last = page(logQuery, null, 3).getLast();
+		assertThat(page(logQuery, new LogQuery.Cursor(last.timestamp(), last.observedTimestamp(), last.logId()), 3))
+			.extracting(Log::body)
+			.containsExactly("a");
+		// later windows have larger ids
+		assertThat(page(logQuery, null, 0)).extracting(Log::logId).isSortedAccordingTo((x, y) -> Long.compare(y, x));
+
+		LogQuery.SearchRequest day2Only = SearchRequestBuilder.searchRequest()
+			.query("")
+			.from(day2.minusSeconds(3600))
+			.to(day2.plusSeconds(3600))
+			.build();
+		assertThat(partitions.overlapping(day2Only.from(), day2Only.to())).hasSize(1);
+		assertThat(logQuery.count(day2Only)).isEqualTo(1);
+		assertThat(logQuery.count(SearchRequestBuilder.searchRequest().query("").build())).isEqualTo(4);
+		assertThat(logQuery.findVolumes(SearchRequestBuilder.searchRequest().query("").build(), Duration.ofMinutes(10)))
+			.containsExactly(new LogQuery.Volume(day1, 1), new LogQuery.Volume(day2, 1), new LogQuery.Volume(day3, 2));
+		partitions.stop();
+
+		// the files are opened again, also with another window
+		Partitions restarted = partitions(PartitionProps.Window.HOUR, null, Clock.systemUTC());
+		restarted.start();
+		new PartitionedLogStore(restarted).addAll(TestLogs.batch(List.of(log("e", day3.plusSeconds(3600)))));
+		assertThat(Files.exists(this.directory.resolve("log-2024060311.db"))).isTrue();
+		PartitionedLogQuery restartedQuery = new PartitionedLogQuery(restarted);
+		assertThat(page(restartedQuery, null, 2)).extracting(Log::body).containsExactly("e", "d");
+		assertThat(restartedQuery.delete(SearchRequestBuilder.searchRequest().query("").build())).isEqualTo(5);
+		assertThat(restartedQuery.count(SearchRequestBuilder.searchRequest().query("").build())).isZero();
+		restarted.stop();
+	}
+
+	@Test
+	void dropExpiredPartitions() throws Exception {
+		Clock clock = Clock.fixed(day3.plusSeconds(3600), ZoneOffset.UTC);
+		Partitions partitions = partitions(PartitionProps.Window.DAY, Duration.ofDays(1), clock);
+		PartitionedLogStore logStore = new PartitionedLogStore(partitions);
+		logStore.addAll(TestLogs.batch(List.of(log("a", day1), log("b", day2), log("c", day3))));
+		// the first day ended more than a day ago
+		partitions.dropExpired();
+		assertThat(Files.list(this.directory)).map(file -> file.getFileName().toString())
+			.filteredOn(name -> name.endsWith(".db"))
+			.containsExactlyInAnyOrder("log-20240602.db", "log-20240603.db");
+		assertThat(page(new PartitionedLogQuery(partitions), null, 0)).extracting(Log::body).containsExactly("c", "b");
+
+		logStore.clear();
+		assertThat(Files.list(this.directory)).isEmpty();
+		assertThat(partitions.overlapping(null, null)).isEmpty();
+		partitions.stop();
+	}
+
+	@Test
+	void closedPartitionIsEmpty() {
+		Partitions partitions = partitions(PartitionProps.Window.DAY, null, Clock.systemUTC());
+		Partition partition = partitions.partitionFor(day1);
+		partition.addAll(TestLogs.batch(List.of(log("a", day1))));
+		assertThat(partition.query(query -> query.count(SearchRequestBuilder.searchRequest().query("").build()), -1L))
+			.isEqualTo(1);
+		// new files return deleted logs to the file system
+		assertThat(new JdbcTemplate(DataSourceConfig.sqliteDataSource(dbProps(), partition.file().toString(), true))
+			.queryForObject("PRAGMA auto_vacuum", Integer.class)).isEqualTo(2);
+		partitions.dropAll();
+		assertThat(partition.query(query -> query.count(SearchRequestBuilder.searchRequest().query("").build()), -1L))
+			.isEqualTo(-1);
+		assertThatThrownBy(() -> partition.addAll(TestLogs.batch(List.of(log("b", day1)))))
+			.isInstanceOf(IllegalStateException.class);
+		partitions.stop();
+	}
+
+	@Test
+	void idsAreUniqueAcrossWindows() {
+		Instant start = PartitionProps.Window.DAY.start(day1);
+		assertThat(start).isEqualTo(PartitionProps.Window.HOUR.start(start));
+		long day = Partition.firstLogId(PartitionProps.Window.DAY, start);
+		long hour = Partition.firstLogId(PartitionProps.Window.HOUR, start);
+		long nextHour = Partition.firstLogId(PartitionProps.Window.HOUR, start.plusSeconds(3600));
+		assertThat(Math.abs(day - hour)).isGreaterThanOrEqualTo(1L << 32);
+		assertThat(nextHour - Math.max(day, hour)).isGreaterThanOrEqualTo(1L << 32);
+
+		Partitions partitions = partitions(PartitionProps.Window.DAY, null, Clock.systemUTC());
+		new PartitionedLogStore(partitions).addAll(TestLogs.batch(List.of(log("a", start))));
+		partitions.stop();
+		Partitions restarted = partitions(PartitionProps.Window.HOUR, null, Clock.systemUTC());
+		restarted.start();
+		new PartitionedLogStore(restarted).addAll(TestLogs.batch(List.of(log("b", start))));
+		assertThat(page(new PartitionedLogQuery(restarted), null, 0)).extracting(Log::logId)
+			.containsExactlyInAnyOrder(day + 1, hour + 1);
+		restarted.stop();
+	}
+
+	@Test
+	void logsWithoutObservedTimestampGoToCurrentWindow() throws Exception {
+		Clock clock = Clock.fixed(day3, ZoneOffset.UTC);
+		Partitions partitions = partitions(PartitionProps.Window.DAY, Duration.ofDays(1), clock);
+		new PartitionedLogStore(partitions)
+			.addAll(TestLogs.batch(List.of(TestLogs.log("a", day3).observedTimestamp(Instant.EPOCH).build())));
+		partitions.dropExpired();
+		assertThat(Files.list(this.directory)).map(file -> file.getFileName().toString())
+			.filteredOn(name -> name.endsWith(".db"))
+			.containsExactly("log-20240603.db");
+		partitions.stop();
+	}
+
+	Partitions partitions(PartitionProps.Window window, Duration maxAge, Clock clock) {
+		return new Partitions(new PartitionProps(true, this.directory, window, maxAge, Duration.ofMinutes(1), 2),
+				dbProps(), new ObjectMapper(), new SimpleMeterRegistry(), clock);
+	}
+
+	static DbProps dbProps() {
+		return new DbProps("unused", SQLiteConfig.JournalMode.WAL, SQLiteConfig.SynchronousMode.NORMAL,
+				Duration.ofSeconds(5), DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), SQLiteConfig.TempStore.MEMORY,
+				2);
+	}
+
+	static List<Log> page(LogQuery logQuery, LogQuery.Cursor cursor, int pageSize) {
+		return logQuery.findLatestLogs(SearchRequestBuilder.searchRequest()
+			.query("")
+			.pageRequest(new CursorPageRequest<>(cursor, pageSize, CursorPageRequest.Navigation.NEXT))
+			.build());
+	}
+
+	static Log log(String body, Instant timestamp) {
+		return TestLogs.log(body, timestamp).build();
+	}
+
+}
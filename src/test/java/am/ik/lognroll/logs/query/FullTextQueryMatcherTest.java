@@ -0,0 +1,92 @@
+package am.ik.lognroll.logs.query;
+
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FullTextQueryMatcherTest {
+
+	@Test
+	void simple() {
+		FullTextQueryMatcher matcher = FullTextQueryMatcher.compile("hello", FullTextIndexProps.DEFAULT);
+		assertThat(matcher.matches("Say Hello!")).isTrue();
+		assertThat(matcher.matches("Say Hi!")).isFalse();
+		assertThat(matcher.matches(null)).isFalse();
+	}
+
+	@Test
+	void and() {
+		FullTextQueryMatcher matcher = FullTextQueryMatcher.compile("hello world", FullTextIndexProps.DEFAULT);
+		assertThat(matcher.matches("hello world")).isTrue();
+		assertThat(matcher.matches("world, hello")).isTrue();
+		assertThat(matcher.matches("hello java")).isFalse();
+	}
+
+	@Test
+	void or() {
+		FullTextQueryMatcher matcher = FullTextQueryMatcher.compile("hello or world", FullTextIndexProps.DEFAULT);
+		assertThat(matcher.matches("hello java")).isTrue();
+		assertThat(matcher.matches("java world")).isTrue();
+		assertThat(matcher.matches("java")).isFalse();
+	}
+
+	@Test
+	void not() {
+		FullTextQueryMatcher matcher = FullTextQueryMatcher.compile("hello -world", FullTextIndexProps.DEFAULT);
+		assertThat(matcher.matches("hello java")).isTrue();
+		assertThat(matcher.matches("hello world")).isFalse();
+	}
+
+	@Test
+	void nest() {
+		FullTextQueryMatcher matcher = FullTextQueryMatcher.compile("hello (world or java)",
+				FullTextIndexProps.DEFAULT);
+		assertThat(matcher.matches("hello java")).isTrue();
+		assertThat(matcher.matches("hello world")).isTrue();
+		assertThat(matcher.matches("hello kotlin")).isFalse();
+		assertThat(matcher.matches("java world")).isFalse();
+	}
+
+	@Test
+	void shortTermsMatchNothing() {
+		// the trigram tokenizer cannot match terms with less than three characters
+		assertThat(FullTextQueryMatcher.compile("hi", FullTextIndexProps.DEFAULT).matches("hi")).isFalse();
+		assertThat(FullTextQueryMatcher.compile("日本語", FullTextIndexProps.DEFAULT).matches("こんにちは日本語")).isTrue();
+	}
+
+	@Test
+	void words() {
+		FullTextIndexProps layout = new FullTextIndexProps(FullTextIndexProps.Tokenizer.UNICODE61,
+				FullTextIndexProps.Detail.FULL, false, FullTextIndexProps.Deferred.DISABLED);
+		assertThat(FullTextQueryMatcher.compile("hi", layout).matches("Hi, alice")).isTrue();
+		assertThat(FullTextQueryMatcher.compile("hi", layout).matches("this")).isFalse();
+		assertThat(FullTextQueryMatcher.compile("foo.bar", layout).matches("call foo bar")).isTrue();
+		assertThat(FullTextQueryMatcher.compile("foo.bar", layout).matches("bar foo")).isFalse();
+	}
+
+	@Test
+	void wordsWithoutPositions() {
+		FullTextIndexProps layout = new FullTextIndexProps(FullTextIndexProps.Tokenizer.UNICODE61,
+				FullTextIndexProps.Detail.NONE, false, FullTextIndexProps.Deferred.DISABLED);
+		assertThat(FullTextQueryMatcher.compile("foo.bar", layout).matches("bar foo")).isTrue();
+		assertThat(FullTextQueryMatcher.compile("foo.bar", layout).matches("foo")).isFalse();
+	}
+
+	@Test
+	void shortTermsAsWords() {
+		// with both indexes, only terms shorter than three characters are looked up as
+		// words
+		FullTextIndexProps layout = new FullTextIndexProps(FullTextIndexProps.Tokenizer.BOTH,
+				FullTextIndexProps.Detail.FULL, false, FullTextIndexProps.Deferred.DISABLED);
+		assertThat(FullTextQueryMatcher.compile("hi", layout).matches("hi alice")).isTrue();
+		assertThat(FullTextQueryMatcher.compile("hi", layout).matches("this")).isFalse();
+		assertThat(FullTextQueryMatcher.compile("lic", layout).matches("hi alice")).isTrue();
+	}
+
+	@Test
+	void empty() {
+		assertThat(FullTextQueryMatcher.compile("", FullTextIndexProps.DEFAULT).matches("anything")).isTrue();
+	}
+
+}
@@ -42,4 +42,11 @@ class QueryConverterTest {
 		assertThat(query).isEqualTo("\"hello\" AND (\"world\" OR \"java\")");
 	}
 
+	@Test
+	void condition() {
+		String condition = Sqlite3QueryConverter.convertCondition("hello (it's or ab) -world", "body");
+		assertThat(condition).isEqualTo(
+				"instr(lower(body), lower('hello')) > 0 AND (instr(lower(body), lower('it''s')) > 0 OR 0) AND NOT instr(lower(body), lower('world')) > 0");
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package am.ik.lognroll.logs.retention;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.jdbc.AutoVacuum;
+import am.ik.lognroll.logs.jdbc.TestDatabase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetentionSchedulerTest {
+
+	static final Instant now = Instant.parse("2024-06-30T00:00:00Z");
+
+	TestDatabase database = new TestDatabase();
+
+	JdbcTemplate jdbcTemplate = this.database.jdbcTemplate();
+
+	SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@AfterEach
+	void tearDown() {
+		this.database.close();
+	}
+
+	@Test
+	void firstMatchingPolicyDecides() {
+		this.database.logStore()
+			.addAll(TestLogs.batch(List.of(log("error", "ERROR", "app", 10, Map.of()),
+					log("old", "INFO", "app", 10, Map.of()), log("recent", "INFO", "app", 1, Map.of()),
+					log("batch", "INFO", "batch", 5, Map.of()), log("kept", "INFO", "app", 10, Map.of("keep", true)))));
+		RetentionScheduler scheduler = scheduler(
+				new RetentionProps(Duration.ofDays(3), Map.of("batch", Duration.ofDays(7)),
+						List.of(new RetentionProps.Rule("errors", "severityText == 'ERROR'", Duration.ofDays(30)),
+								new RetentionProps.Rule(null, "attributes.keep == true", Duration.ofDays(365))),
+						null, Duration.ofMinutes(1), 1000, Duration.ofSeconds(10), 1000));
+		assertThat(scheduler.run()).isEqualTo(1);
+		assertThat(this.jdbcTemplate.queryForList("SELECT body FROM log", String.class))
+			.containsExactlyInAnyOrder("error", "recent", "batch", "kept");
+		assertThat(this.registry.get("logs.retention.deleted").tag("policy", "max-age").counter().count()).isEqualTo(1);
+		assertThat(this.registry.get("logs.retention.deleted").tag("policy", "errors").counter().count()).isZero();
+		assertThat(this.registry.get("logs.retention.run").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void deleteOldestAndReclaimSpace() {
+		RetentionScheduler scheduler = scheduler(new RetentionProps(null, Map.of(), List.of(),
+				DataSize.ofKilobytes(500), Duration.ofMinutes(1), 100, Duration.ofSeconds(10), 10));
+		assertThat(scheduler.enableIncrementalVacuum()).isTrue();
+		assertThat(this.jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class))
+			.isEqualTo(AutoVacuum.INCREMENTAL);
+		List<Log> logs = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			logs.add(log("x".repeat(500) + i, "INFO", "app", 2000 - i, Map.of()));
+		}
+		this.database.logStore().addAll(TestLogs.batch(logs));
+		long pageCount = this.jdbcTemplate.queryForObject("PRAGMA page_count", Long.class);
+		assertThat(scheduler.usedBytes()).isGreaterThan(DataSize.ofKilobytes(500).toBytes());
+		assertThat(scheduler.run()).isPositive();
+		assertThat(scheduler.usedBytes()).isLessThanOrEqualTo(DataSize.ofKilobytes(500).toBytes());
+		// the newest logs are kept
+		assertThat(this.jdbcTemplate.queryForList("SELECT body FROM log", String.class))
+			.contains("x".repeat(500) + 1999)
+			.doesNotContain("x".repeat(500) + 0);
+		assertThat(this.jdbcTemplate.queryForObject("PRAGMA freelist_count", Long.class)).isZero();
+		assertThat(this.jdbcTemplate.queryForObject("PRAGMA page_count", Long.class)).isLessThan(pageCount);
+		assertThat(this.registry.get("logs.retention.vacuumed").counter().count()).isPositive();
+	}
+
+	@Test
+	void invalidRule() {
+		assertThatThrownBy(() -> scheduler(new RetentionProps(null, Map.of(),
+				List.of(new RetentionProps.Rule(null, "severityText ==", Duration.ofDays(1))), null,
+				Duration.ofMinutes(1), 1000, Duration.ofSeconds(1), 1000)))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("rules[0]");
+	}
+
+	RetentionScheduler scheduler(RetentionProps props) {
+		return new RetentionScheduler(this.jdbcTemplate, this.database.logStore(), props, this.registry,
+				Clock.fixed(now, ZoneOffset.UTC));
+	}
+
+	static Log log(String body, String severityText, String serviceName, int ageDays, Map<String, Object> attributes) {
+		return TestLogs.log(body, now.minus(Duration.ofDays(ageDays)))
+			.severityText(severityText)
+			.serviceName(serviceName)
+			.attributes(attributes)
+			.resourceAttributes(Map.of("service.name", serviceName))
+			.build();
+	}
+
+}
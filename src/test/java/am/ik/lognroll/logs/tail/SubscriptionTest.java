@@ -0,0 +1,119 @@
+package am.ik.lognroll.logs.tail;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import am.ik.lognroll.logs.Log;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.LogQuery;
+import am.ik.lognroll.logs.QueryController;
+import am.ik.lognroll.logs.filter.FilterExpressionTextParser;
+import am.ik.lognroll.logs.filter.converter.PredicateFilterExpressionConverter;
+import am.ik.lognroll.logs.jdbc.FullTextIndexProps;
+import am.ik.lognroll.logs.query.FullTextQueryMatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionTest {
+
+	static final Instant now = Instant.parse("2024-06-01T10:25:00Z");
+
+	final RecordingSseEmitter emitter = new RecordingSseEmitter();
+
+	final TailProps props = new TailProps(64, Duration.ofSeconds(5), Duration.ofMinutes(30), 2);
+
+	@Test
+	void sendMatchingLogs() throws Exception {
+		Subscription subscription = new Subscription(this.emitter,
+				FullTextQueryMatcher.compile("hello", FullTextIndexProps.DEFAULT),
+				new PredicateFilterExpressionConverter()
+					.convertExpression(new FilterExpressionTextParser().parse("attributes.user == 'alice'")),
+				Duration.ofMinutes(10), this.props, new ObjectMapper());
+		subscription.send(TestLogs.batch(List.of(log("hello alice", now, Map.of("user", "alice")),
+				log("hello bob", now, Map.of("user", "bob")), log("bye alice", now, Map.of("user", "alice")))));
+		assertThat(this.emitter.data).hasSize(1);
+		Object data = this.emitter.data.getFirst();
+		assertThat(data).isInstanceOf(QueryController.LogsResponse.class);
+		List<Log> logs = ((QueryController.LogsResponse) data).logs();
+		assertThat(logs).hasSize(1);
+		Log log = logs.getFirst();
+		assertThat(log.body()).isEqualTo("hello alice");
+		assertThat(log.timestamp()).isEqualTo(now);
+		assertThat(log.attributes()).isEqualTo(Map.of("user", "alice"));
+		assertThat(log.resourceAttributes()).isEqualTo(Map.of("service.name", "demo"));
+	}
+
+	@Test
+	void sendDelta() throws Exception {
+		Subscription subscription = new Subscription(this.emitter, null, null, Duration.ofMinutes(10), this.props,
+				new ObjectMapper());
+		subscription.sendDelta();
+		assertThat(this.emitter.data).isEmpty();
+		subscription.send(TestLogs.batch(List.of(log("a", now, Map.of()), log("b", now.plusSeconds(299), Map.of()),
+				log("c", now.plusSeconds(300), Map.of()))));
+		subscription.offer(TestLogs.batch(List.of(log("d", now, Map.of()))));
+		subscription.offer(TestLogs.batch(List.of(log("e", now, Map.of()))));
+		subscription.offer(TestLogs.batch(List.of(log("f", now, Map.of()), log("g", now, Map.of()))));
+		this.emitter.data.clear();
+		subscription.sendDelta();
+		assertThat(this.emitter.data).containsExactly(
+				new Subscription.Delta(3, List.of(new LogQuery.Volume(Instant.parse("2024-06-01T10:20:00Z"), 2),
+						new LogQuery.Volume(Instant.parse("2024-06-01T10:30:00Z"), 1)), 2));
+		this.emitter.data.clear();
+		subscription.sendDelta();
+		assertThat(this.emitter.data).isEmpty();
+	}
+
+	@Test
+	void bucket() {
+		Subscription subscription = new Subscription(this.emitter, null, null, Duration.ofMinutes(15), this.props,
+				new ObjectMapper());
+		assertThat(subscription.bucket(nanos(Instant.parse("2024-06-01T10:14:59.999Z"))))
+			.isEqualTo(Instant.parse("2024-06-01T10:00:00Z"));
+		assertThat(subscription.bucket(nanos(Instant.parse("2024-06-01T10:59:00Z"))))
+			.isEqualTo(Instant.parse("2024-06-01T10:45:00Z"));
+		// like the SQL, buckets do not cross the hour
+		Subscription seven = new Subscription(this.emitter, null, null, Duration.ofMinutes(7), this.props,
+				new ObjectMapper());
+		assertThat(seven.bucket(nanos(Instant.parse("2024-06-01T10:59:00Z"))))
+			.isEqualTo(Instant.parse("2024-06-01T10:56:00Z"));
+		assertThat(seven.bucket(nanos(Instant.parse("2024-06-01T11:01:00Z"))))
+			.isEqualTo(Instant.parse("2024-06-01T11:00:00Z"));
+	}
+
+	static long nanos(Instant instant) {
+		return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+	}
+
+	static Log log(String body, Instant timestamp, Map<String, Object> attributes) {
+		return TestLogs.log(body, timestamp)
+			.attributes(attributes)
+			.resourceAttributes(Map.of("service.name", "demo"))
+			.build();
+	}
+
+	static class RecordingSseEmitter extends SseEmitter {
+
+		final List<Object> data = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void send(SseEventBuilder builder) {
+			Set<DataWithMediaType> dataToSend = builder.build();
+			dataToSend.stream()
+				.filter(d -> MediaType.APPLICATION_JSON.equals(d.getMediaType()))
+				.forEach(d -> this.data.add(d.getData()));
+		}
+
+	}
+
+}
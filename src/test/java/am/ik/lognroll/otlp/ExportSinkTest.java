@@ -0,0 +1,94 @@
+package am.ik.lognroll.otlp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.TestLogs;
+import am.ik.lognroll.logs.ingest.IngestProps;
+import am.ik.lognroll.logs.ingest.IngestRejectedException;
+import am.ik.lognroll.logs.ingest.LogIngester;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportSinkTest {
+
+	final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void allAccepted() {
+		ExportSink sink = new ExportSink(ingester(Integer.MAX_VALUE), counter());
+		sink.accept(batch(2));
+		sink.accept(batch(3));
+		assertThat(sink.response()).isEqualTo(ExportLogsServiceResponse.getDefaultInstance());
+		assertThat(counter().count()).isEqualTo(5);
+	}
+
+	@Test
+	void firstBatchRejected() {
+		ExportSink sink = new ExportSink(ingester(0), counter());
+		assertThatThrownBy(() -> sink.accept(batch(2))).isInstanceOf(IngestRejectedException.class);
+	}
+
+	@Test
+	void partiallyAccepted() {
+		ExportSink sink = new ExportSink(ingester(1), counter());
+		sink.accept(batch(2));
+		sink.accept(batch(3));
+		sink.accept(batch(4));
+		ExportLogsServiceResponse response = sink.response();
+		assertThat(response.hasPartialSuccess()).isTrue();
+		assertThat(response.getPartialSuccess().getRejectedLogRecords()).isEqualTo(7);
+		assertThat(response.getPartialSuccess().getErrorMessage()).isEqualTo("backlog is full");
+		assertThat(counter().count()).isEqualTo(2);
+	}
+
+	Counter counter() {
+		return Counter.builder("logs.ingested").register(this.registry);
+	}
+
+	LogIngester ingester(int acceptedBatches) {
+		LogStore logStore = new LogStore() {
+			@Override
+			public void addAll(LogBatch batch) {
+			}
+
+			@Override
+			public void clear() {
+			}
+
+			@Override
+			public long vacuum(Duration timeBudget) {
+				return 0;
+			}
+		};
+		return new LogIngester(logStore, new IngestProps(IngestProps.Mode.DIRECT, IngestProps.Durability.COMMIT, 16,
+				100, Duration.ofMillis(10), 100000, Duration.ofSeconds(5), List.of()), this.registry, event -> {
+				}) {
+			int count = 0;
+
+			@Override
+			public void ingest(LogBatch logs) {
+				if (this.count++ >= acceptedBatches) {
+					throw new IngestRejectedException("backlog is full", Duration.ofSeconds(5));
+				}
+				super.ingest(logs);
+			}
+		};
+	}
+
+	static LogBatch batch(int size) {
+		Instant now = Instant.now();
+		return TestLogs
+			.batch(IntStream.range(0, size).mapToObj(i -> TestLogs.log("message " + i, now).build()).toList());
+	}
+
+}
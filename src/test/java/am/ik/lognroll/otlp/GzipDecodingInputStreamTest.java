@@ -0,0 +1,118 @@
+package am.ik.lognroll.otlp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GzipDecodingInputStreamTest {
+
+	@Test
+	void decode() throws Exception {
+		byte[] data = randomText(1024 * 1024);
+		assertThat(decode(gzip(data))).isEqualTo(data);
+	}
+
+	@Test
+	void decodeEmpty() throws Exception {
+		assertThat(decode(gzip(new byte[0]))).isEmpty();
+	}
+
+	@Test
+	void decodeConcatenatedMembers() throws Exception {
+		byte[] first = "hello ".getBytes(StandardCharsets.UTF_8);
+		byte[] second = "world".getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+		concatenated.write(gzip(first));
+		concatenated.write(gzip(second));
+		assertThat(new String(decode(concatenated.toByteArray()), StandardCharsets.UTF_8)).isEqualTo("hello world");
+	}
+
+	@Test
+	void decodeHeaderWithFileName() throws Exception {
+		byte[] gzip = gzip("hello".getBytes(StandardCharsets.UTF_8));
+		ByteArrayOutputStream withName = new ByteArrayOutputStream();
+		withName.write(gzip, 0, 3);
+		withName.write(gzip[3] | 8 /* FNAME */);
+		withName.write(gzip, 4, 6);
+		withName.write("logs.pb\0".getBytes(StandardCharsets.US_ASCII));
+		withName.write(gzip, 10, gzip.length - 10);
+		assertThat(new String(decode(withName.toByteArray()), StandardCharsets.UTF_8)).isEqualTo("hello");
+	}
+
+	@Test
+	void rejectCorruptTrailer() throws Exception {
+		byte[] gzip = gzip("hello".getBytes(StandardCharsets.UTF_8));
+		gzip[gzip.length - 5]++;
+		assertThatThrownBy(() -> decode(gzip)).isInstanceOf(ZipException.class).hasMessage("Corrupt GZIP trailer");
+	}
+
+	@Test
+	void rejectNotGzip() {
+		assertThatThrownBy(() -> decode("hello".getBytes(StandardCharsets.UTF_8))).isInstanceOf(ZipException.class)
+			.hasMessage("Not in GZIP format");
+	}
+
+	@Test
+	void rejectTruncated() throws Exception {
+		byte[] gzip = gzip(randomText(1024));
+		assertThatThrownBy(() -> decode(Arrays.copyOf(gzip, gzip.length / 2))).isInstanceOf(ZipException.class)
+			.hasMessage("Unexpected end of ZLIB input stream");
+		assertThatThrownBy(() -> decode(Arrays.copyOf(gzip, gzip.length - 4))).isInstanceOf(ZipException.class)
+			.hasMessage("Unexpected end of GZIP input stream");
+	}
+
+	@Test
+	void readSingleBytes() throws Exception {
+		byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+		try (InputStream in = new GzipDecodingInputStream(new ByteArrayInputStream(gzip(data)))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			for (int b = in.read(); b != -1; b = in.read()) {
+				out.write(b);
+			}
+			assertThat(out.toByteArray()).isEqualTo(data);
+		}
+	}
+
+	@Test
+	void reusePooledInflater() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			byte[] data = randomText(1024 + i);
+			assertThat(decode(gzip(data))).isEqualTo(data);
+		}
+	}
+
+	static byte[] decode(byte[] gzip) throws IOException {
+		try (InputStream in = new GzipDecodingInputStream(new ByteArrayInputStream(gzip))) {
+			return in.readAllBytes();
+		}
+	}
+
+	static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+			gzip.write(data);
+		}
+		return baos.toByteArray();
+	}
+
+	static byte[] randomText(int size) {
+		Random random = new Random(size);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ('a' + random.nextInt(8));
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,130 @@
+package am.ik.lognroll.otlp;
+
+import java.nio.charset.StandardCharsets;
+
+import am.ik.lognroll.IntegrationTestBase;
+import am.ik.lognroll.logs.LogStore;
+import am.ik.lognroll.logs.QueryController.CountResponse;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceRequest;
+import io.opentelemetry.proto.collector.logs.v1.ExportLogsServiceResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sqlite.SQLiteErrorCode;
+import org.sqlite.SQLiteException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogsGrpcServiceTest extends IntegrationTestBase {
+
+	static final MethodDescriptor<ExportLogsServiceRequest, ExportLogsServiceResponse> EXPORT = MethodDescriptor
+		.<ExportLogsServiceRequest, ExportLogsServiceResponse>newBuilder()
+		.setType(MethodDescriptor.MethodType.UNARY)
+		.setFullMethodName(MethodDescriptor.generateFullMethodName(LogsGrpcService.SERVICE_NAME, "Export"))
+		.setRequestMarshaller(ProtoUtils.marshaller(ExportLogsServiceRequest.getDefaultInstance()))
+		.setResponseMarshaller(ProtoUtils.marshaller(ExportLogsServiceResponse.getDefaultInstance()))
+		.build();
+
+	@Autowired
+	LogStore logStore;
+
+	@Autowired
+	OtlpGrpcServer grpcServer;
+
+	ManagedChannel channel;
+
+	@BeforeEach
+	void setUp() {
+		this.logStore.clear();
+		this.channel = NettyChannelBuilder.forAddress("localhost", this.grpcServer.getPort()).usePlaintext().build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.channel.shutdownNow();
+	}
+
+	@Test
+	void export() throws Exception {
+		ExportLogsServiceResponse response = ClientCalls.blockingUnaryCall(authorized("Bearer changeme"), EXPORT,
+				CallOptions.DEFAULT, request());
+		assertThat(response.hasPartialSuccess()).isFalse();
+		CountResponse count = this.restClient.get()
+			.uri("/api/logs/count")
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.retrieve()
+			.body(CountResponse.class);
+		assertThat(count).isNotNull();
+		assertThat(count.totalCount()).isEqualTo(1);
+	}
+
+	@ParameterizedTest
+	// a wrong token, credentials that are not Base64 and credentials without a colon
+	@ValueSource(strings = { "Bearer invalid", "Basic !!!", "Basic bm9jb2xvbg==" })
+	void exportUnauthenticated(String authorization) throws Exception {
+		ExportLogsServiceRequest request = request();
+		assertThatThrownBy(
+				() -> ClientCalls.blockingUnaryCall(authorized(authorization), EXPORT, CallOptions.DEFAULT, request))
+			.isInstanceOfSatisfying(StatusRuntimeException.class,
+					e -> assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.UNAUTHENTICATED));
+	}
+
+	@Test
+	void marshaller() throws Exception {
+		LogsGrpcService.ExportRequestMarshaller marshaller = new LogsGrpcService.ExportRequestMarshaller(
+				new OtlpLogsDecoder(1024 * 1024, 2));
+		LogsGrpcService.ExportRequest request = marshaller.parse(request().toByteString().newInput());
+		assertThat(request.batches()).flatExtracting(OtlpLogsDecoderTest::rows).hasSize(1);
+		assertThatThrownBy(() -> marshaller.stream(request)).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void status() {
+		assertThat(LogsGrpcService.status(new CannotAcquireLockException("locked"))).isEqualTo(Status.UNAVAILABLE);
+		assertThat(LogsGrpcService.status(new UncategorizedSQLException("insert", "INSERT",
+				new SQLiteException("busy", SQLiteErrorCode.SQLITE_BUSY_SNAPSHOT))))
+			.isEqualTo(Status.UNAVAILABLE);
+		assertThat(LogsGrpcService.status(new UncategorizedSQLException("insert", "INSERT",
+				new SQLiteException("full", SQLiteErrorCode.SQLITE_FULL))))
+			.isEqualTo(Status.INTERNAL);
+		assertThat(LogsGrpcService.status(new IllegalStateException("bug"))).isEqualTo(Status.INTERNAL);
+	}
+
+	Channel authorized(String authorization) {
+		Metadata metadata = new Metadata();
+		metadata.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), authorization);
+		return ClientInterceptors.intercept(this.channel, MetadataUtils.newAttachHeadersInterceptor(metadata));
+	}
+
+	static ExportLogsServiceRequest request() throws Exception {
+		String json = StreamUtils.copyToString(new ClassPathResource("logs.json").getInputStream(),
+				StandardCharsets.UTF_8);
+		ExportLogsServiceRequest.Builder builder = ExportLogsServiceRequest.newBuilder();
+		JsonFormat.parser().merge(json, builder);
+		return builder.build();
+	}
+
+}
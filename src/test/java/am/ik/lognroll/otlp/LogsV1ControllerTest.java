@@ -3,6 +3,9 @@ package am.ik.lognroll.otlp;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.zip.GZIPOutputStream;
 
 import am.ik.lognroll.IntegrationTestBase;
@@ -10,9 +13,11 @@ import am.ik.lognroll.logs.LogStore;
 import am.ik.lognroll.logs.QueryController;
 import am.ik.lognroll.logs.QueryController.CountResponse;
 import com.google.protobuf.util.JsonFormat;
+import io.airlift.compress.zstd.ZstdOutputStream;
 import io.opentelemetry.proto.logs.v1.LogsData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.json.JsonContent;
@@ -21,6 +26,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.util.StreamUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,6 +56,7 @@ class LogsV1ControllerTest extends IntegrationTestBase {
 			.toBodilessEntity();
 		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
 		assertData();
+		assertDownload();
 	}
 
 	@Test
@@ -70,6 +77,68 @@ class LogsV1ControllerTest extends IntegrationTestBase {
 		assertData();
 	}
 
+	@Test
+	void ingestProtobufZstd() throws Exception {
+		String json = StreamUtils.copyToString(new ClassPathResource("logs.json").getInputStream(),
+				StandardCharsets.UTF_8);
+		LogsData.Builder builder = LogsData.newBuilder();
+		JsonFormat.parser().merge(json, builder);
+		ResponseEntity<Void> response = this.restClient.post()
+			.uri("/v1/logs")
+			.contentType(MediaType.APPLICATION_PROTOBUF)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.header(HttpHeaders.CONTENT_ENCODING, "zstd")
+			.body(compressZstd(builder.build().toByteArray()))
+			.retrieve()
+			.toBodilessEntity();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertData();
+	}
+
+	@Test
+	void ingestProtobufUnsupportedEncoding() {
+		ResponseEntity<Void> response = this.restClient.post()
+			.uri("/v1/logs")
+			.contentType(MediaType.APPLICATION_PROTOBUF)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.header(HttpHeaders.CONTENT_ENCODING, "br")
+			.body(new byte[] { 1, 2, 3 })
+			.retrieve()
+			.toBodilessEntity();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+	}
+
+	@Test
+	void ingestProtobufMalformedGzip() {
+		ResponseEntity<Void> response = this.restClient.post()
+			.uri("/v1/logs")
+			.contentType(MediaType.APPLICATION_PROTOBUF)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+			.body(new byte[] { 1, 2, 3 })
+			.retrieve()
+			.toBodilessEntity();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void ingestProtobufTruncatedGzip() throws Exception {
+		String json = StreamUtils.copyToString(new ClassPathResource("logs.json").getInputStream(),
+				StandardCharsets.UTF_8);
+		LogsData.Builder builder = LogsData.newBuilder();
+		JsonFormat.parser().merge(json, builder);
+		byte[] gzip = compress(builder.build().toByteArray());
+		ResponseEntity<Void> response = this.restClient.post()
+			.uri("/v1/logs")
+			.contentType(MediaType.APPLICATION_PROTOBUF)
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+			.body(Arrays.copyOf(gzip, gzip.length / 2))
+			.retrieve()
+			.toBodilessEntity();
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
 	@Test
 	void ingestJson() throws Exception {
 		String json = StreamUtils.copyToString(new ClassPathResource("logs.json").getInputStream(),
@@ -100,6 +169,27 @@ class LogsV1ControllerTest extends IntegrationTestBase {
 		assertData();
 	}
 
+	void assertDownload() throws IOException {
+		byte[] body = this.restClient.get()
+			.uri("/api/logs/download")
+			.header(HttpHeaders.AUTHORIZATION, "Bearer changeme")
+			.retrieve()
+			.body(byte[].class);
+		assertThat(body).isNotNull();
+		Path copy = Files.createTempFile("lognroll-download", ".db");
+		try {
+			Files.write(copy, body);
+			// the copy contains the logs that have not been checkpointed yet
+			SQLiteDataSource dataSource = new SQLiteDataSource();
+			dataSource.setUrl("jdbc:sqlite:" + copy);
+			assertThat(new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM log", Integer.class))
+				.isEqualTo(1);
+		}
+		finally {
+			Files.delete(copy);
+		}
+	}
+
 	void assertData() {
 		CountResponse count = this.restClient.get()
 			.uri("/api/logs/count")
@@ -155,4 +245,12 @@ class LogsV1ControllerTest extends IntegrationTestBase {
 		return baos.toByteArray();
 	}
 
+	static byte[] compressZstd(byte[] body) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ZstdOutputStream zstdOutputStream = new ZstdOutputStream(baos)) {
+			zstdOutputStream.write(body);
+		}
+		return baos.toByteArray();
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package am.ik.lognroll.otlp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import am.ik.lognroll.logs.LogBatch;
+import am.ik.lognroll.logs.Logs;
+import am.ik.lognroll.util.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.InstrumentationScope;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.logs.v1.LogRecord;
+import io.opentelemetry.proto.logs.v1.LogsData;
+import io.opentelemetry.proto.logs.v1.ResourceLogs;
+import io.opentelemetry.proto.logs.v1.ScopeLogs;
+import io.opentelemetry.proto.resource.v1.Resource;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OtlpLogsDecoderTest {
+
+	static final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void decodeSameAsToBatch() throws Exception {
+		String json = StreamUtils.copyToString(new ClassPathResource("logs.json").getInputStream(),
+				StandardCharsets.UTF_8);
+		LogsData.Builder builder = LogsData.newBuilder();
+		JsonFormat.parser().merge(json, builder);
+		LogsData logsData = builder.build();
+		List<LogBatch> batches = new OtlpLogsDecoder(1024 * 1024, 10)
+			.decode(new ByteArrayInputStream(logsData.toByteArray()));
+		assertThat(batches).hasSize(1);
+		assertThat(rows(batches.getFirst())).isEqualTo(rows(Logs.toBatch(logsData)));
+	}
+
+	@Test
+	void decodeInBatches() throws Exception {
+		LogsData logsData = logsData(5);
+		List<LogBatch> batches = new OtlpLogsDecoder(1024 * 1024, 2)
+			.decode(new ByteArrayInputStream(logsData.toByteArray()));
+		assertThat(batches).extracting(LogBatch::size).containsExactly(2, 2, 1);
+		assertThat(batches).flatExtracting(OtlpLogsDecoderTest::rows).isEqualTo(rows(Logs.toBatch(logsData)));
+	}
+
+	@Test
+	void decodeFieldsOutOfOrder() throws Exception {
+		LogsData logsData = logsData(3);
+		ResourceLogs resourceLogs = logsData.getResourceLogs(0);
+		ScopeLogs scopeLogs = resourceLogs.getScopeLogs(0);
+		// write scope_logs before resource and log_records before scope
+		ByteArrayOutputStream scopeLogsBytes = new ByteArrayOutputStream();
+		CodedOutputStream scopeLogsOutput = CodedOutputStream.newInstance(scopeLogsBytes);
+		for (LogRecord logRecord : scopeLogs.getLogRecordsList()) {
+			scopeLogsOutput.writeMessage(ScopeLogs.LOG_RECORDS_FIELD_NUMBER, logRecord);
+		}
+		scopeLogsOutput.writeMessage(ScopeLogs.SCOPE_FIELD_NUMBER, scopeLogs.getScope());
+		scopeLogsOutput.flush();
+		ByteArrayOutputStream resourceLogsBytes = new ByteArrayOutputStream();
+		CodedOutputStream resourceLogsOutput = CodedOutputStream.newInstance(resourceLogsBytes);
+		resourceLogsOutput.writeByteArray(ResourceLogs.SCOPE_LOGS_FIELD_NUMBER, scopeLogsBytes.toByteArray());
+		resourceLogsOutput.writeMessage(ResourceLogs.RESOURCE_FIELD_NUMBER, resourceLogs.getResource());
+		resourceLogsOutput.flush();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+		output.writeByteArray(LogsData.RESOURCE_LOGS_FIELD_NUMBER, resourceLogsBytes.toByteArray());
+		output.flush();
+		List<LogBatch> batches = new OtlpLogsDecoder(1024 * 1024, 10)
+			.decode(new ByteArrayInputStream(bytes.toByteArray()));
+		assertThat(batches).hasSize(1);
+		assertThat(rows(batches.getFirst())).isEqualTo(rows(Logs.toBatch(logsData)));
+	}
+
+	@Test
+	void decodeTooLarge() {
+		LogsData logsData = logsData(100);
+		OtlpLogsDecoder decoder = new OtlpLogsDecoder(logsData.getSerializedSize() - 1, 10);
+		assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(logsData.toByteArray())))
+			.isInstanceOf(OtlpLogsDecoder.RequestTooLargeException.class);
+	}
+
+	@Test
+	void decodeTruncated() {
+		byte[] bytes = logsData(100).toByteArray();
+		OtlpLogsDecoder decoder = new OtlpLogsDecoder(1024 * 1024, 10);
+		assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(bytes, 0, bytes.length - 10)))
+			.isInstanceOf(InvalidProtocolBufferException.class);
+	}
+
+	/**
+	 * Logs of the batch with parsed attributes, because the order of the keys in the
+	 * attribute JSON is not significant.
+	 */
+	static List<Map<String, Object>> rows(LogBatch batch) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < batch.size(); i++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("timestamp", batch.timestamp(i));
+			row.put("observedTimestamp", batch.observedTimestamp(i));
+			row.put("severityText", batch.severityText(i));
+			row.put("severityNumber", batch.severityNumber(i));
+			row.put("serviceName", batch.serviceName(i));
+			row.put("scope", batch.scope(i));
+			row.put("body", batch.body(i));
+			row.put("traceId", batch.traceId(i));
+			row.put("spanId", batch.spanId(i));
+			row.put("traceFlags", batch.traceFlags(i));
+			row.put("attributes", Json.parse(objectMapper, batch.attributes(i)));
+			row.put("resourceAttributes",
+					Json.parse(objectMapper, batch.resourceAttributes().get(batch.resourceAttributesDigest(i))));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	static LogsData logsData(int n) {
+		ScopeLogs.Builder scopeLogs = ScopeLogs.newBuilder()
+			.setScope(InstrumentationScope.newBuilder()
+				.setName("my.library")
+				.addAttributes(KeyValue.newBuilder()
+					.setKey("scope.attr")
+					.setValue(AnyValue.newBuilder().setStringValue("scope"))));
+		for (int i = 0; i < n; i++) {
+			scopeLogs.addLogRecords(LogRecord.newBuilder()
+				.setTimeUnixNano(1_700_000_000_000_000_000L + i)
+				.setObservedTimeUnixNano(1_700_000_000_000_000_000L + i)
+				.setSeverityText("INFO")
+				.setBody(AnyValue.newBuilder().setStringValue("message " + i))
+				.addAttributes(KeyValue.newBuilder().setKey("i").setValue(AnyValue.newBuilder().setIntValue(i))));
+		}
+		return LogsData.newBuilder()
+			.addResourceLogs(ResourceLogs.newBuilder()
+				.setResource(Resource.newBuilder()
+					.addAttributes(KeyValue.newBuilder()
+						.setKey("service.name")
+						.setValue(AnyValue.newBuilder().setStringValue("demo")))
+					.addAttributes(KeyValue.newBuilder()
+						.setKey("k8s.namespace.name")
+						.setValue(AnyValue.newBuilder().setStringValue("prod"))))
+				.addScopeLogs(scopeLogs))
+			.build();
+	}
+
+}
@@ -0,0 +1,37 @@
+package am.ik.lognroll.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapDigestTest {
+
+	@Test
+	void independentOfOrder() {
+		Map<String, Object> map1 = new LinkedHashMap<>();
+		map1.put("k8s.namespace.name", "prod");
+		map1.put("k8s.pod.name", "foo-1");
+		map1.put("nested", Map.of("a", 1, "b", List.of("x", "y")));
+		Map<String, Object> map2 = new LinkedHashMap<>();
+		map2.put("nested", Map.of("b", List.of("x", "y"), "a", 1L));
+		map2.put("k8s.pod.name", "foo-1");
+		map2.put("k8s.namespace.name", "prod");
+		assertThat(MapDigest.digest(map1)).isEqualTo(MapDigest.digest(map2));
+	}
+
+	@Test
+	void distinguishesValues() {
+		// these collide with a sum of (key.hashCode() ^ value.hashCode())
+		assertThat(MapDigest.digest(Map.of("a", "b"))).isNotEqualTo(MapDigest.digest(Map.of("b", "a")));
+		assertThat(MapDigest.digest(Map.of("a", 1))).isNotEqualTo(MapDigest.digest(Map.of("a", "1")));
+		assertThat(MapDigest.digest(Map.of("a", List.of("x", "y"))))
+			.isNotEqualTo(MapDigest.digest(Map.of("a", List.of("xy"))));
+		assertThat(MapDigest.digest(Map.of("ab", "c"))).isNotEqualTo(MapDigest.digest(Map.of("a", "bc")));
+		assertThat(MapDigest.digest(Map.of())).isNotEqualTo(MapDigest.digest(Map.of("", "")));
+	}
+
+}
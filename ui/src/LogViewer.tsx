@@ -1,4 +1,4 @@
-import React, {ChangeEvent, KeyboardEvent, useState} from 'react';
+import React, {ChangeEvent, KeyboardEvent, useEffect, useRef, useState} from 'react';
 import ScrollToTop from "react-scroll-to-top";
 import './LogViewer.css';
 // @ts-expect-error TODO
@@ -18,8 +18,8 @@ interface BuildUrlParams {
     interval?: number;
 }
 
-const buildLogsUrl = ({size, query, filter, cursor, from, to}: BuildUrlParams): string => {
-    let url = `/api/logs?size=${size}&query=${encodeURIComponent(query)}`;
+const buildLogsUrl = ({size, query, filter, cursor, from, to, interval}: BuildUrlParams, path = '/api/logs'): string => {
+    let url = `${path}?size=${size}&query=${encodeURIComponent(query)}`;
     if (filter) {
         url += `&filter=${encodeURIComponent(filter)}`;
     }
@@ -32,6 +32,9 @@ const buildLogsUrl = ({size, query, filter, cursor, from, to}: BuildUrlParams):
     if (to) {
         url += `&to=${encodeURIComponent(convertToIsoUtc(to))}`;
     }
+    if (interval) {
+        url += `&interval=PT${interval}M`
+    }
     return url;
 };
 
@@ -67,16 +70,21 @@ interface LogsResponse {
     logs: Log[]
 }
 
-interface CountResponse {
+interface SearchResponse {
+    logs: Log[]
     totalCount: number
+    volumes: VolumeData[]
 }
 
-interface VolumesResponse {
-    volumes: VolumeData[]
+interface DeltaResponse {
+    count: number;
+    volumes: VolumeData[];
+    dropped: number;
 }
 
 interface Log {
-    logId: number;
+    logId: number | null; // null for logs pushed by the live tail
+    liveId?: number;
     timestamp: string;
     observedTimestamp: string;
     severityText?: string;
@@ -150,6 +158,38 @@ const LogViewer: React.FC = () => {
     const [message, setMessage] = useState<Message | null>(null);
     const [volumes, setVolumes] = useState<VolumeData[]>([]);
     const [interval, setInterval] = useState<number>(10);
+    const [live, setLive] = useState<boolean>(false);
+    const liveId = useRef<number>(0);
+
+    useEffect(() => {
+        if (!live) {
+            return;
+        }
+        const source = new EventSource(buildCountUrl('/stream', {query, filter, interval}));
+        source.addEventListener('logs', (e: MessageEvent) => {
+            const {logs: newLogs}: LogsResponse = JSON.parse(e.data);
+            newLogs.forEach(log => log.liveId = liveId.current++);
+            setLogs(logs => [...newLogs.reverse(), ...logs]);
+        });
+        source.addEventListener('delta', (e: MessageEvent) => {
+            const delta: DeltaResponse = JSON.parse(e.data);
+            setCount(count => typeof count === 'number' ? count + delta.count : count);
+            setVolumes(volumes => {
+                const merged = new Map(volumes.map(v => [v.date, v.count]));
+                delta.volumes.forEach(v => merged.set(v.date, (merged.get(v.date) || 0) + v.count));
+                return [...merged.entries()].sort(([a], [b]) => a.localeCompare(b)).map(([date, count]) => ({
+                    date,
+                    count
+                }));
+            });
+            if (delta.dropped > 0) {
+                setMessage({status: 'warning', text: `${delta.dropped} logs were skipped by the live tail`});
+            }
+        });
+        return () => source.close();
+        // the stream is restarted when the live tail is toggled, not while typing
+        // eslint-disable-next-line react-hooks/exhaustive-deps
+    }, [live]);
 
     const setProblemMessage = (data: Problem) => setMessage({
         status: 'error',
@@ -160,57 +200,39 @@ const LogViewer: React.FC = () => {
         setIsLoading(true);
         setMessage(null);
         try {
-            const logsResponse = await fetch(buildLogsUrl({size, query, filter, from, to}));
-            if (logsResponse.status === 200) {
-                const logsData: LogsResponse = await logsResponse.json();
-                setLogs(logsData.logs);
-                setCount('Counting...');
-                setShowLoadMore(logsData.logs.length >= size);
-            } else {
-                const data: Problem = await logsResponse.json();
-                setProblemMessage(data);
-            }
-        } catch (error) {
-            console.error('Error fetching logs:', error);
-        } finally {
-            setIsLoading(false);
-        }
-        try {
-            const countResponse = await fetch(buildCountUrl('/count', {query, filter, from, to}));
             const interval = calcInterval(from, to);
-            const volumesResponse = await fetch(buildCountUrl('/volumes', {query, filter, from, to, interval}));
-            if (countResponse.status === 200) {
-                const countData: CountResponse = await countResponse.json();
-                setCount(countData.totalCount);
-            } else {
-                const data: Problem = await countResponse.json();
-                setProblemMessage(data);
-            }
-            if (volumesResponse.status === 200) {
-                const volumesData: VolumesResponse = await volumesResponse.json();
-                setVolumes(volumesData.volumes);
+            const response = await fetch(buildLogsUrl({size, query, filter, from, to, interval}, '/api/search'));
+            if (response.status === 200) {
+                const data: SearchResponse = await response.json();
+                setLogs(data.logs);
+                setShowLoadMore(data.logs.length >= size);
+                setCount(data.totalCount);
+                setVolumes(data.volumes);
                 setInterval(interval);
             } else {
-                const data: Problem = await volumesResponse.json();
+                const data: Problem = await response.json();
                 setProblemMessage(data);
             }
         } catch (error) {
             console.error('Error fetching logs:', error);
+        } finally {
+            setIsLoading(false);
         }
     };
 
     const fetchMoreLogs = async () => {
-        if (logs.length === 0) {
+        // logs pushed by the live tail have no id and are never the last page
+        const lastLog = [...logs].reverse().find(log => log.logId !== null);
+        if (!lastLog) {
             return;
         }
-        const lastLog = logs[logs.length - 1];
         const url = buildLogsUrl({
             size,
             query,
             filter,
             from,
             to,
-            cursor: `${lastLog.timestamp},${lastLog.observedTimestamp}`
+            cursor: `${lastLog.timestamp},${lastLog.observedTimestamp},${lastLog.logId}`
         });
         setIsLoading(true);
         try {
@@ -295,6 +317,14 @@ const LogViewer: React.FC = () => {
                     disabled={isLoading}
                 />
                 use local timezone
+            </label>&nbsp;
+            <label>
+                <input
+                    type="checkbox"
+                    checked={live}
+                    onChange={(e: ChangeEvent<HTMLInputElement>) => setLive(e.target.checked)}
+                />
+                live
             </label>
             <br/>
             timestamp:&nbsp;
@@ -370,7 +400,7 @@ const LogViewer: React.FC = () => {
                 <tbody>
                 {logs.map(log => {
                     const timestamp = useOccurredTimestamp ? log.timestamp : log.observedTimestamp;
-                    return <tr key={log.logId}>
+                    return <tr key={log.logId ?? `live-${log.liveId}`}>
                         <td>{useLocalTimezone ? convertUtcToLocal(timestamp) : timestamp}</td>
                         <td><span
                             onClick={() => {